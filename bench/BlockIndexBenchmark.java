@@ -0,0 +1,190 @@
+import java.util.Random;
+
+/**
+ * <p>Bookkeeping cost of placing the required blocks of Part D, finding
+ * each one by scanning the columns and through their {@link BlockIndex}.</p>
+ *
+ * <p>For source columns of up to 100,000 blocks of four heights only, so
+ * every height is repeated many times, follows the digging rule of
+ * <code>RobotControl.moveBlocksRequired</code> on the columns alone: find
+ * the column holding the next required block, move the blocks above it to
+ * the other column, then the block to the target column. The scan finds the
+ * column with <code>BlockView.contains</code> and digs until the top block
+ * matches; the index asks {@link Column#getDepth(int)}. Both must make the
+ * same moves, and the fastest of a few rounds is reported.</p>
+ *
+ * <p>Two workloads are measured. In the random one, the source blocks and
+ * their required order are shuffled, so the next required height is nearly
+ * always close to the top of the source column: the scan stops early and
+ * costs about as much as an index lookup, while the index adds its upkeep
+ * to every move. In the run-out one, the bottom half of the source column
+ * is made of blocks of height 1 and the top half alternates heights 2 and
+ * 3, and the 2s, then the 3s, then the 1s are required. Once the 2s are
+ * placed, every 3 is in the temporary column and the scan reads the whole
+ * run of 1s before looking there, so the scan is quadratic and the index is
+ * not. Then times a whole headless run of the largest random scenario.
+ * Usage: <code>BlockIndexBenchmark [seed]</code>.</p>
+ */
+public class BlockIndexBenchmark {
+
+    /** Block counts to measure. */
+    private static final int[] BLOCK_COUNTS = { 1000, 10000, 100000 };
+
+    /** Number of block heights, from 1. */
+    private static final int HEIGHTS = 4;
+
+    /** Number of rounds of each way, the fastest is reported. */
+    private static final int ROUNDS = 5;
+
+    /**
+     * Place the required blocks finding them by scanning the columns.
+     *
+     * @return the number of moves
+     */
+    private static long placeScanning(Column source, Column temporary, Column target, int[] required) {
+	long moves = 0;
+	for (int block : required) {
+	    Column from = source.getBlocks().contains(block) ? source : temporary;
+	    Column other = from == source ? temporary : source;
+	    while (from.getTopBlockHeight() != block) {
+		other.addBlock(from.removeBlock());
+		moves++;
+	    }
+	    target.addBlock(from.removeBlock());
+	    moves++;
+	}
+	return moves;
+    }
+
+    /**
+     * Place the required blocks finding them through the block index.
+     *
+     * @return the number of moves
+     */
+    private static long placeIndexed(Column source, Column temporary, Column target, int[] required) {
+	long moves = 0;
+	for (int block : required) {
+	    int depth = source.getDepth(block);
+	    Column from = depth >= 0 ? source : temporary;
+	    Column other = from == source ? temporary : source;
+	    if (depth < 0)
+		depth = temporary.getDepth(block);
+	    for (; depth > 0; depth--) {
+		other.addBlock(from.removeBlock());
+		moves++;
+	    }
+	    target.addBlock(from.removeBlock());
+	    moves++;
+	}
+	return moves;
+    }
+
+    public static void main(String[] args) {
+	Random rand = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+	int[] bars = { 3, 5, 2, 6, 4, 1 };
+	int[] blocks = null;
+	int[] required = null;
+
+	System.out.printf("%-8s %-8s %10s %12s %12s %9s%n", "workload", "blocks", "moves", "scan ms", "index ms",
+		"speedup");
+	for (String workload : new String[] { "random", "run-out" }) {
+	    for (int blockCount : BLOCK_COUNTS) {
+		if (workload.equals("random")) {
+		    blocks = randomBlocks(blockCount, rand);
+		    required = blocks.clone();
+		    for (int x = required.length - 1; x > 0; x--) {
+			int y = rand.nextInt(x + 1);
+			int swap = required[x];
+			required[x] = required[y];
+			required[y] = swap;
+		    }
+		} else {
+		    blocks = runOutBlocks(blockCount);
+		    required = runOutRequired(blocks);
+		}
+		measure(workload, bars, blocks, required);
+	    }
+	}
+
+	blocks = randomBlocks(BLOCK_COUNTS[BLOCK_COUNTS.length - 1], rand);
+	required = blocks.clone();
+	for (int x = required.length - 1; x > 0; x--) {
+	    int y = rand.nextInt(x + 1);
+	    int swap = required[x];
+	    required[x] = required[y];
+	    required[y] = swap;
+	}
+	CountingRobot robot = new CountingRobot();
+	long start = System.nanoTime();
+	new RobotControl(robot).control(bars, blocks, required, false);
+	System.out.printf("headless run of %d blocks: %d operations in %.1f ms%n", blocks.length,
+		robot.toEstimate(1).getOperationCount(), (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Get random blocks of the benchmark heights.
+     */
+    private static int[] randomBlocks(int blockCount, Random rand) {
+	int[] blocks = new int[blockCount];
+	for (int x = 0; x < blocks.length; x++) {
+	    blocks[x] = rand.nextInt(HEIGHTS) + 1;
+	}
+	return blocks;
+    }
+
+    /**
+     * Get a run of blocks of height 1 under blocks alternating heights 2
+     * and 3.
+     */
+    private static int[] runOutBlocks(int blockCount) {
+	int[] blocks = new int[blockCount];
+	for (int x = 0; x < blocks.length; x++) {
+	    blocks[x] = x < blockCount / 2 ? 1 : 2 + (x - blockCount / 2) % 2;
+	}
+	return blocks;
+    }
+
+    /**
+     * Get the given blocks ordered as 2s, then 3s, then 1s.
+     */
+    private static int[] runOutRequired(int[] blocks) {
+	int[] required = new int[blocks.length];
+	int x = 0;
+	for (int height : new int[] { 2, 3, 1 }) {
+	    for (int block : blocks) {
+		if (block == height)
+		    required[x++] = height;
+	    }
+	}
+	return required;
+    }
+
+    /**
+     * Place the required blocks both ways and print the fastest times.
+     */
+    private static void measure(String workload, int[] bars, int[] blocks, int[] required) {
+
+	long scanMoves = 0;
+	long indexMoves = 0;
+	long scan = Long.MAX_VALUE;
+	long index = Long.MAX_VALUE;
+	for (int x = 0; x < ROUNDS; x++) {
+	    Track track = Track.threeColumns(bars, blocks);
+	    long start = System.nanoTime();
+	    scanMoves = placeScanning(track.getColumn(ColumnType.source), track.getColumn(ColumnType.temporary),
+		    track.getColumn(ColumnType.target), required);
+	    scan = Math.min(scan, System.nanoTime() - start);
+
+	    track = Track.threeColumns(bars, blocks);
+	    start = System.nanoTime();
+	    indexMoves = placeIndexed(track.getColumn(ColumnType.source), track.getColumn(ColumnType.temporary),
+		    track.getColumn(ColumnType.target), required);
+	    index = Math.min(index, System.nanoTime() - start);
+	}
+
+	if (scanMoves != indexMoves)
+	    throw new IllegalStateException("Scan and index made different moves");
+	System.out.printf("%-8s %-8d %10d %12.1f %12.1f %8.1fx%n", workload, blocks.length, indexMoves, scan / 1e6,
+		index / 1e6, (double) scan / index);
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.Random;
+
+/**
+ * <p>Arm 1 steps of scenarios compiled along the fixed path and along the
+ * clearance profile of a {@link ClearancePlanner}.</p>
+ *
+ * <p>Both runs use a {@link SimulatedRobot}, so a colliding path fails the
+ * run. Prints, for each part, the arm 1 steps and total steps of both runs
+ * and the saved arm 1 steps per move reported by the planner. Usage:
+ * <code>ClearanceBenchmark [scenarios per part] [blocks] [seed]</code>.</p>
+ */
+public class ClearanceBenchmark {
+
+    public static void main(String[] args) {
+	int scenarios = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+	int blockCount = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+	Random rand = new Random(args.length > 2 ? Long.parseLong(args[2]) : 1);
+
+	System.out.printf("%-6s %14s %14s %12s %12s %14s%n", "part", "fixed arm 1", "profile arm 1", "fixed ops",
+		"profile ops", "saved/move");
+	for (String part : new String[] { "A-C", "D", "E" }) {
+	    long fixedArmOne = 0;
+	    long profileArmOne = 0;
+	    long fixedOps = 0;
+	    long profileOps = 0;
+	    long saved = 0;
+	    long moves = 0;
+	    for (int x = 0; x < scenarios; x++) {
+		int[] bars = new int[6];
+		for (int y = 0; y < bars.length; y++) {
+		    bars[y] = rand.nextInt(8) + 1;
+		}
+		int[] blocks = new int[blockCount];
+		for (int y = 0; y < blocks.length; y++) {
+		    blocks[y] = part.equals("E") ? 4 - y * 4 / blockCount : rand.nextInt(4) + 1;
+		}
+		boolean ordered = part.equals("E");
+		int[] required = { 0 };
+		if (part.equals("D")) {
+		    required = blocks.clone();
+		    for (int y = required.length - 1; y > 0; y--) {
+			int z = rand.nextInt(y + 1);
+			int swap = required[y];
+			required[y] = required[z];
+			required[z] = swap;
+		    }
+		}
+
+		CountingRobot fixed = new CountingRobot();
+		new RobotControl(new SegmentTee(new SimulatedRobot(bars, blocks, required, ordered), fixed))
+			.control(bars, blocks, required, ordered);
+		CountingRobot profile = new CountingRobot();
+		RobotControl control = new RobotControl(
+			new SegmentTee(new SimulatedRobot(bars, blocks, required, ordered), profile));
+		ClearancePlanner planner = new ClearancePlanner();
+		control.setClearancePlanner(planner);
+		control.control(bars, blocks, required, ordered);
+
+		PlanEstimate fixedEstimate = fixed.toEstimate(1);
+		PlanEstimate profileEstimate = profile.toEstimate(1);
+		fixedArmOne += fixedEstimate.getArmOneSteps();
+		profileArmOne += profileEstimate.getArmOneSteps();
+		fixedOps += fixedEstimate.getOperationCount();
+		profileOps += profileEstimate.getOperationCount();
+		saved += planner.getSavedSteps();
+		moves += planner.getMoveCount();
+	    }
+	    System.out.printf("%-6s %14d %14d %12d %12d %14.2f%n", part, fixedArmOne, profileArmOne, fixedOps,
+		    profileOps, (double) saved / moves);
+	}
+    }
+
+    /**
+     * Sends every call to the checking robot, then to the counting robot.
+     */
+    private static class SegmentTee implements SegmentDriver {
+	private final SegmentDriver robot;
+	private final SegmentDriver counter;
+
+	SegmentTee(SegmentDriver robot, SegmentDriver counter) {
+	    this.robot = robot;
+	    this.counter = counter;
+	}
+
+	@Override
+	public void move(Primitive primitive, int steps) {
+	    robot.move(primitive, steps);
+	    counter.move(primitive, steps);
+	}
+
+	@Override
+	public void up() {
+	    move(Primitive.UP, 1);
+	}
+
+	@Override
+	public void down() {
+	    move(Primitive.DOWN, 1);
+	}
+
+	@Override
+	public void extend() {
+	    move(Primitive.EXTEND, 1);
+	}
+
+	@Override
+	public void contract() {
+	    move(Primitive.CONTRACT, 1);
+	}
+
+	@Override
+	public void lower() {
+	    move(Primitive.LOWER, 1);
+	}
+
+	@Override
+	public void raise() {
+	    move(Primitive.RAISE, 1);
+	}
+
+	@Override
+	public void pick() {
+	    move(Primitive.PICK, 1);
+	}
+
+	@Override
+	public void drop() {
+	    move(Primitive.DROP, 1);
+	}
+    }
+}
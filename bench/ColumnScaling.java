@@ -0,0 +1,140 @@
+/**
+ * <p>Scaling check for the column bookkeeping used by every move.</p>
+ *
+ * <p>For source columns of 10 up to 100,000 blocks, repeatedly moves the top
+ * block between the three columns and performs the height queries a move
+ * issues (all column heights, top block, max block), then makes the same
+ * moves through <code>RobotControl.moveBlock</code> on a headless robot.
+ * The reported cost per move should stay flat as the number of blocks
+ * grows. <code>MoveBlockScalingTest</code> checks the same property without
+ * timing, by counting block reads.</p>
+ */
+public class ColumnScaling {
+
+    /** Block counts to measure. */
+    private static final int[] BLOCK_COUNTS = { 10, 100, 1000, 10000, 100000 };
+
+    /** Number of moves measured for each block count. */
+    private static final int MOVES = 2000000;
+
+    /** Number of moves through the controller measured for each block count. */
+    private static final int CONTROL_MOVES = 200000;
+
+    /** Bar heights of the controller moves. */
+    private static final int[] BARS = { 3, 5, 2, 6, 4, 1 };
+
+    /** Number of warm-up rounds. */
+    private static final int WARMUP = 3;
+
+    /** Allowed ratio between the slowest and fastest per-move cost. */
+    private static final double MAX_RATIO = 3.0;
+
+    /** Prevents the queries from being optimized away. */
+    private static long sink;
+
+    /**
+     * Perform the given number of moves between the columns.
+     *
+     * @param columns
+     *            source, temporary and target columns
+     * @param moves
+     *            the number of moves
+     * @return elapsed nanoseconds
+     */
+    private static long run(Column[] columns, int moves) {
+	long start = System.nanoTime();
+	int from = 0;
+	for (int x = 0; x < moves; x++) {
+	    // pick a non empty column, move its top block to the next one
+	    while (columns[from].getBlockCount() == 0) {
+		from = (from + 1) % 3;
+	    }
+	    int to = (from + 1) % 3;
+	    // clearance queries issued by armPass/blockPass/pickBlock/dropBlock
+	    sink += columns[0].getHeight() + columns[1].getHeight() + columns[2].getHeight();
+	    sink += columns[from].getTopBlockHeight() + columns[to].getMaxBlockHeight();
+	    columns[to].addBlock(columns[from].removeBlock());
+	    from = to;
+	}
+	return System.nanoTime() - start;
+    }
+
+    /**
+     * Perform the given number of moves between the columns through a new
+     * controller.
+     *
+     * @param blocks
+     *            the source blocks
+     * @param moves
+     *            the number of moves
+     * @return elapsed nanoseconds
+     */
+    private static long runControl(int[] blocks, int moves) {
+	RobotControl control = new RobotControl(new CountingRobot());
+	control.init(Track.threeColumns(BARS, blocks));
+	Track track = control.getTrack();
+	Column[] columns = { track.getColumn(ColumnType.source), track.getColumn(ColumnType.temporary),
+		track.getColumn(ColumnType.target) };
+	long start = System.nanoTime();
+	int from = 0;
+	for (int x = 0; x < moves; x++) {
+	    while (columns[from].getBlockCount() == 0) {
+		from = (from + 1) % 3;
+	    }
+	    int to = (from + 1) % 3;
+	    control.moveBlock(columns[from].getType(), columns[to].getType());
+	    from = to;
+	}
+	return System.nanoTime() - start;
+    }
+
+    private static int[] blocks(int blockCount) {
+	int[] blocks = new int[blockCount];
+	for (int x = 0; x < blockCount; x++) {
+	    blocks[x] = x % 4 + 1;
+	}
+	return blocks;
+    }
+
+    public static void main(String[] args) {
+	double fastest = Double.MAX_VALUE;
+	double slowest = 0;
+
+	for (int blockCount : BLOCK_COUNTS) {
+	    int[] blocks = blocks(blockCount);
+	    Column[] columns = { new Column(ColumnType.source, blocks), new Column(ColumnType.temporary, null),
+		    new Column(ColumnType.target, null) };
+
+	    for (int x = 0; x < WARMUP; x++) {
+		run(columns, MOVES);
+	    }
+	    double perMove = (double) run(columns, MOVES) / MOVES;
+	    fastest = Math.min(fastest, perMove);
+	    slowest = Math.max(slowest, perMove);
+	    System.out.printf("blocks=%-7d %.2f ns/move%n", blockCount, perMove);
+	}
+
+	System.out.printf("slowest/fastest = %.2f%n", slowest / fastest);
+
+	// the controller path is compiled once over every block count
+	for (int x = 0; x < WARMUP; x++) {
+	    for (int blockCount : BLOCK_COUNTS) {
+		runControl(blocks(blockCount), CONTROL_MOVES);
+	    }
+	}
+	double fastestControl = Double.MAX_VALUE;
+	double slowestControl = 0;
+	for (int blockCount : BLOCK_COUNTS) {
+	    double perMove = (double) runControl(blocks(blockCount), CONTROL_MOVES) / CONTROL_MOVES;
+	    fastestControl = Math.min(fastestControl, perMove);
+	    slowestControl = Math.max(slowestControl, perMove);
+	    System.out.printf("blocks=%-7d %.2f ns/controller move%n", blockCount, perMove);
+	}
+	System.out.printf("slowest/fastest = %.2f%n", slowestControl / fastestControl);
+
+	if (slowest / fastest > MAX_RATIO || slowestControl / fastestControl > MAX_RATIO) {
+	    System.out.println("FAILED: per move cost grows with the number of blocks");
+	    System.exit(1);
+	}
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.Random;
+
+/**
+ * <p>Operations of scenarios compiled one move at a time, along the fixed
+ * path and along the clearance profile, and with a {@link LookaheadPlanner}
+ * of several window sizes.</p>
+ *
+ * <p>Every run uses a {@link SimulatedRobot}, so a colliding path fails the
+ * run, and must end with every block in the target column. Prints, for each
+ * part, the operations of every configuration, its reduction over the fixed
+ * path and the time spent running it. Usage: <code>LookaheadBenchmark [scenarios per part] [blocks]
+ * [seed]</code>.</p>
+ */
+public class LookaheadBenchmark {
+
+    /** Lookahead windows, 0 for the fixed path and -1 for the clearance profile. */
+    private static final int[] WINDOWS = { 0, -1, 1, 2, 4, 8 };
+
+    public static void main(String[] args) {
+	int scenarios = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+	int blockCount = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+	Random rand = new Random(args.length > 2 ? Long.parseLong(args[2]) : 1);
+
+	System.out.printf("%-6s %-10s %12s %9s %8s%n", "part", "path", "operations", "reduction", "millis");
+	for (String part : new String[] { "A-C", "D", "E" }) {
+	    long[] operations = new long[WINDOWS.length];
+	    long[] nanos = new long[WINDOWS.length];
+	    for (int x = 0; x < scenarios; x++) {
+		int[] bars = new int[6];
+		for (int y = 0; y < bars.length; y++) {
+		    bars[y] = rand.nextInt(8) + 1;
+		}
+		int[] blocks = new int[blockCount];
+		for (int y = 0; y < blocks.length; y++) {
+		    blocks[y] = part.equals("E") ? 4 - y * 4 / blockCount : rand.nextInt(4) + 1;
+		}
+		boolean ordered = part.equals("E");
+		int[] required = { 0 };
+		if (part.equals("D")) {
+		    required = blocks.clone();
+		    for (int y = required.length - 1; y > 0; y--) {
+			int z = rand.nextInt(y + 1);
+			int swap = required[y];
+			required[y] = required[z];
+			required[z] = swap;
+		    }
+		}
+
+		for (int y = 0; y < WINDOWS.length; y++) {
+		    SimulatedRobot robot = new SimulatedRobot(bars, blocks, required, ordered);
+		    RobotControl control = new RobotControl(robot);
+		    if (WINDOWS[y] < 0)
+			control.setClearancePlanner(new ClearancePlanner());
+		    else if (WINDOWS[y] > 0)
+			control.setLookahead(new LookaheadPlanner(WINDOWS[y]));
+		    long start = System.nanoTime();
+		    control.control(bars, blocks, required, ordered);
+		    nanos[y] += System.nanoTime() - start;
+		    if (robot.getBlockCount(ColumnType.target.getValue()) != blocks.length || robot.isHolding()
+			    || robot.getArmThreeDepth() != 0)
+			throw new IllegalStateException("Run did not move every block to the target column");
+		    operations[y] += robot.getOperationCount();
+		}
+	    }
+	    for (int y = 0; y < WINDOWS.length; y++) {
+		String path = WINDOWS[y] == 0 ? "fixed" : WINDOWS[y] < 0 ? "profile" : "window " + WINDOWS[y];
+		System.out.printf("%-6s %-10s %12d %8.1f%% %8d%n", part, path, operations[y],
+			100 * (1 - (double) operations[y] / operations[0]), nanos[y] / 1000000);
+	    }
+	}
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.Random;
+
+/**
+ * <p>Makespan of scenarios run one arm at a time and with the arms moving
+ * together through a {@link MotionScheduler}.</p>
+ *
+ * <p>Every scenario runs on a {@link SimulatedRobot}, so any collision of
+ * the overlapped moves fails the run, behind a {@link MakespanDriver}
+ * counting one time unit per step. Prints the steps, the makespan and the
+ * reduction of each scenario. Usage: <code>MakespanBenchmark [scenarios per
+ * part] [blocks] [seed]</code>.</p>
+ */
+public class MakespanBenchmark {
+
+    public static void main(String[] args) {
+	int scenarios = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+	int blockCount = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+	Random rand = new Random(args.length > 2 ? Long.parseLong(args[2]) : 1);
+
+	System.out.printf("%-6s %-14s %-14s %10s %10s %9s%n", "part", "bars", "blocks", "steps", "makespan",
+		"reduction");
+	long totalSteps = 0;
+	long totalMakespan = 0;
+	for (String part : new String[] { "A-C", "D", "E" }) {
+	    for (int x = 0; x < scenarios; x++) {
+		int[] bars = new int[6];
+		for (int y = 0; y < bars.length; y++) {
+		    bars[y] = rand.nextInt(8) + 1;
+		}
+		int[] blocks = new int[blockCount];
+		for (int y = 0; y < blocks.length; y++) {
+		    blocks[y] = part.equals("E") ? 4 - y * 4 / blockCount : rand.nextInt(4) + 1;
+		}
+		boolean ordered = part.equals("E");
+		int[] required = { 0 };
+		if (part.equals("D")) {
+		    required = blocks.clone();
+		    for (int y = required.length - 1; y > 0; y--) {
+			int z = rand.nextInt(y + 1);
+			int swap = required[y];
+			required[y] = required[z];
+			required[z] = swap;
+		    }
+		}
+
+		MakespanDriver robot = new MakespanDriver(new SimulatedRobot(bars, blocks, required, ordered));
+		RobotControl control = new RobotControl(robot);
+		MotionScheduler scheduler = new MotionScheduler();
+		control.setMotionScheduler(scheduler);
+		control.control(bars, blocks, required, ordered);
+		if (robot.getMakespan() != scheduler.getTotalMakespan() || robot.getSteps() != scheduler.getTotalSteps())
+		    throw new IllegalStateException("Scheduler and driver disagree on the makespan");
+
+		totalSteps += robot.getSteps();
+		totalMakespan += robot.getMakespan();
+		System.out.printf("%-6s %-14s %-14s %10d %10d %8.1f%%%n", part, digits(bars), digits(blocks),
+			robot.getSteps(), robot.getMakespan(), 100 * scheduler.getMakespanReduction());
+	    }
+	}
+	System.out.printf("total: %d steps, makespan %d, reduction %.1f%%%n", totalSteps, totalMakespan,
+		100 * (1 - (double) totalMakespan / totalSteps));
+    }
+
+    private static String digits(int[] values) {
+	StringBuilder builder = new StringBuilder();
+	for (int value : values) {
+	    builder.append(value);
+	}
+	return builder.toString();
+    }
+}
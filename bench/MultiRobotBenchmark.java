@@ -0,0 +1,168 @@
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Aggregate throughput of several robots moving blocks on one shared
+ * {@link Track}.</p>
+ *
+ * <p>The track has a column at every other position and a bar in between.
+ * Every robot moves the top block of a random column to a column at most
+ * {@link #MOVE_RANGE} columns away, and its driver waits {@link #STEP_NANOS}
+ * for every unit step, as a controller waits for the motors. A move holds
+ * every zone from the start of the track to the farthest position its arm
+ * reaches, exclusively only for the zones of its two columns. Moves run
+ * together only while neither changes a column the other passes over; with
+ * columns picked anywhere on the track that is rare, so the moves per second
+ * grow little as robots are added. Usage:
+ * <code>MultiRobotBenchmark [seconds per robot count] [zone width]</code>.</p>
+ */
+public class MultiRobotBenchmark {
+
+    /** Robot counts to measure. */
+    private static final int[] ROBOT_COUNTS = { 1, 2, 4, 8 };
+
+    /** Farthest track position. */
+    private static final int TRACK_WIDTH = 128;
+
+    /** Blocks initially placed in every column. */
+    private static final int BLOCKS_PER_COLUMN = 8;
+
+    /** Farthest distance between the starting and ending columns. */
+    private static final int MOVE_RANGE = 3;
+
+    /** Simulated actuation time of a unit step. */
+    private static final long STEP_NANOS = 10000;
+
+    /**
+     * Driver waiting a fixed time for every unit step.
+     */
+    private static class ActuationRobot implements SegmentDriver {
+
+	@Override
+	public void move(Primitive primitive, int steps) {
+	    LockSupport.parkNanos(steps * STEP_NANOS);
+	}
+
+	@Override
+	public void up() {
+	    move(Primitive.UP, 1);
+	}
+
+	@Override
+	public void down() {
+	    move(Primitive.DOWN, 1);
+	}
+
+	@Override
+	public void extend() {
+	    move(Primitive.EXTEND, 1);
+	}
+
+	@Override
+	public void contract() {
+	    move(Primitive.CONTRACT, 1);
+	}
+
+	@Override
+	public void lower() {
+	    move(Primitive.LOWER, 1);
+	}
+
+	@Override
+	public void raise() {
+	    move(Primitive.RAISE, 1);
+	}
+
+	@Override
+	public void pick() {
+	    move(Primitive.PICK, 1);
+	}
+
+	@Override
+	public void drop() {
+	    move(Primitive.DROP, 1);
+	}
+    }
+
+    private static Track track(int zoneWidth) {
+	Track track = new Track(TRACK_WIDTH, zoneWidth);
+	int[] blocks = new int[BLOCKS_PER_COLUMN];
+	for (int x = 0; x < blocks.length; x++) {
+	    blocks[x] = x % 3 + 1;
+	}
+	for (int position = 1; position <= TRACK_WIDTH; position++) {
+	    if (position % 2 == 1)
+		track.addColumn(position, blocks);
+	    else
+		track.setBar(position, 2);
+	}
+	return track;
+    }
+
+    /**
+     * Run the given number of robots for a fixed time.
+     *
+     * @return the aggregate moves per second
+     */
+    private static double run(final int robots, final long nanos, int zoneWidth) throws InterruptedException {
+	final Track track = track(zoneWidth);
+	final AtomicLong moves = new AtomicLong();
+	final CountDownLatch start = new CountDownLatch(1);
+	Thread[] threads = new Thread[robots];
+	for (int x = 0; x < robots; x++) {
+	    final long seed = x;
+	    threads[x] = new Thread() {
+		@Override
+		public void run() {
+		    Random rand = new Random(seed);
+		    RobotControl control = new RobotControl(new ActuationRobot());
+		    control.init(track);
+		    long count = 0;
+		    try {
+			start.await();
+		    } catch (InterruptedException e) {
+			return;
+		    }
+		    long end = System.nanoTime() + nanos;
+		    while (System.nanoTime() < end) {
+			// columns are at odd positions
+			int from = rand.nextInt(TRACK_WIDTH / 2);
+			int to = from + rand.nextInt(MOVE_RANGE * 2 + 1) - MOVE_RANGE;
+			if (to < 0 || to >= TRACK_WIDTH / 2 || to == from)
+			    continue;
+			if (control.moveBlock(from * 2 + 1, to * 2 + 1))
+			    count++;
+		    }
+		    moves.addAndGet(count);
+		}
+	    };
+	    threads[x].start();
+	}
+	long begin = System.nanoTime();
+	start.countDown();
+	for (Thread thread : threads) {
+	    thread.join();
+	}
+	return moves.get() / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+	double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+	int zoneWidth = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+	long nanos = (long) (seconds * 1e9);
+
+	// warm up
+	run(1, nanos / 2, zoneWidth);
+
+	double single = 0;
+	System.out.println("Cores: " + Runtime.getRuntime().availableProcessors() + ", zone width: " + zoneWidth);
+	for (int robots : ROBOT_COUNTS) {
+	    double rate = run(robots, nanos, zoneWidth);
+	    if (robots == 1)
+		single = rate;
+	    System.out.printf("robots=%-2d %10.0f moves/sec  speedup %.2fx%n", robots, rate, rate / single);
+	}
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Wall time of a scenario run sequentially by {@link RobotControl} and
+ * through a {@link PipelinedControl}.</p>
+ *
+ * <p>The robot waits a fixed time for every unit step, as a controller waits
+ * for the motors. The pipelined run should take about the actuation time
+ * alone, the sequential run the actuation time plus the planning time.
+ * Usage: <code>PipelineBenchmark [bars] [blocks] [ordered|required] [step
+ * micros] [Part D planner budget ms]</code>.</p>
+ */
+public class PipelineBenchmark {
+
+    /**
+     * Driver waiting a fixed time for every unit step.
+     */
+    private static class ActuationRobot implements SegmentDriver {
+
+	private final long stepNanos;
+	long steps;
+
+	ActuationRobot(long stepNanos) {
+	    this.stepNanos = stepNanos;
+	}
+
+	@Override
+	public void move(Primitive primitive, int count) {
+	    steps += count;
+	    LockSupport.parkNanos(count * stepNanos);
+	}
+
+	@Override
+	public void up() {
+	    move(Primitive.UP, 1);
+	}
+
+	@Override
+	public void down() {
+	    move(Primitive.DOWN, 1);
+	}
+
+	@Override
+	public void extend() {
+	    move(Primitive.EXTEND, 1);
+	}
+
+	@Override
+	public void contract() {
+	    move(Primitive.CONTRACT, 1);
+	}
+
+	@Override
+	public void lower() {
+	    move(Primitive.LOWER, 1);
+	}
+
+	@Override
+	public void raise() {
+	    move(Primitive.RAISE, 1);
+	}
+
+	@Override
+	public void pick() {
+	    move(Primitive.PICK, 1);
+	}
+
+	@Override
+	public void drop() {
+	    move(Primitive.DROP, 1);
+	}
+    }
+
+    private static int[] parseDigits(String digits) {
+	int[] values = new int[digits.length()];
+	for (int x = 0; x < values.length; x++) {
+	    values[x] = digits.charAt(x) - '0';
+	}
+	return values;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+	int[] bars = parseDigits(args.length > 0 ? args[0] : "734561");
+	int[] blocks = parseDigits(args.length > 1 ? args[1] : "3121223131");
+	boolean ordered = args.length > 2 && args[2].equalsIgnoreCase("ordered");
+	int[] required = args.length > 2 && !ordered ? parseDigits(args[2]) : new int[] { 0 };
+	long stepNanos = (args.length > 3 ? Long.parseLong(args[3]) : 100) * 1000;
+	long plannerBudget = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+	ActuationRobot sequentialRobot = new ActuationRobot(stepNanos);
+	RobotControl control = new RobotControl(sequentialRobot);
+	control.setPlanner(plannerBudget, 1.0);
+	long start = System.nanoTime();
+	control.control(bars, blocks, required, ordered);
+	double sequential = (System.nanoTime() - start) / 1e6;
+
+	ActuationRobot pipelinedRobot = new ActuationRobot(stepNanos);
+	PipelinedControl pipeline = new PipelinedControl(pipelinedRobot);
+	pipeline.getPlanner().setPlanner(plannerBudget, 1.0);
+	start = System.nanoTime();
+	pipeline.control(bars, blocks, required, ordered);
+	double pipelined = (System.nanoTime() - start) / 1e6;
+
+	double actuation = sequentialRobot.steps * stepNanos / 1e6;
+	System.out.printf("steps: %d sequential / %d pipelined, actuation alone %.1f ms%n", sequentialRobot.steps,
+		pipelinedRobot.steps, actuation);
+	System.out.printf("sequential: %.1f ms, pipelined: %.1f ms%n", sequential, pipelined);
+	System.out.println("planner waits (ring full): " + pipeline.getRing().getProducerWaits()
+		+ ", actuator waits (ring empty): " + pipeline.getRing().getConsumerWaits());
+    }
+}
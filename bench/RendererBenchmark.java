@@ -0,0 +1,94 @@
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * <p>Control speed of a run watched by a {@link FrameRenderer}, against the
+ * same run headless and with snapshots published but not watched.</p>
+ *
+ * <p>Runs run on a {@link CountingRobot}, without a display, so only the
+ * rendering itself is measured: the renderer draws into its frame image and
+ * the repaint requests go nowhere. Once a run is over, the last frame, drawn
+ * region by region, must match the final snapshot drawn as a whole. Prints
+ * the run times, the frames drawn, the snapshots coalesced into them and the
+ * share of a whole frame redrawn by each one. Usage:
+ * <code>RendererBenchmark [blocks] [frames per second] [seed]</code>.</p>
+ */
+public class RendererBenchmark {
+
+    /** Number of runs of each configuration, the fastest is reported. */
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+	System.setProperty("java.awt.headless", "true");
+	int blockCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+	int framesPerSecond = args.length > 1 ? Integer.parseInt(args[1]) : FrameRenderer.DEFAULT_FRAMES_PER_SECOND;
+	Random rand = new Random(args.length > 2 ? Long.parseLong(args[2]) : 1);
+
+	System.out.printf("%-6s %-10s %12s %10s %8s %10s %9s%n", "part", "view", "operations", "ms", "frames",
+		"coalesced", "redrawn");
+	for (String part : new String[] { "A-C", "D", "E" }) {
+	    int[] bars = new int[6];
+	    for (int x = 0; x < bars.length; x++) {
+		bars[x] = rand.nextInt(8) + 1;
+	    }
+	    int[] blocks = new int[blockCount];
+	    for (int x = 0; x < blocks.length; x++) {
+		blocks[x] = part.equals("E") ? 4 - x * 4 / blockCount : rand.nextInt(4) + 1;
+	    }
+	    boolean ordered = part.equals("E");
+	    int[] required = { 0 };
+	    if (part.equals("D")) {
+		required = blocks.clone();
+		for (int x = required.length - 1; x > 0; x--) {
+		    int y = rand.nextInt(x + 1);
+		    int swap = required[x];
+		    required[x] = required[y];
+		    required[y] = swap;
+		}
+	    }
+
+	    for (String view : new String[] { "headless", "snapshots", "renderer" }) {
+		long best = Long.MAX_VALUE;
+		long operations = 0;
+		FrameRenderer renderer = null;
+		for (int round = 0; round < ROUNDS; round++) {
+		    CountingRobot robot = new CountingRobot();
+		    RobotControl control = new RobotControl(robot);
+		    control.setSnapshots(!view.equals("headless"));
+		    renderer = view.equals("renderer") ? new FrameRenderer(control, framesPerSecond)
+			    : null;
+		    long start = System.nanoTime();
+		    control.control(bars, blocks, required, ordered);
+		    best = Math.min(best, System.nanoTime() - start);
+		    operations = robot.toEstimate(1).getOperationCount();
+		    if (renderer != null) {
+			renderer.close();
+			check(renderer);
+		    }
+		}
+		if (renderer == null) {
+		    System.out.printf("%-6s %-10s %12d %10.1f%n", part, view, operations, best / 1e6);
+		} else {
+		    System.out.printf("%-6s %-10s %12d %10.1f %8d %10d %8.1f%%%n", part, view, operations, best / 1e6,
+			    renderer.getFrameCount(), renderer.getCoalescedCount(), 100.0
+				    * renderer.getPaintedPixels() / renderer.getFrameCount() / renderer.getFramePixels());
+		}
+	    }
+	}
+    }
+
+    /**
+     * Check the last frame, drawn region by region, against the final
+     * snapshot drawn as a whole.
+     */
+    private static void check(FrameRenderer renderer) {
+	BufferedImage frame = renderer.copyFrame();
+	BufferedImage whole = renderer.drawWholeFrame();
+	for (int y = 0; y < frame.getHeight(); y++) {
+	    for (int x = 0; x < frame.getWidth(); x++) {
+		if (frame.getRGB(x, y) != whole.getRGB(x, y))
+		    throw new IllegalStateException("Frame differs from the final snapshot at " + x + ", " + y);
+	    }
+	}
+    }
+}
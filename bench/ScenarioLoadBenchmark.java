@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * <p>Time from opening a scenario file to the first operation the
+ * controller sends, reading the blocks in place through a
+ * {@link ScenarioFile} and reading them into int arrays first.</p>
+ *
+ * <p>For each block count, writes a random Part D scenario to a temporary
+ * file, then measures both ways of starting it: the array way reads the
+ * whole file into arrays and calls <code>control(int[]...)</code>, the file
+ * way only maps it and calls {@link RobotControl#control(ScenarioFile)}.
+ * Prints the best time of each over a few rounds. Usage:
+ * <code>ScenarioLoadBenchmark [rounds]</code>.</p>
+ */
+public class ScenarioLoadBenchmark {
+
+    /** Block counts to measure. */
+    private static final int[] BLOCK_COUNTS = { 1000000, 10000000 };
+
+    /** Header size of a scenario file. */
+    private static final int HEADER_SIZE = 4 + 4 + 1 + 4 * 3;
+
+    /** Thrown by the driver at the first operation to stop the run. */
+    private static class Started extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	Started() {
+	    super(null, null, false, false);
+	}
+    }
+
+    /** Driver stopping the run at the first operation. */
+    private static class FirstOperation extends CountingRobot {
+	@Override
+	public void move(Primitive primitive, int count) {
+	    throw new Started();
+	}
+    }
+
+    /**
+     * Start the scenario read into int arrays.
+     *
+     * @return elapsed nanoseconds up to the first operation
+     */
+    private static long startArrays(Path file) throws IOException {
+	long start = System.nanoTime();
+	ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+	buffer.position(8);
+	boolean ordered = buffer.get() == 1;
+	int[] bars = new int[buffer.getInt()];
+	int[] blocks = new int[buffer.getInt()];
+	int[] required = new int[buffer.getInt()];
+	for (int[] heights : new int[][] { bars, blocks, required }) {
+	    for (int x = 0; x < heights.length; x++) {
+		heights[x] = buffer.get();
+	    }
+	}
+	try {
+	    new RobotControl(new FirstOperation()).control(bars, blocks, required, ordered);
+	} catch (Started e) {
+	    // first operation reached
+	}
+	return System.nanoTime() - start;
+    }
+
+    /**
+     * Start the scenario read in place from the file.
+     *
+     * @return elapsed nanoseconds up to the first operation
+     */
+    private static long startFile(Path file) throws IOException {
+	long start = System.nanoTime();
+	try {
+	    new RobotControl(new FirstOperation()).control(ScenarioFile.open(file));
+	} catch (Started e) {
+	    // first operation reached
+	}
+	return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws IOException {
+	int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+	Random rand = new Random(1);
+
+	System.out.printf("%-10s %12s %12s %9s%n", "blocks", "arrays ms", "file ms", "file size");
+	for (int blockCount : BLOCK_COUNTS) {
+	    int[] bars = new int[6];
+	    for (int x = 0; x < bars.length; x++) {
+		bars[x] = rand.nextInt(8) + 1;
+	    }
+	    int[] blocks = new int[blockCount];
+	    for (int x = 0; x < blocks.length; x++) {
+		blocks[x] = rand.nextInt(4) + 1;
+	    }
+	    int[] required = blocks.clone();
+	    for (int x = required.length - 1; x > 0; x--) {
+		int y = rand.nextInt(x + 1);
+		int swap = required[x];
+		required[x] = required[y];
+		required[y] = swap;
+	    }
+	    Path file = Files.createTempFile("scenario", ".rbs");
+	    try {
+		ScenarioFile.write(file, bars, blocks, required, false);
+		blocks = null;
+		required = null;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+		    if (channel.size() != HEADER_SIZE + bars.length + 2L * blockCount)
+			throw new IllegalStateException("Unexpected scenario file size");
+		}
+
+		long arrays = Long.MAX_VALUE;
+		long mapped = Long.MAX_VALUE;
+		for (int x = 0; x < rounds; x++) {
+		    arrays = Math.min(arrays, startArrays(file));
+		    mapped = Math.min(mapped, startFile(file));
+		}
+		System.out.printf("%-10d %12.1f %12.1f %8dMB%n", blockCount, arrays / 1e6, mapped / 1e6,
+			Files.size(file) >> 20);
+	    } finally {
+		Files.delete(file);
+	    }
+	}
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.Random;
+
+import robot.jmh.MotionScenario;
+
+/**
+ * <p>Scenarios of {@link robot.jmh.MotionBenchmark}, run by a
+ * {@link RobotControl} against a robot that ignores every operation.</p>
+ *
+ * <p>Lives in the default package with the controller, which benchmarks in
+ * a package cannot refer to; the benchmark loads it by name.</p>
+ */
+public class MotionScenarios implements MotionScenario {
+
+    private int[] barHeights;
+    private int[] bulkBlocks;
+    private int[] orderedBlocks;
+    private int[] requiredBlocks;
+    private int[] required;
+
+    /**
+     * Robot ignoring every operation, only counting the moves.
+     */
+    private static class NoOpRobot implements SegmentDriver {
+	long moves;
+
+	@Override
+	public void move(Primitive primitive, int steps) {
+	    if (primitive == Primitive.DROP)
+		moves++;
+	}
+
+	@Override
+	public void up() {
+	}
+
+	@Override
+	public void down() {
+	}
+
+	@Override
+	public void extend() {
+	}
+
+	@Override
+	public void contract() {
+	}
+
+	@Override
+	public void lower() {
+	}
+
+	@Override
+	public void raise() {
+	}
+
+	@Override
+	public void pick() {
+	}
+
+	@Override
+	public void drop() {
+	    moves++;
+	}
+    }
+
+    @Override
+    public void setUp(int blocks, int bars, double duplicates) {
+	Random rand = new Random(blocks * 31 + bars);
+	barHeights = new int[bars];
+	for (int x = 0; x < bars; x++) {
+	    barHeights[x] = rand.nextInt(8) + 1;
+	}
+	int distinct = Math.max(1, (int) Math.round(blocks * (1 - duplicates)));
+	bulkBlocks = blocks(blocks, distinct, rand);
+	requiredBlocks = blocks(blocks, distinct, rand);
+	required = shuffle(requiredBlocks, rand);
+
+	// descending heights, equal heights grouped together
+	int orderedDistinct = Math.min(distinct, MotionScenario.MAX_ORDERED_HEIGHTS);
+	orderedBlocks = new int[blocks];
+	for (int x = 0; x < blocks; x++) {
+	    orderedBlocks[x] = orderedDistinct - (int) ((long) x * orderedDistinct / blocks);
+	}
+    }
+
+    /**
+     * Build block heights holding every height from 1 to the given number of
+     * distinct heights, the other blocks repeating one of them, in random
+     * order.
+     */
+    private static int[] blocks(int blocks, int distinct, Random rand) {
+	int[] heights = new int[blocks];
+	for (int x = 0; x < blocks; x++) {
+	    heights[x] = x < distinct ? x + 1 : rand.nextInt(distinct) + 1;
+	}
+	return shuffle(heights, rand);
+    }
+
+    private static int[] shuffle(int[] values, Random rand) {
+	int[] shuffled = values.clone();
+	for (int x = shuffled.length - 1; x > 0; x--) {
+	    int y = rand.nextInt(x + 1);
+	    int swap = shuffled[x];
+	    shuffled[x] = shuffled[y];
+	    shuffled[y] = swap;
+	}
+	return shuffled;
+    }
+
+    private long run(int[] blockHeights, int[] requiredOrder, boolean ordered) {
+	NoOpRobot robot = new NoOpRobot();
+	new RobotControl(robot).control(barHeights, blockHeights, requiredOrder, ordered);
+	return robot.moves;
+    }
+
+    @Override
+    public long moveBlock() {
+	return run(bulkBlocks, new int[] { 0 }, false);
+    }
+
+    @Override
+    public long moveBlocksOrdered() {
+	return run(orderedBlocks, new int[] { 0 }, true);
+    }
+
+    @Override
+    public long moveBlocksRequired() {
+	return run(requiredBlocks, required, false);
+    }
+}
@@ -0,0 +1,89 @@
+package robot.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>JMH benchmark of the motion and solver hot paths against a robot that
+ * ignores every operation.</p>
+ *
+ * <p>Benchmarks, each a full <code>RobotControl.control</code> run:<br>
+ * 1- moveBlock: Part A, B and C bulk transfer from Source to Target<br>
+ * 2- moveBlocksOrdered: Part E Tower of Hanoi<br>
+ * 3- moveBlocksRequired: Part D required ordering</p>
+ *
+ * <p>Parameterized by block count, bar count and duplicate ratio, the share
+ * of blocks repeating the height of another block: a scenario of
+ * <code>n</code> blocks has <code>n * (1 - ratio)</code> distinct heights,
+ * at most {@value MotionScenario#MAX_ORDERED_HEIGHTS} for the Tower of
+ * Hanoi, whose moves double with every distinct height.</p>
+ *
+ * <p>JMH does not accept benchmarks in the default package, where the
+ * controller is, so the scenarios are run by <code>MotionScenarios</code>,
+ * loaded by name once per trial.</p>
+ *
+ * <p>Usage, from the project directory: <code>mvn -B package</code>, then
+ * <code>java -jar jmh/target/benchmarks.jar MotionBenchmark -prof gc</code>
+ * to report the allocation rate through the GC profiler, or run this class,
+ * which adds the GC profiler itself.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MotionBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int blocks;
+
+    @Param({ "1", "6" })
+    public int bars;
+
+    @Param({ "0.0", "0.5", "0.9" })
+    public double duplicates;
+
+    private MotionScenario scenario;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+	scenario = (MotionScenario) Class.forName("MotionScenarios").getDeclaredConstructor().newInstance();
+	scenario.setUp(blocks, bars, duplicates);
+    }
+
+    @Benchmark
+    public long moveBlock() {
+	return scenario.moveBlock();
+    }
+
+    @Benchmark
+    public long moveBlocksOrdered() {
+	return scenario.moveBlocksOrdered();
+    }
+
+    @Benchmark
+    public long moveBlocksRequired() {
+	return scenario.moveBlocksRequired();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+	new Runner(new OptionsBuilder().include(MotionBenchmark.class.getSimpleName())
+		.addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,44 @@
+package robot.jmh;
+
+/**
+ * Scenario runs measured by {@link MotionBenchmark}, implemented next to the
+ * controller in the default package.
+ */
+public interface MotionScenario {
+
+    /** Largest number of distinct heights of the Tower of Hanoi. */
+    int MAX_ORDERED_HEIGHTS = 12;
+
+    /**
+     * Build the scenarios.
+     *
+     * @param blocks
+     *            the number of blocks
+     * @param bars
+     *            the number of bars
+     * @param duplicates
+     *            the share of blocks repeating the height of another block
+     */
+    void setUp(int blocks, int bars, double duplicates);
+
+    /**
+     * Run Part A, B and C: bulk transfer from Source to Target.
+     *
+     * @return the number of moves
+     */
+    long moveBlock();
+
+    /**
+     * Run Part E: the Tower of Hanoi.
+     *
+     * @return the number of moves
+     */
+    long moveBlocksOrdered();
+
+    /**
+     * Run Part D: the required ordering.
+     *
+     * @return the number of moves
+     */
+    long moveBlocksRequired();
+}
@@ -0,0 +1,100 @@
+/**
+ * <p>Immutable stack of blocks, each node pointing to the block below.</p>
+ *
+ * <p>Pushing or popping a block creates at most one node and shares every
+ * block below it, so snapshots of a column taken before and after a move
+ * share all but the top node.</p>
+ */
+public final class BlockChain {
+
+    /** The empty stack. */
+    public static final BlockChain EMPTY = new BlockChain(0, null, 0, 0);
+
+    /** Height of the top block. */
+    private final int block;
+
+    /** Stack below the top block, null for the empty stack. */
+    private final BlockChain below;
+
+    /** Number of blocks. */
+    private final int size;
+
+    /** Total height of all blocks. */
+    private final int height;
+
+    private BlockChain(int block, BlockChain below, int size, int height) {
+	this.block = block;
+	this.below = below;
+	this.size = size;
+	this.height = height;
+    }
+
+    /**
+     * Create a stack holding the given blocks.
+     *
+     * @param blocks
+     *            the blocks, bottom first
+     * @return the stack
+     */
+    public static BlockChain of(BlockView blocks) {
+	BlockChain chain = EMPTY;
+	for (int x = 0; x < blocks.size(); x++) {
+	    chain = chain.push(blocks.get(x));
+	}
+	return chain;
+    }
+
+    /**
+     * Get the stack with a block added on top.
+     *
+     * @param blockHeight
+     *            the block height
+     * @return the new stack
+     */
+    public BlockChain push(int blockHeight) {
+	return new BlockChain(blockHeight, this, size + 1, height + blockHeight);
+    }
+
+    /**
+     * Get the stack without its top block.
+     *
+     * @return the stack below the top block
+     */
+    public BlockChain pop() {
+	if (size == 0)
+	    throw new IllegalStateException("Empty block stack");
+	return below;
+    }
+
+    /**
+     * Get the top block.
+     *
+     * @return the top block height, 0 if empty
+     */
+    public int peek() {
+	return block;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public int getHeight() {
+	return height;
+    }
+
+    /**
+     * Copy the blocks to an array.
+     *
+     * @return the blocks, bottom first
+     */
+    public int[] toArray() {
+	int[] blocks = new int[size];
+	BlockChain chain = this;
+	for (int x = size - 1; x >= 0; x--) {
+	    blocks[x] = chain.block;
+	    chain = chain.below;
+	}
+	return blocks;
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * <p>Index of the stack levels of every block height in a column, answering
+ * "how many blocks are above the highest block of this height" queries.</p>
+ *
+ * <p>Blocks are only added and removed at the top of a column, so the
+ * levels of each height form a stack of their own: the block added last is
+ * the highest block of its height, and the first one removed. Each height
+ * keeps its levels in a {@link BlockStack}, found through an open
+ * addressing table keyed by the height, so adding a block, removing it and
+ * querying a height take constant expected time, and the index only grows
+ * with the number of distinct heights, whatever their values.</p>
+ */
+public class BlockIndex {
+
+    /** Initial number of table slots, a power of two. */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /** Height of each table slot, meaningless where the slot is empty. */
+    private int[] heights = new int[INITIAL_CAPACITY];
+
+    /** Levels of the blocks of each slot height, bottom first, null if the slot is empty. */
+    private BlockStack[] levels = new BlockStack[INITIAL_CAPACITY];
+
+    /** Number of heights in the table. */
+    private int heightCount;
+
+    /** Number of indexed blocks. */
+    private int size;
+
+    /**
+     * Instantiates a new index of the given blocks.
+     *
+     * @param blocks
+     *            the blocks of the column, bottom first
+     */
+    public BlockIndex(BlockView blocks) {
+	for (int x = 0; x < blocks.size(); x++) {
+	    add(blocks.get(x));
+	}
+    }
+
+    /**
+     * Get the table slot of a height: the slot holding it, or the empty slot
+     * where it belongs.
+     *
+     * @param blockHeight
+     *            the block height
+     * @return the slot index
+     */
+    private int slotOf(int blockHeight) {
+	int mask = levels.length - 1;
+	int slot = (blockHeight ^ blockHeight >>> 16) & mask;
+	while (levels[slot] != null && heights[slot] != blockHeight) {
+	    slot = (slot + 1) & mask;
+	}
+	return slot;
+    }
+
+    /**
+     * Get the levels of a height.
+     *
+     * @param blockHeight
+     *            the block height
+     * @return the levels, null if no block ever had this height
+     */
+    private BlockStack levelsOf(int blockHeight) {
+	return levels[slotOf(blockHeight)];
+    }
+
+    /**
+     * Double the table, keeping it at most half full.
+     */
+    private void grow() {
+	int[] oldHeights = heights;
+	BlockStack[] oldLevels = levels;
+	heights = new int[oldHeights.length << 1];
+	levels = new BlockStack[oldLevels.length << 1];
+	for (int x = 0; x < oldLevels.length; x++) {
+	    if (oldLevels[x] != null) {
+		int slot = slotOf(oldHeights[x]);
+		heights[slot] = oldHeights[x];
+		levels[slot] = oldLevels[x];
+	    }
+	}
+    }
+
+    /**
+     * Index a block added on top of the column.
+     *
+     * @param blockHeight
+     *            the block height
+     */
+    public void add(int blockHeight) {
+	int slot = slotOf(blockHeight);
+	if (levels[slot] == null) {
+	    if ((heightCount + 1) << 1 > levels.length) {
+		grow();
+		slot = slotOf(blockHeight);
+	    }
+	    heights[slot] = blockHeight;
+	    levels[slot] = new BlockStack();
+	    heightCount++;
+	}
+	levels[slot].push(size++);
+    }
+
+    /**
+     * Remove the top block of the column from the index.
+     *
+     * @param blockHeight
+     *            the top block height
+     */
+    public void remove(int blockHeight) {
+	BlockStack stack = levelsOf(blockHeight);
+	if (stack == null || stack.size() == 0 || stack.peek() != size - 1)
+	    throw new IllegalStateException("Top block is not " + blockHeight);
+	stack.pop();
+	size--;
+    }
+
+    /**
+     * Get the number of blocks above the highest block of the given height.
+     *
+     * @param blockHeight
+     *            the block height
+     * @return the number of blocks, -1 if no block has this height
+     */
+    public int depthOf(int blockHeight) {
+	BlockStack stack = levelsOf(blockHeight);
+	if (stack == null || stack.size() == 0)
+	    return -1;
+	return size - 1 - stack.peek();
+    }
+
+    /**
+     * Get the number of blocks of the given height.
+     *
+     * @param blockHeight
+     *            the block height
+     * @return the number of blocks
+     */
+    public int count(int blockHeight) {
+	BlockStack stack = levelsOf(blockHeight);
+	return stack == null ? 0 : stack.size();
+    }
+
+    /**
+     * Get the number of indexed blocks.
+     *
+     * @return the number of blocks
+     */
+    public int size() {
+	return size;
+    }
+}
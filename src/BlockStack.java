@@ -0,0 +1,95 @@
+import java.util.Arrays;
+
+/**
+ * <p>Growable stack of block heights backed by an int array.</p>
+ *
+ * <p>Replaces {@link java.util.Stack} for block storage: heights are not
+ * boxed, no monitor is taken and push/pop do not allocate once the array
+ * has grown to the needed capacity.</p>
+ */
+public class BlockStack implements BlockView {
+
+    /** Initial capacity of an empty stack. */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** The block heights, from the bottom to the top block. */
+    private int[] blocks;
+
+    /** Number of blocks in the stack. */
+    private int size;
+
+    /**
+     * Instantiates a new empty block stack.
+     */
+    public BlockStack() {
+	this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new empty block stack with the given capacity.
+     *
+     * @param capacity
+     *            the initial capacity
+     */
+    public BlockStack(int capacity) {
+	this.blocks = new int[Math.max(capacity, DEFAULT_CAPACITY)];
+    }
+
+    /**
+     * Push a block on top of the stack.
+     *
+     * @param blockHeight
+     *            the block height
+     */
+    public void push(int blockHeight) {
+	if (size == blocks.length)
+	    blocks = Arrays.copyOf(blocks, size << 1);
+	blocks[size++] = blockHeight;
+    }
+
+    /**
+     * Remove the top block of the stack.
+     *
+     * @return the removed block height
+     */
+    public int pop() {
+	if (size == 0)
+	    throw new IllegalStateException("No blocks to remove");
+	return blocks[--size];
+    }
+
+    @Override
+    public int size() {
+	return size;
+    }
+
+    @Override
+    public int get(int index) {
+	if (index < 0 || index >= size)
+	    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	return blocks[index];
+    }
+
+    @Override
+    public int peek() {
+	return size == 0 ? 0 : blocks[size - 1];
+    }
+
+    @Override
+    public boolean contains(int blockHeight) {
+	for (int x = size - 1; x >= 0; x--) {
+	    if (blocks[x] == blockHeight)
+		return true;
+	}
+	return false;
+    }
+
+    /**
+     * Copy the block heights to a new array.
+     *
+     * @return the block heights, from the bottom to the top block
+     */
+    public int[] toArray() {
+	return Arrays.copyOf(blocks, size);
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Read-only view over the block heights of a column, from the bottom block
+ * (index 0) to the top block.
+ */
+public interface BlockView {
+
+    /**
+     * Get the number of blocks.
+     *
+     * @return the number of blocks
+     */
+    int size();
+
+    /**
+     * Get the block height at the given index.
+     *
+     * @param index
+     *            the block index, 0 being the bottom block
+     * @return the block height
+     */
+    int get(int index);
+
+    /**
+     * Get the top block height.
+     *
+     * @return the top block height, 0 if empty
+     */
+    int peek();
+
+    /**
+     * Checks if the given block height exists.
+     *
+     * @param blockHeight
+     *            the block height
+     * @return true, if the block height exists
+     */
+    boolean contains(int blockHeight);
+}
@@ -0,0 +1,55 @@
+/**
+ * Factory of {@link BlockView}s over plain arrays.
+ */
+public final class BlockViews {
+
+    private BlockViews() {
+    }
+
+    /**
+     * Get a read-only view over the given block heights, without copying
+     * them. The array must not change while it is viewed.
+     *
+     * @param blocks
+     *            the block heights, from the bottom block
+     * @return the view
+     */
+    public static BlockView of(int[] blocks) {
+	return new ArrayBlocks(blocks);
+    }
+
+    /**
+     * Block heights read in place from an array.
+     */
+    private static class ArrayBlocks implements BlockView {
+	private final int[] blocks;
+
+	ArrayBlocks(int[] blocks) {
+	    this.blocks = blocks;
+	}
+
+	@Override
+	public int size() {
+	    return blocks.length;
+	}
+
+	@Override
+	public int get(int index) {
+	    return blocks[index];
+	}
+
+	@Override
+	public int peek() {
+	    return blocks.length == 0 ? 0 : blocks[blocks.length - 1];
+	}
+
+	@Override
+	public boolean contains(int blockHeight) {
+	    for (int x = blocks.length - 1; x >= 0; x--) {
+		if (blocks[x] == blockHeight)
+		    return true;
+	    }
+	    return false;
+	}
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * <p>State of a {@link RobotControl} run between two moves, in a fixed
+ * binary layout.</p>
+ *
+ * <p>Layout, big endian:<br>
+ * int magic "RBC1", int version, long scenario fingerprint<br>
+ * long number of moves, byte mode (0 Parts A to C, 1 Part D, 2 Part E)<br>
+ * int arm 1 height, int arm 2 width, int arm 3 depth<br>
+ * int required cursor, long Hanoi position, int blocks moved of the
+ * current Hanoi group<br>
+ * int column count, then per column: int position, int block count and the
+ * block heights from the bottom block<br>
+ * int CRC32 of all previous bytes</p>
+ *
+ * <p>The fingerprint is a CRC32 of the scenario arguments, so a checkpoint
+ * is never resumed against another scenario.</p>
+ */
+public final class Checkpoint {
+
+    /** Checkpoint magic, "RBC1". */
+    public static final int MAGIC = 0x52424331;
+
+    /** Checkpoint format version. */
+    public static final int VERSION = 1;
+
+    /** Mode of Parts A, B and C. */
+    public static final byte BULK = 0;
+
+    /** Mode of Part D. */
+    public static final byte REQUIRED = 1;
+
+    /** Mode of Part E. */
+    public static final byte ORDERED = 2;
+
+    /** Size of the fixed fields before the columns. */
+    private static final int FIXED_SIZE = 4 + 4 + 8 + 8 + 1 + 4 * 3 + 4 + 8 + 4 + 4;
+
+    private final long fingerprint;
+    private final long moves;
+    private final byte mode;
+    private final int armOneHeight;
+    private final int armTwoWidth;
+    private final int armThreeDepth;
+    private final int requiredCursor;
+    private final long hanoiPosition;
+    private final int groupProgress;
+
+    /** Track positions of the columns. */
+    private final int[] positions;
+
+    /** Blocks of each column, from the bottom block. */
+    private final int[][] blocks;
+
+    private Checkpoint(long fingerprint, long moves, byte mode, int armOneHeight, int armTwoWidth,
+	    int armThreeDepth, int requiredCursor, long hanoiPosition, int groupProgress, int[] positions,
+	    int[][] blocks) {
+	this.fingerprint = fingerprint;
+	this.moves = moves;
+	this.mode = mode;
+	this.armOneHeight = armOneHeight;
+	this.armTwoWidth = armTwoWidth;
+	this.armThreeDepth = armThreeDepth;
+	this.requiredCursor = requiredCursor;
+	this.hanoiPosition = hanoiPosition;
+	this.groupProgress = groupProgress;
+	this.positions = positions;
+	this.blocks = blocks;
+    }
+
+    /**
+     * Compute the fingerprint of a scenario.
+     *
+     * @param barHeights
+     *            the bar heights
+     * @param blockHeights
+     *            the block heights
+     * @param required
+     *            the required ordering
+     * @param ordered
+     *            the ordered argument
+     * @return the fingerprint
+     */
+    public static long fingerprint(int[] barHeights, int[] blockHeights, int[] required, boolean ordered) {
+	CRC32 crc = new CRC32();
+	ByteBuffer buffer = ByteBuffer.allocate(4 * (3 + barHeights.length + blockHeights.length + required.length) + 1);
+	for (int[] values : new int[][] { barHeights, blockHeights, required }) {
+	    buffer.putInt(values.length);
+	    for (int value : values) {
+		buffer.putInt(value);
+	    }
+	}
+	buffer.put((byte) (ordered ? 1 : 0));
+	crc.update(buffer.array());
+	return crc.getValue();
+    }
+
+    /**
+     * Encode the state of a run.
+     *
+     * @return the encoded checkpoint
+     */
+    static byte[] encode(long fingerprint, long moves, byte mode, int armOneHeight, int armTwoWidth,
+	    int armThreeDepth, int requiredCursor, long hanoiPosition, int groupProgress, Track track) {
+	List<Column> columns = track.getColumns();
+	int size = FIXED_SIZE + 4;
+	for (Column column : columns) {
+	    size += 8 + 4 * column.getBlockCount();
+	}
+	ByteBuffer buffer = ByteBuffer.allocate(size);
+	buffer.putInt(MAGIC).putInt(VERSION).putLong(fingerprint).putLong(moves).put(mode);
+	buffer.putInt(armOneHeight).putInt(armTwoWidth).putInt(armThreeDepth);
+	buffer.putInt(requiredCursor).putLong(hanoiPosition).putInt(groupProgress);
+	buffer.putInt(columns.size());
+	for (Column column : columns) {
+	    BlockView view = column.getBlocks();
+	    buffer.putInt(column.getPosition()).putInt(view.size());
+	    for (int x = 0; x < view.size(); x++) {
+		buffer.putInt(view.get(x));
+	    }
+	}
+	CRC32 crc = new CRC32();
+	crc.update(buffer.array(), 0, buffer.position());
+	buffer.putInt((int) crc.getValue());
+	return buffer.array();
+    }
+
+    /**
+     * Read a checkpoint file.
+     *
+     * @param file
+     *            the checkpoint file
+     * @return the checkpoint
+     * @throws IOException
+     *             if the file cannot be read or is not a valid checkpoint
+     */
+    public static Checkpoint read(Path file) throws IOException {
+	byte[] bytes = Files.readAllBytes(file);
+	if (bytes.length < FIXED_SIZE + 4)
+	    throw new IOException("Not a checkpoint: " + file);
+	ByteBuffer buffer = ByteBuffer.wrap(bytes);
+	CRC32 crc = new CRC32();
+	crc.update(bytes, 0, bytes.length - 4);
+	if (buffer.getInt(bytes.length - 4) != (int) crc.getValue() || buffer.getInt() != MAGIC
+		|| buffer.getInt() != VERSION)
+	    throw new IOException("Not a checkpoint or corrupted: " + file);
+
+	long fingerprint = buffer.getLong();
+	long moves = buffer.getLong();
+	byte mode = buffer.get();
+	int armOneHeight = buffer.getInt();
+	int armTwoWidth = buffer.getInt();
+	int armThreeDepth = buffer.getInt();
+	int requiredCursor = buffer.getInt();
+	long hanoiPosition = buffer.getLong();
+	int groupProgress = buffer.getInt();
+	int[] positions = new int[buffer.getInt()];
+	int[][] blocks = new int[positions.length][];
+	for (int x = 0; x < positions.length; x++) {
+	    positions[x] = buffer.getInt();
+	    blocks[x] = new int[buffer.getInt()];
+	    for (int y = 0; y < blocks[x].length; y++) {
+		blocks[x][y] = buffer.getInt();
+	    }
+	}
+	return new Checkpoint(fingerprint, moves, mode, armOneHeight, armTwoWidth, armThreeDepth, requiredCursor,
+		hanoiPosition, groupProgress, positions, blocks);
+    }
+
+    /**
+     * Rebuild the three column track of the checkpoint.
+     *
+     * @param barHeights
+     *            the bar heights
+     * @return the track
+     */
+    public Track toTrack(int[] barHeights) {
+	Track track = new Track(ColumnType.source.getValue());
+	for (int x = 0; x < barHeights.length; x++) {
+	    track.setBar(Track.FIRST_BAR_POSITION + x, barHeights[x]);
+	}
+	for (ColumnType type : ColumnType.values()) {
+	    track.addColumn(type, getBlocks(type.getValue()));
+	}
+	return track;
+    }
+
+    public long getFingerprint() {
+	return fingerprint;
+    }
+
+    /**
+     * Get the number of moves made before the checkpoint.
+     *
+     * @return the number of moves
+     */
+    public long getMoves() {
+	return moves;
+    }
+
+    /**
+     * Get the mode of the run.
+     *
+     * @return {@link #BULK}, {@link #REQUIRED} or {@link #ORDERED}
+     */
+    public byte getMode() {
+	return mode;
+    }
+
+    public int getArmOneHeight() {
+	return armOneHeight;
+    }
+
+    public int getArmTwoWidth() {
+	return armTwoWidth;
+    }
+
+    public int getArmThreeDepth() {
+	return armThreeDepth;
+    }
+
+    /**
+     * Get the number of blocks already in place in the target column.
+     *
+     * @return the index of the next required block, or the number of blocks
+     *         moved in Parts A to C
+     */
+    public int getRequiredCursor() {
+	return requiredCursor;
+    }
+
+    /**
+     * Get the number of Hanoi group moves already completed.
+     *
+     * @return the Hanoi position
+     */
+    public long getHanoiPosition() {
+	return hanoiPosition;
+    }
+
+    /**
+     * Get the number of blocks already moved of the current Hanoi group.
+     *
+     * @return the number of blocks
+     */
+    public int getGroupProgress() {
+	return groupProgress;
+    }
+
+    /**
+     * Get the blocks of the column at a track position.
+     *
+     * @param position
+     *            the track position
+     * @return the blocks from the bottom block, null if there is no column
+     */
+    public int[] getBlocks(int position) {
+	for (int x = 0; x < positions.length; x++) {
+	    if (positions[x] == position)
+		return blocks[x].clone();
+	}
+	return null;
+    }
+}
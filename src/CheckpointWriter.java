@@ -0,0 +1,137 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Writes {@link Checkpoint}s on a background thread.</p>
+ *
+ * <p>The control thread only hands over the encoded checkpoint and never
+ * waits for the disk: if the previous checkpoint is still being written,
+ * the pending one is replaced by the newer one. Every checkpoint is
+ * written to a temporary file which is then renamed over the checkpoint
+ * file, so the file always holds a complete checkpoint.</p>
+ */
+public class CheckpointWriter implements Closeable {
+
+    /** The checkpoint file. */
+    private final Path file;
+
+    /** The temporary file renamed over the checkpoint file. */
+    private final Path temporaryFile;
+
+    /** Latest encoded checkpoint not written yet, null if none. */
+    private final AtomicReference<byte[]> pending = new AtomicReference<>();
+
+    /** The writing thread. */
+    private final Thread writer;
+
+    /** Set once no more checkpoints are submitted. */
+    private volatile boolean closed;
+
+    /** First write failure, reported by {@link #close()}. */
+    private volatile IOException failure;
+
+    /** Number of written checkpoints. */
+    private volatile long written;
+
+    /** Number of checkpoints replaced before being written. */
+    private volatile long skipped;
+
+    /**
+     * Instantiates a new checkpoint writer and starts its thread.
+     *
+     * @param file
+     *            the checkpoint file
+     */
+    public CheckpointWriter(Path file) {
+	this.file = file;
+	this.temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+	this.writer = new Thread(new Runnable() {
+	    @Override
+	    public void run() {
+		CheckpointWriter.this.run();
+	    }
+	}, "checkpoint-writer");
+	writer.setDaemon(true);
+	writer.start();
+    }
+
+    /**
+     * Hand over a checkpoint to be written. Never blocks.
+     *
+     * @param checkpoint
+     *            the encoded checkpoint
+     */
+    public void submit(byte[] checkpoint) {
+	if (pending.getAndSet(checkpoint) != null)
+	    skipped++;
+	LockSupport.unpark(writer);
+    }
+
+    private void run() {
+	while (true) {
+	    byte[] checkpoint = pending.getAndSet(null);
+	    if (checkpoint != null) {
+		write(checkpoint);
+	    } else if (closed) {
+		return;
+	    } else {
+		LockSupport.park(this);
+	    }
+	}
+    }
+
+    private void write(byte[] checkpoint) {
+	try {
+	    Files.write(temporaryFile, checkpoint);
+	    Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	    written++;
+	} catch (IOException e) {
+	    if (failure == null)
+		failure = e;
+	}
+    }
+
+    /**
+     * Get the number of written checkpoints.
+     *
+     * @return the number of checkpoints
+     */
+    public long getWrittenCount() {
+	return written;
+    }
+
+    /**
+     * Get the number of checkpoints replaced by a newer one before being
+     * written.
+     *
+     * @return the number of checkpoints
+     */
+    public long getSkippedCount() {
+	return skipped;
+    }
+
+    /**
+     * Write the pending checkpoint, if any, and stop the thread.
+     *
+     * @throws IOException
+     *             if a checkpoint could not be written
+     */
+    @Override
+    public void close() throws IOException {
+	closed = true;
+	LockSupport.unpark(writer);
+	try {
+	    writer.join();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new IOException("Interrupted while writing the last checkpoint", e);
+	}
+	if (failure != null)
+	    throw failure;
+    }
+}
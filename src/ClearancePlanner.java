@@ -0,0 +1,306 @@
+/**
+ * <p>Compiles a move along the clearance profile of arm 2's horizontal
+ * travel, climbing only as high as each position needs.</p>
+ *
+ * <p>The fixed path of {@link RobotControl} raises arm 1 above the highest
+ * obstacle of the whole move, and above the highest bar, before extending,
+ * and again above the highest obstacle plus the block after picking. This
+ * planner instead walks the positions arm 2 goes through, first toward the
+ * starting column empty-handed, then toward the ending column holding the
+ * block, and bounds arm 1 at each position x by:<br>
+ * 1- arm 2 above every obstacle it spans: the highest obstacle from 1 to
+ * x-1<br>
+ * 2- arm 3, or the held block, above the obstacle at x</p>
+ *
+ * <p>Arm 1 rises only when the next position needs it and is lowered as soon
+ * as no later position needs the height, down to the highest bound left.
+ * The move ends at the arm 1 height the fixed path ends at, or at the
+ * highest bound of the move if that is lower, so arm 1 never parks above
+ * what the fixed path would have left it at. Every compiled path is
+ * checked step by step against the bounds before it is used.</p>
+ *
+ * <p>The arm 1 steps of each move are compared with those of the fixed path
+ * from the same state, and the difference is reported as saved steps.</p>
+ */
+public class ClearancePlanner {
+
+    /** Obstacle height at each position before the pick. */
+    private int[] heights = new int[0];
+
+    /** Highest obstacle from position 1 to each position, before the pick. */
+    private int[] limits = new int[0];
+
+    /** Highest obstacle from position 1 to each position, after the pick. */
+    private int[] carryLimits = new int[0];
+
+    /** Positions arm 2 goes through. */
+    private int[] positions = new int[0];
+
+    /** Lowest arm 1 height at each position of the path. */
+    private int[] bounds = new int[0];
+
+    /** Highest bound from each position of the path to its end. */
+    private int[] suffixBounds = new int[0];
+
+    /** Arm 1 height at the end of the fixed path of the current move. */
+    private int fixedEndHeight;
+
+    /** Number of compiled moves. */
+    private long moves;
+
+    /** Arm 1 steps of the compiled moves. */
+    private long armOneSteps;
+
+    /** Arm 1 steps the fixed path would have taken. */
+    private long fixedArmOneSteps;
+
+    /** Arm 1 steps saved by the last move. */
+    private int lastSavedSteps;
+
+    /**
+     * Compile the move of the top block between two columns.
+     *
+     * @param program
+     *            the program to add the move to
+     * @param track
+     *            the track, before the move
+     * @param fromPosition
+     *            the position of the column the block is picked from
+     * @param toPosition
+     *            the position of the column the block is dropped in
+     * @param armOneHeight
+     *            arm 1 height
+     * @param armTwoWidth
+     *            arm 2 width
+     * @param armThreeDepth
+     *            arm 3 depth
+     * @return arm 1 height at the end of the move; arm 2 ends at the ending
+     *         column and arm 3 at depth 0
+     */
+    public int compile(MotionProgram program, Track track, int fromPosition, int toPosition, int armOneHeight,
+	    int armTwoWidth, int armThreeDepth) {
+	int farthest = Math.max(armTwoWidth, Math.max(fromPosition, toPosition));
+	int block = track.getColumn(fromPosition).getTopBlockHeight();
+	prepare(track, farthest, fromPosition, block);
+
+	// positions: toward the starting column, then toward the ending column
+	int pickIndex = Math.abs(armTwoWidth - fromPosition);
+	int length = pickIndex + Math.abs(fromPosition - toPosition) + 2;
+	if (positions.length < length) {
+	    positions = new int[length];
+	    bounds = new int[length];
+	    suffixBounds = new int[length];
+	}
+	int x = armTwoWidth;
+	for (int index = 0; index <= pickIndex; index++) {
+	    positions[index] = x;
+	    bounds[index] = Math.max(limits[x] + 1, 2);
+	    x += Integer.signum(fromPosition - x);
+	}
+	x = fromPosition;
+	for (int index = pickIndex + 1; index < length; index++) {
+	    positions[index] = x;
+	    int below = x == fromPosition ? heights[x] - block : heights[x];
+	    bounds[index] = Math.max(Math.max(carryLimits[x - 1], below + block) + 1, 2);
+	    x += Integer.signum(toPosition - x);
+	}
+	// end no higher than the fixed path nor than the move needs
+	int fixedSteps = fixedArmOneSteps(track, fromPosition, toPosition, armOneHeight, block);
+	int peak = 0;
+	for (int index = 0; index < length; index++) {
+	    peak = Math.max(peak, bounds[index]);
+	}
+	bounds[length - 1] = Math.max(bounds[length - 1], Math.min(fixedEndHeight, peak));
+	suffixBounds[length - 1] = bounds[length - 1];
+	for (int index = length - 2; index >= 0; index--) {
+	    suffixBounds[index] = Math.max(bounds[index], suffixBounds[index + 1]);
+	}
+
+	int start = program.size();
+	int height = armOneHeight;
+	program.setPhase(MovePhase.RAISE);
+	if (armThreeDepth > 0)
+	    program.add(Primitive.RAISE, armThreeDepth);
+	int steps = 0;
+	for (int index = 0; index < length; index++) {
+	    int target = Math.max(bounds[index], Math.min(height, suffixBounds[index]));
+	    boolean moving = index > 0 && positions[index] != positions[index - 1];
+	    // lower before moving if the current position allows it
+	    boolean lowerFirst = target < height && (index == 0 || target >= bounds[index - 1]);
+	    if (target > height || lowerFirst) {
+		steps += Math.abs(target - height);
+		program.add(target > height ? Primitive.UP : Primitive.DOWN, Math.abs(target - height));
+		height = target;
+	    }
+	    if (moving) {
+		program.setPhase(index <= pickIndex ? MovePhase.EXTEND : MovePhase.CONTRACT);
+		program.add(positions[index] > positions[index - 1] ? Primitive.EXTEND : Primitive.CONTRACT, 1);
+	    }
+	    if (target < height) {
+		steps += height - target;
+		program.add(Primitive.DOWN, height - target);
+		height = target;
+	    }
+	    if (index == pickIndex) {
+		// arm 3 down to the top block, pick and back up
+		program.setPhase(MovePhase.PICK);
+		int depth = height - heights[fromPosition] - 1;
+		program.add(Primitive.LOWER, depth);
+		program.add(Primitive.PICK, 1);
+		program.add(Primitive.RAISE, depth);
+	    }
+	}
+	// arm 3 down to the top of the ending column, drop and back up
+	program.setPhase(MovePhase.DROP);
+	int depth = height - heights[toPosition] - block - 1;
+	program.add(Primitive.LOWER, depth);
+	program.add(Primitive.DROP, 1);
+	program.add(Primitive.RAISE, depth);
+
+	verify(program, start, armOneHeight, armTwoWidth, armThreeDepth, fromPosition, block);
+	moves++;
+	armOneSteps += steps;
+	fixedArmOneSteps += fixedSteps;
+	lastSavedSteps = fixedSteps - steps;
+	return height;
+    }
+
+    /**
+     * Copy the obstacle heights and compute their running maximum, before
+     * and after the pick.
+     */
+    private void prepare(Track track, int farthest, int fromPosition, int block) {
+	if (heights.length < farthest + 1) {
+	    heights = new int[farthest + 1];
+	    limits = new int[farthest + 1];
+	    carryLimits = new int[farthest + 1];
+	}
+	for (int x = 1; x <= farthest; x++) {
+	    heights[x] = track.getHeight(x);
+	    limits[x] = Math.max(limits[x - 1], heights[x]);
+	    carryLimits[x] = Math.max(carryLimits[x - 1], x == fromPosition ? heights[x] - block : heights[x]);
+	}
+    }
+
+    /**
+     * Replay the compiled move and check every position it goes through.
+     *
+     * @throws IllegalStateException
+     *             if the move hits an obstacle
+     */
+    private void verify(MotionProgram program, int start, int armOne, int armTwo, int armThree, int fromPosition,
+	    int block) {
+	int held = 0;
+	int[] spanned = limits;
+	for (int x = start; x < program.size(); x++) {
+	    Primitive primitive = program.getPrimitive(x);
+	    int count = program.getSteps(x);
+	    switch (primitive) {
+	    case UP:
+		armOne += count;
+		break;
+	    case RAISE:
+		armThree -= count;
+		break;
+	    case DOWN:
+		armOne -= count;
+		check(spanned, armOne, armTwo, armThree, held, fromPosition);
+		break;
+	    case LOWER:
+		armThree += count;
+		check(spanned, armOne, armTwo, armThree, held, fromPosition);
+		break;
+	    case EXTEND:
+	    case CONTRACT:
+		for (int step = 0; step < count; step++) {
+		    armTwo += primitive == Primitive.EXTEND ? 1 : -1;
+		    check(spanned, armOne, armTwo, armThree, held, fromPosition);
+		}
+		break;
+	    case PICK:
+		if (armTwo != fromPosition || armOne - 1 - armThree != heights[armTwo])
+		    throw new IllegalStateException("Clearance path does not reach the top block");
+		spanned = carryLimits;
+		held = block;
+		break;
+	    case DROP:
+		if (armTwo == fromPosition || armOne - 1 - armThree - held != heights[armTwo])
+		    throw new IllegalStateException("Clearance path does not reach the ending column");
+		// only arm 3 rises after the drop
+		return;
+	    }
+	}
+    }
+
+    private void check(int[] spanned, int armOne, int armTwo, int armThree, int held, int fromPosition) {
+	int below = held > 0 && armTwo == fromPosition ? heights[armTwo] - held : heights[armTwo];
+	if (armOne < 2 || armThree < 0 || armThree >= armOne || spanned[armTwo - 1] >= armOne
+		|| below >= armOne - armThree - held)
+	    throw new IllegalStateException("Clearance path hits an obstacle at position " + armTwo);
+    }
+
+    /**
+     * Arm 1 steps of the fixed path of {@link RobotControl} for the same
+     * move: up to the arm pass height, then to the block pass height, then
+     * down to the drop height if arm 2 still clears every obstacle. Sets
+     * the height the fixed path ends at.
+     */
+    private int fixedArmOneSteps(Track track, int fromPosition, int toPosition, int armOneHeight, int block) {
+	int farthest = Math.max(fromPosition, toPosition);
+	int highestBar = track.getHighestBar();
+	int armPass = Math.max(limits[farthest], highestBar) + 1;
+	int blockPass = block + Math.max(Math.max(track.maxObstacle(Math.min(fromPosition, toPosition),
+		fromPosition - 1), track.maxObstacle(fromPosition + 1, farthest)), highestBar);
+	int carry = Math.max(armPass - 1, blockPass) + 1;
+	int dropDepth = carry - heights[toPosition] - block - 1;
+	int dropPass = Math.max(Math.max(carryLimits[toPosition - 1], heights[toPosition] + block), highestBar);
+	fixedEndHeight = carry - dropDepth > dropPass ? carry - dropDepth : carry;
+	return Math.abs(armPass - armOneHeight) + Math.abs(carry - armPass) + Math.abs(carry - fixedEndHeight);
+    }
+
+    /**
+     * Get the number of compiled moves.
+     *
+     * @return the number of moves
+     */
+    public long getMoveCount() {
+	return moves;
+    }
+
+    /**
+     * Get the arm 1 steps of all compiled moves.
+     *
+     * @return the number of steps
+     */
+    public long getArmOneSteps() {
+	return armOneSteps;
+    }
+
+    /**
+     * Get the arm 1 steps the fixed path would have taken for the same
+     * moves.
+     *
+     * @return the number of steps
+     */
+    public long getFixedArmOneSteps() {
+	return fixedArmOneSteps;
+    }
+
+    /**
+     * Get the arm 1 steps saved by the last compiled move.
+     *
+     * @return the number of steps, negative if the fixed path was shorter
+     */
+    public int getLastSavedSteps() {
+	return lastSavedSteps;
+    }
+
+    /**
+     * Get the arm 1 steps saved by all compiled moves.
+     *
+     * @return the number of steps
+     */
+    public long getSavedSteps() {
+	return fixedArmOneSteps - armOneSteps;
+    }
+}
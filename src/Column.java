@@ -0,0 +1,236 @@
+import java.util.Arrays;
+
+public class Column {
+    /** Blocks above the base blocks. */
+    private BlockStack blocks;
+    private ColumnType type;
+
+    /** Bottom blocks read in place, null if every block is in the stack. */
+    private BlockView base;
+
+    /** Number of base blocks still in the column. */
+    private int baseSize;
+
+    /** Base levels where the highest block so far increases. */
+    private int[] baseMaxLevels;
+
+    /** Highest base block from each of these levels. */
+    private int[] baseMaxBlocks;
+
+    /** Number of levels where the highest base block increases. */
+    private int baseMaxCount;
+
+    /** Read-only view over the base and stacked blocks. */
+    private final BlockView view = new LayeredBlocks();
+
+    /** Track position of the column. */
+    private final int position;
+
+    /** Total height of all blocks, kept up to date by addBlock/removeBlock. */
+    private int height;
+
+    /** Highest block at or below each stack level. */
+    private BlockStack maxBlocks;
+
+    /** Obstacle index kept up to date with this column height. */
+    private ObstacleHeights obstacleIndex;
+
+    /** Levels of each block height, null until the first depth query. */
+    private BlockIndex blockIndex;
+
+    public Column(ColumnType type, int[] blocks) {
+	this(type.getValue(), blocks);
+	this.type = type;
+    }
+
+    public Column(int position, int[] blocks) {
+	this.position = position;
+	int capacity = blocks == null ? 0 : blocks.length;
+	this.blocks = new BlockStack(capacity);
+	this.maxBlocks = new BlockStack(capacity);
+	if (blocks != null) {
+	    for (int block : blocks) {
+		addBlock(block);
+	    }
+	}
+    }
+
+    /**
+     * <p>Create a column over the given blocks without copying them: the
+     * blocks are read in place until they are removed, and blocks added
+     * later are stacked above them. This lets a column start from millions
+     * of blocks, such as those of a {@link ScenarioFile}, with a single pass
+     * over them.</p>
+     *
+     * @param type
+     *            the column type
+     * @param base
+     *            the initial blocks, bottom first; they must not change
+     *            while the column uses them
+     * @return the column
+     */
+    public static Column of(ColumnType type, BlockView base) {
+	return new Column(type, base, base.size());
+    }
+
+    private Column(ColumnType type, BlockView base, int baseSize) {
+	this.position = type.getValue();
+	this.type = type;
+	this.blocks = new BlockStack();
+	this.maxBlocks = new BlockStack();
+	this.base = base;
+	this.baseSize = baseSize;
+	this.baseMaxLevels = new int[16];
+	this.baseMaxBlocks = new int[16];
+	int highest = 0;
+	for (int x = 0; x < baseSize; x++) {
+	    int block = base.get(x);
+	    if (block <= 0)
+		throw new IllegalArgumentException("Block heights must be positive: " + block + " at " + x);
+	    height += block;
+	    if (block > highest) {
+		if (baseMaxCount == baseMaxLevels.length) {
+		    baseMaxLevels = Arrays.copyOf(baseMaxLevels, baseMaxCount << 1);
+		    baseMaxBlocks = Arrays.copyOf(baseMaxBlocks, baseMaxCount << 1);
+		}
+		baseMaxLevels[baseMaxCount] = x;
+		baseMaxBlocks[baseMaxCount++] = block;
+		highest = block;
+	    }
+	}
+    }
+
+    public void setObstacleIndex(ObstacleHeights obstacleIndex) {
+	this.obstacleIndex = obstacleIndex;
+	if (obstacleIndex != null)
+	    obstacleIndex.set(position, height);
+    }
+
+    public ColumnType getType() {
+	return type;
+    }
+
+    public int getPosition() {
+	return position;
+    }
+
+    public int getHeight() {
+	return height;
+    }
+
+    public int getBlockCount() {
+	return baseSize + blocks.size();
+    }
+
+    public int getMaxBlockHeight() {
+	if (blocks.size() > 0 || baseSize == 0)
+	    return maxBlocks.peek();
+	// last level below the remaining base where the highest block increases
+	int low = 0;
+	int high = baseMaxCount - 1;
+	while (low < high) {
+	    int middle = (low + high + 1) >>> 1;
+	    if (baseMaxLevels[middle] < baseSize)
+		low = middle;
+	    else
+		high = middle - 1;
+	}
+	return baseMaxBlocks[low];
+    }
+
+    /**
+     * Get a read-only view of the blocks, bottom first. Blocks only change
+     * through {@link #addBlock(int)} and {@link #removeBlock()}, which keep
+     * the height, highest block and indexes up to date.
+     *
+     * @return the blocks
+     */
+    public BlockView getBlocks() {
+	return view;
+    }
+
+    public int getTopBlockHeight() {
+	if (blocks.size() == 0 && baseSize > 0)
+	    return base.get(baseSize - 1);
+	return this.blocks.peek();
+    }
+
+    /**
+     * <p>Get the number of blocks above the highest block of the given
+     * height.</p>
+     *
+     * <p>The first query indexes the blocks of the column, so columns that
+     * are never searched, or whose base is read in place, do not pay for
+     * the index. Later queries take constant expected time.</p>
+     *
+     * @param blockHeight
+     *            the block height
+     * @return the number of blocks, -1 if no block has this height
+     */
+    public int getDepth(int blockHeight) {
+	if (blockIndex == null)
+	    blockIndex = new BlockIndex(getBlocks());
+	return blockIndex.depthOf(blockHeight);
+    }
+
+    public void addBlock(int blockHeight) {
+	this.maxBlocks.push(Math.max(getMaxBlockHeight(), blockHeight));
+	this.blocks.push(blockHeight);
+	this.height += blockHeight;
+	if (blockIndex != null)
+	    blockIndex.add(blockHeight);
+	if (obstacleIndex != null)
+	    obstacleIndex.set(position, height);
+    }
+
+    public int removeBlock() {
+	int blockHeight;
+	if (blocks.size() == 0 && baseSize > 0) {
+	    blockHeight = base.get(--baseSize);
+	} else {
+	    blockHeight = this.blocks.pop();
+	    this.maxBlocks.pop();
+	}
+	this.height -= blockHeight;
+	if (blockIndex != null)
+	    blockIndex.remove(blockHeight);
+	if (obstacleIndex != null)
+	    obstacleIndex.set(position, height);
+	return blockHeight;
+    }
+
+    /**
+     * Blocks of a column: the remaining base blocks, if any, then the
+     * stacked blocks.
+     */
+    private class LayeredBlocks implements BlockView {
+
+	@Override
+	public int size() {
+	    return getBlockCount();
+	}
+
+	@Override
+	public int get(int index) {
+	    if (index < 0 || index >= getBlockCount())
+		throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getBlockCount());
+	    return index < baseSize ? base.get(index) : blocks.get(index - baseSize);
+	}
+
+	@Override
+	public int peek() {
+	    return getTopBlockHeight();
+	}
+
+	@Override
+	public boolean contains(int blockHeight) {
+	    if (blocks.contains(blockHeight))
+		return true;
+	    for (int x = baseSize - 1; x >= 0; x--) {
+		if (base.get(x) == blockHeight)
+		    return true;
+	    }
+	    return false;
+	}
+    }
+}
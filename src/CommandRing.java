@@ -0,0 +1,194 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Bounded single-producer/single-consumer ring buffer of primitive
+ * segments.</p>
+ *
+ * <p>Each segment is packed in a long (primitive ordinal and steps), so
+ * passing a command between threads never allocates. The producer and the
+ * consumer each own one sequence, published with an ordered store, and keep
+ * a cached copy of the other one to avoid reading it on every call. A full
+ * ring blocks the producer (backpressure) and an empty ring blocks the
+ * consumer, both spinning briefly, then yielding, then parking for doubling
+ * times up to a bound. A planner far ahead of a slow robot therefore sleeps
+ * instead of burning a core, and notices a closed ring or free space within
+ * the longest park.</p>
+ */
+public class CommandRing {
+
+    /** Spins before a waiting thread starts yielding. */
+    private static final int SPIN_TRIES = 100;
+
+    /** Tries, spins included, before a waiting thread starts parking. */
+    private static final int YIELD_TRIES = SPIN_TRIES + 100;
+
+    /** First park of a waiting thread. */
+    private static final long MIN_PARK_NANOS = 1000;
+
+    /** Longest park of a waiting thread. */
+    private static final long MAX_PARK_NANOS = 1000000;
+
+    /** Packed value marking the end of the commands. */
+    private static final long END = -1L;
+
+    /** Segments, capacity is a power of two. */
+    private final long[] buffer;
+
+    /** Mask giving the buffer index of a sequence. */
+    private final int mask;
+
+    /** Next sequence to write, only written by the producer. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Next sequence to read, only written by the consumer. */
+    private final AtomicLong head = new AtomicLong();
+
+    /** Producer copy of the head. */
+    private long cachedHead;
+
+    /** Consumer copy of the tail. */
+    private long cachedTail;
+
+    /** Set when either side gives up, unblocks the other one. */
+    private volatile boolean closed;
+
+    /** Number of times the producer waited for free space. */
+    private final AtomicLong producerWaits = new AtomicLong();
+
+    /** Number of times the consumer waited for a command. */
+    private final AtomicLong consumerWaits = new AtomicLong();
+
+    /**
+     * Instantiates a new command ring.
+     *
+     * @param capacity
+     *            the number of segments, rounded up to a power of two
+     */
+    public CommandRing(int capacity) {
+	if (capacity < 1)
+	    throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+	int size = Integer.highestOneBit(capacity);
+	if (size < capacity)
+	    size <<= 1;
+	this.buffer = new long[size];
+	this.mask = size - 1;
+    }
+
+    /**
+     * Add a segment, waiting while the ring is full.
+     *
+     * @param primitive
+     *            the primitive
+     * @param steps
+     *            the number of steps
+     * @throws IllegalStateException
+     *             if the ring was closed
+     */
+    public void put(Primitive primitive, int steps) {
+	put(((long) primitive.ordinal() << 32) | steps);
+    }
+
+    /**
+     * Mark the end of the commands.
+     */
+    public void end() {
+	put(END);
+    }
+
+    private void put(long command) {
+	long sequence = tail.get();
+	if (sequence - cachedHead >= buffer.length) {
+	    cachedHead = head.get();
+	    if (sequence - cachedHead >= buffer.length) {
+		producerWaits.incrementAndGet();
+		int tries = 0;
+		while (sequence - (cachedHead = head.get()) >= buffer.length) {
+		    checkOpen();
+		    backOff(tries++);
+		}
+	    }
+	}
+	buffer[(int) sequence & mask] = command;
+	tail.lazySet(sequence + 1);
+    }
+
+    /**
+     * Take the next segment, waiting while the ring is empty.
+     *
+     * @return the packed segment, see {@link #primitiveOf(long)} and
+     *         {@link #stepsOf(long)}, or a negative value at the end
+     * @throws IllegalStateException
+     *             if the ring was closed
+     */
+    public long take() {
+	long sequence = head.get();
+	if (sequence >= cachedTail) {
+	    cachedTail = tail.get();
+	    if (sequence >= cachedTail) {
+		consumerWaits.incrementAndGet();
+		int tries = 0;
+		while (sequence >= (cachedTail = tail.get())) {
+		    checkOpen();
+		    backOff(tries++);
+		}
+	    }
+	}
+	long command = buffer[(int) sequence & mask];
+	head.lazySet(sequence + 1);
+	return command;
+    }
+
+    /**
+     * Get the primitive of a packed segment.
+     *
+     * @param command
+     *            the packed segment
+     * @return the primitive
+     */
+    public static Primitive primitiveOf(long command) {
+	return Primitive.valueOf((int) (command >>> 32));
+    }
+
+    /**
+     * Get the number of steps of a packed segment.
+     *
+     * @param command
+     *            the packed segment
+     * @return the number of steps
+     */
+    public static int stepsOf(long command) {
+	return (int) command;
+    }
+
+    /**
+     * Close the ring, waking up and failing a waiting producer or consumer.
+     */
+    public void close() {
+	closed = true;
+    }
+
+    private void checkOpen() {
+	if (closed)
+	    throw new IllegalStateException("Command ring closed");
+    }
+
+    private static void backOff(int tries) {
+	if (tries >= YIELD_TRIES)
+	    LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << Math.min(tries - YIELD_TRIES, 20), MAX_PARK_NANOS));
+	else if (tries >= SPIN_TRIES)
+	    Thread.yield();
+    }
+
+    public int getCapacity() {
+	return buffer.length;
+    }
+
+    public long getProducerWaits() {
+	return producerWaits.get();
+    }
+
+    public long getConsumerWaits() {
+	return consumerWaits.get();
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * <p>Robot driver that only counts the primitive operations it receives and
+ * follows the arm positions to record their peaks.</p>
+ *
+ * <p>No checks are performed, which makes it the cheapest driver to run a
+ * controller against when only the cost of a scenario is of interest.</p>
+ */
+public class CountingRobot implements SegmentDriver {
+
+    /** Number of steps for each primitive, indexed by ordinal. */
+    private final long[] steps = new long[Primitive.values().length];
+
+    /** Arm 1 height. */
+    private int armOneHeight = 2;
+
+    /** Arm 2 width. */
+    private int armTwoWidth = 1;
+
+    /** Arm 3 depth. */
+    private int armThreeDepth = 0;
+
+    /** Highest arm 1 height reached. */
+    private int peakArmOneHeight = armOneHeight;
+
+    /** Farthest arm 2 width reached. */
+    private int peakArmTwoWidth = armTwoWidth;
+
+    /** Deepest arm 3 depth reached. */
+    private int peakArmThreeDepth = armThreeDepth;
+
+    @Override
+    public void move(Primitive primitive, int count) {
+	steps[primitive.ordinal()] += count;
+	switch (primitive) {
+	case UP:
+	    armOneHeight += count;
+	    peakArmOneHeight = Math.max(peakArmOneHeight, armOneHeight);
+	    break;
+	case DOWN:
+	    armOneHeight -= count;
+	    break;
+	case EXTEND:
+	    armTwoWidth += count;
+	    peakArmTwoWidth = Math.max(peakArmTwoWidth, armTwoWidth);
+	    break;
+	case CONTRACT:
+	    armTwoWidth -= count;
+	    break;
+	case LOWER:
+	    armThreeDepth += count;
+	    peakArmThreeDepth = Math.max(peakArmThreeDepth, armThreeDepth);
+	    break;
+	case RAISE:
+	    armThreeDepth -= count;
+	    break;
+	default:
+	    break;
+	}
+    }
+
+    @Override
+    public void up() {
+	move(Primitive.UP, 1);
+    }
+
+    @Override
+    public void down() {
+	move(Primitive.DOWN, 1);
+    }
+
+    @Override
+    public void extend() {
+	move(Primitive.EXTEND, 1);
+    }
+
+    @Override
+    public void contract() {
+	move(Primitive.CONTRACT, 1);
+    }
+
+    @Override
+    public void lower() {
+	move(Primitive.LOWER, 1);
+    }
+
+    @Override
+    public void raise() {
+	move(Primitive.RAISE, 1);
+    }
+
+    @Override
+    public void pick() {
+	move(Primitive.PICK, 1);
+    }
+
+    @Override
+    public void drop() {
+	move(Primitive.DROP, 1);
+    }
+
+    /**
+     * Build the estimate of the operations received so far.
+     *
+     * @param millisPerStep
+     *            simulated duration of one arm step
+     * @return the estimate
+     */
+    public PlanEstimate toEstimate(double millisPerStep) {
+	return new PlanEstimate(steps.clone(), peakArmOneHeight, peakArmTwoWidth, peakArmThreeDepth, millisPerStep);
+    }
+}
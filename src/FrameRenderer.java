@@ -0,0 +1,487 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+/**
+ * <p>Live view of a run, drawn from {@link RobotSnapshot}s at a fixed frame
+ * rate on its own thread.</p>
+ *
+ * <p>The Swing panel of the robot repaints after every primitive, which
+ * limits a run to the rate the event dispatch thread repaints at. This view
+ * instead samples the latest published snapshot once per frame: the control
+ * thread never waits for it, and every snapshot published between two
+ * frames is coalesced into the next one. The view lags the robot by at most
+ * one frame, and shows the final state once closed.</p>
+ *
+ * <p>Frames are drawn into an image by the renderer thread, and only the
+ * regions that changed since the last drawn snapshot are redrawn:<br>
+ * 1- Snapshots of a run share the column stacks that did not change, so a
+ * changed column is found by comparing references, and the changed part of
+ * its stack by walking both stacks down to the blocks they share<br>
+ * 2- The arms are redrawn where they were and where they are<br>
+ * The event dispatch thread is then asked to repaint these regions only,
+ * which copies them from the image.</p>
+ *
+ * <p>Usage: <code>FrameRenderer 734561 321 ordered</code> with the program
+ * arguments, runs the scenario at full speed on a {@link SimulatedRobot}
+ * while showing it.</p>
+ */
+public class FrameRenderer extends JComponent implements Closeable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Default number of frames per second. */
+    public static final int DEFAULT_FRAMES_PER_SECOND = 60;
+
+    /** Width of a track position in pixels, and highest unit height. */
+    private static final int CELL = 24;
+
+    /** Lowest number of units the view is high. */
+    private static final int MIN_ROWS = 16;
+
+    /** Highest image height in pixels; taller tracks are scaled down. */
+    private static final int MAX_IMAGE_HEIGHT = 2048;
+
+    /** Smallest unit height in pixels blocks are outlined at. */
+    private static final int OUTLINE_HEIGHT = 4;
+
+    private static final Color BACKGROUND = Color.WHITE;
+    private static final Color BAR = Color.DARK_GRAY;
+    private static final Color ARM = new Color(0x3C, 0x5A, 0x82);
+    private static final Color OUTLINE = Color.BLACK;
+
+    /** Block color by height, repeated for higher blocks. */
+    private static final Color[] BLOCK_COLORS = { new Color(0xE4, 0x57, 0x2E), new Color(0x29, 0xA3, 0x3D),
+	    new Color(0xF3, 0xA7, 0x12), new Color(0x66, 0x9B, 0xBC), new Color(0x9B, 0x5D, 0xE5) };
+
+    /** The watched controller, publishing the snapshots. */
+    private final transient RobotControl control;
+
+    /** Time between two frames. */
+    private final long frameNanos;
+
+    /** Guards the frame image, drawn by the renderer and copied by paint. */
+    private final transient Object frameLock = new Object();
+
+    /** The rendering thread. */
+    private final transient Thread renderer;
+
+    /** Set once the view stops following the snapshots. */
+    private volatile boolean closed;
+
+    /** The frame, drawn by the renderer thread. */
+    private transient BufferedImage frame;
+
+    /** Last drawn snapshot, null before the first frame. */
+    private transient RobotSnapshot drawn;
+
+    /** Number of units the frame is high. */
+    private int rows;
+
+    /** Height of a unit in pixels. */
+    private double scale;
+
+    /** Number of drawn frames. */
+    private volatile long frames;
+
+    /** Number of snapshots never drawn, coalesced into a later frame. */
+    private volatile long coalesced;
+
+    /** Number of pixels redrawn by all frames. */
+    private volatile long paintedPixels;
+
+    /**
+     * Instantiates a new view and starts its rendering thread.
+     *
+     * @param control
+     *            the watched controller, with snapshots enabled
+     * @param framesPerSecond
+     *            the number of frames per second
+     */
+    public FrameRenderer(RobotControl control, int framesPerSecond) {
+	if (framesPerSecond <= 0)
+	    throw new IllegalArgumentException("Frames per second must be positive: " + framesPerSecond);
+	this.control = control;
+	this.frameNanos = 1000000000L / framesPerSecond;
+	this.frame = new BufferedImage(CELL, CELL * MIN_ROWS, BufferedImage.TYPE_INT_RGB);
+	setPreferredSize(new Dimension(frame.getWidth(), frame.getHeight()));
+	setOpaque(true);
+	this.renderer = new Thread(new Runnable() {
+	    @Override
+	    public void run() {
+		FrameRenderer.this.run();
+	    }
+	}, "frame-renderer");
+	renderer.setDaemon(true);
+	renderer.start();
+    }
+
+    private void run() {
+	long next = System.nanoTime();
+	while (!closed) {
+	    renderFrame();
+	    // keep the frame rate, without catching up on late frames
+	    next += frameNanos;
+	    long wait = next - System.nanoTime();
+	    if (wait > 0)
+		LockSupport.parkNanos(this, wait);
+	    else
+		next = System.nanoTime();
+	}
+	renderFrame();
+    }
+
+    /**
+     * Draw the latest snapshot, redrawing only what changed since the last
+     * drawn one, and repaint the changed regions.
+     */
+    private void renderFrame() {
+	RobotSnapshot snapshot = control.getSnapshot();
+	RobotSnapshot previous = drawn;
+	if (snapshot == null || snapshot == previous)
+	    return;
+
+	boolean sameRun = previous != null && previous.isSameRun(snapshot);
+	List<Rectangle> dirty = new ArrayList<>();
+	synchronized (frameLock) {
+	    if (!fit(snapshot, sameRun) && sameRun) {
+		if (previous.getArmOneHeight() != snapshot.getArmOneHeight()
+			|| previous.getArmTwoWidth() != snapshot.getArmTwoWidth()
+			|| previous.getArmThreeDepth() != snapshot.getArmThreeDepth()
+			|| previous.getHeldBlock() != snapshot.getHeldBlock()) {
+		    addArmRegions(dirty, previous);
+		    addArmRegions(dirty, snapshot);
+		}
+		for (int x = 0; x < snapshot.getColumnCount(); x++) {
+		    int position = snapshot.getPosition(x);
+		    BlockChain before = previous.getBlocks(position);
+		    BlockChain after = snapshot.getBlocks(position);
+		    if (before != after)
+			dirty.add(region(position, position, sharedHeight(before, after),
+				Math.max(before.getHeight(), after.getHeight())));
+		}
+	    } else {
+		dirty.add(new Rectangle(0, 0, frame.getWidth(), frame.getHeight()));
+	    }
+
+	    Graphics2D g = frame.createGraphics();
+	    try {
+		for (Rectangle region : dirty) {
+		    g.setClip(region);
+		    draw(g, snapshot);
+		}
+	    } finally {
+		g.dispose();
+	    }
+	}
+
+	long pixels = 0;
+	for (Rectangle region : dirty) {
+	    pixels += (long) region.width * region.height;
+	    repaint(region);
+	}
+	if (sameRun)
+	    coalesced += snapshot.getVersion() - previous.getVersion() - 1;
+	paintedPixels += pixels;
+	frames++;
+	drawn = snapshot;
+    }
+
+    /**
+     * Make sure the frame holds the track and the arms of the snapshot,
+     * growing it if needed. Called with the frame lock held.
+     *
+     * @return true, if the frame was replaced and must be fully drawn
+     */
+    private boolean fit(RobotSnapshot snapshot, boolean sameRun) {
+	int needed = Math.max(snapshot.getArmOneHeight(), 1) + 1;
+	for (int x = 1; x <= snapshot.getTrackWidth(); x++) {
+	    needed = Math.max(needed, snapshot.getBarHeight(x) + 1);
+	}
+	for (int x = 0; x < snapshot.getColumnCount(); x++) {
+	    needed = Math.max(needed, snapshot.getBlocks(snapshot.getPosition(x)).getHeight() + 1);
+	}
+	int width = (snapshot.getTrackWidth() + 1) * CELL;
+	if (sameRun && width == frame.getWidth() && needed <= rows)
+	    return false;
+
+	// grow by doubling within a run, so tall moves do not resize every frame
+	rows = sameRun ? Math.max(needed, rows * 2) : Math.max(needed, MIN_ROWS);
+	scale = Math.min(CELL, (double) MAX_IMAGE_HEIGHT / rows);
+	frame = new BufferedImage(width, (int) Math.ceil(rows * scale), BufferedImage.TYPE_INT_RGB);
+	final Dimension size = new Dimension(frame.getWidth(), frame.getHeight());
+	SwingUtilities.invokeLater(new Runnable() {
+	    @Override
+	    public void run() {
+		setPreferredSize(size);
+		revalidate();
+	    }
+	});
+	return true;
+    }
+
+    /**
+     * Height of the blocks shared by two stacks of the same column, below
+     * which both stacks hold the same blocks.
+     */
+    private static int sharedHeight(BlockChain before, BlockChain after) {
+	while (before.size() > after.size()) {
+	    before = before.pop();
+	}
+	while (after.size() > before.size()) {
+	    after = after.pop();
+	}
+	while (before != after) {
+	    before = before.pop();
+	    after = after.pop();
+	}
+	return before.getHeight();
+    }
+
+    /**
+     * Add the regions covered by the arms and the held block.
+     */
+    private void addArmRegions(List<Rectangle> dirty, RobotSnapshot snapshot) {
+	int armOne = snapshot.getArmOneHeight();
+	int armTwo = snapshot.getArmTwoWidth();
+	int tip = armOne - 1 - snapshot.getArmThreeDepth();
+	dirty.add(region(0, 0, 0, armOne));
+	dirty.add(region(0, armTwo, armOne - 1, armOne));
+	dirty.add(region(armTwo, armTwo, tip - snapshot.getHeldBlock(), armOne - 1));
+    }
+
+    /**
+     * Frame region between two track positions and two levels.
+     *
+     * @param first
+     *            the first position
+     * @param last
+     *            the last position, included
+     * @param bottom
+     *            the lowest level
+     * @param top
+     *            the highest level, excluded
+     * @return the region in pixels
+     */
+    private Rectangle region(int first, int last, int bottom, int top) {
+	int y = toY(top);
+	return new Rectangle(first * CELL, y, (last - first + 1) * CELL, toY(bottom) - y);
+    }
+
+    /**
+     * Pixel row of a level, levels growing up from the bottom of the frame.
+     */
+    private int toY(int level) {
+	return frame.getHeight() - (int) Math.round(level * scale);
+    }
+
+    /**
+     * Draw the part of the snapshot within the clip of the graphics.
+     */
+    private void draw(Graphics2D g, RobotSnapshot snapshot) {
+	Rectangle clip = g.getClipBounds();
+	g.setColor(BACKGROUND);
+	g.fillRect(clip.x, clip.y, clip.width, clip.height);
+	int firstPosition = Math.max(clip.x / CELL, 1);
+	int lastPosition = Math.min((clip.x + clip.width - 1) / CELL, snapshot.getTrackWidth());
+	// levels within the clip, rounded outward
+	int lowest = (int) Math.floor((frame.getHeight() - clip.y - clip.height) / scale);
+	int highest = (int) Math.ceil((frame.getHeight() - clip.y) / scale);
+
+	g.setColor(BAR);
+	for (int x = firstPosition; x <= lastPosition; x++) {
+	    int barHeight = snapshot.getBarHeight(x);
+	    if (barHeight > lowest) {
+		int y = toY(barHeight);
+		g.fillRect(x * CELL + 1, y, CELL - 2, toY(0) - y);
+	    }
+	}
+
+	for (int x = 0; x < snapshot.getColumnCount(); x++) {
+	    int position = snapshot.getPosition(x);
+	    if (position < firstPosition || position > lastPosition)
+		continue;
+	    // walk the stack down from the top, only through the clipped levels
+	    BlockChain chain = snapshot.getBlocks(position);
+	    int top = chain.getHeight();
+	    while (chain.size() > 0 && top > lowest) {
+		int block = chain.peek();
+		if (top - block < highest)
+		    drawBlock(g, position, top - block, block);
+		top -= block;
+		chain = chain.pop();
+	    }
+	}
+
+	int armOne = snapshot.getArmOneHeight();
+	int armTwo = snapshot.getArmTwoWidth();
+	int tip = armOne - 1 - snapshot.getArmThreeDepth();
+	g.setColor(ARM);
+	fill(g, region(0, 0, 0, armOne), CELL / 3);
+	fill(g, region(0, armTwo, armOne - 1, armOne), 0);
+	fill(g, region(armTwo, armTwo, tip, armOne - 1), CELL / 3);
+	if (snapshot.getHeldBlock() > 0)
+	    drawBlock(g, armTwo, tip - snapshot.getHeldBlock(), snapshot.getHeldBlock());
+    }
+
+    /**
+     * Fill a region, narrowed on both sides by the given number of pixels.
+     */
+    private static void fill(Graphics g, Rectangle region, int inset) {
+	g.fillRect(region.x + inset, region.y, region.width - 2 * inset, region.height);
+    }
+
+    private void drawBlock(Graphics g, int position, int bottom, int block) {
+	Rectangle region = region(position, position, bottom, bottom + block);
+	g.setColor(BLOCK_COLORS[(block - 1) % BLOCK_COLORS.length]);
+	fill(g, region, 2);
+	if (scale >= OUTLINE_HEIGHT) {
+	    g.setColor(OUTLINE);
+	    g.drawRect(region.x + 2, region.y, region.width - 5, region.height - 1);
+	}
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+	synchronized (frameLock) {
+	    g.drawImage(frame, 0, 0, null);
+	}
+    }
+
+    /**
+     * Get the number of drawn frames.
+     *
+     * @return the number of frames
+     */
+    public long getFrameCount() {
+	return frames;
+    }
+
+    /**
+     * Get the number of snapshots never drawn, because a newer one was
+     * published before the next frame.
+     *
+     * @return the number of snapshots
+     */
+    public long getCoalescedCount() {
+	return coalesced;
+    }
+
+    /**
+     * Get the number of pixels redrawn by all frames.
+     *
+     * @return the number of pixels
+     */
+    public long getPaintedPixels() {
+	return paintedPixels;
+    }
+
+    /**
+     * Get the size of a whole frame.
+     *
+     * @return the number of pixels
+     */
+    public long getFramePixels() {
+	synchronized (frameLock) {
+	    return (long) frame.getWidth() * frame.getHeight();
+	}
+    }
+
+    /**
+     * Copy the current frame.
+     *
+     * @return the frame
+     */
+    BufferedImage copyFrame() {
+	synchronized (frameLock) {
+	    BufferedImage copy = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+	    copy.setData(frame.getRaster());
+	    return copy;
+	}
+    }
+
+    /**
+     * Draw the last drawn snapshot as a whole into a new frame, to check the
+     * frames drawn region by region against it. Only once closed.
+     *
+     * @return the frame, null if nothing was drawn
+     */
+    BufferedImage drawWholeFrame() {
+	if (!closed || drawn == null)
+	    return null;
+	synchronized (frameLock) {
+	    BufferedImage whole = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+	    Graphics2D g = whole.createGraphics();
+	    try {
+		g.setClip(0, 0, whole.getWidth(), whole.getHeight());
+		draw(g, drawn);
+	    } finally {
+		g.dispose();
+	    }
+	    return whole;
+	}
+    }
+
+    /**
+     * Draw the latest snapshot one last time and stop the rendering thread.
+     */
+    @Override
+    public void close() {
+	closed = true;
+	LockSupport.unpark(renderer);
+	try {
+	    renderer.join();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    public static void main(String[] args) throws InterruptedException, InvocationTargetException {
+	StringBuilder line = new StringBuilder();
+	for (String arg : args) {
+	    line.append(arg).append(' ');
+	}
+	Scenario scenario = Scenario.parse(0, line.toString().trim());
+	SimulatedRobot robot = new SimulatedRobot(scenario.getBarHeights(), scenario.getBlockHeights(),
+		scenario.getRequired(), scenario.isOrdered());
+	RobotControl control = new RobotControl(robot);
+	control.setSnapshots(true);
+	final FrameRenderer view = new FrameRenderer(control, DEFAULT_FRAMES_PER_SECOND);
+	final JFrame window = new JFrame("Robot");
+	SwingUtilities.invokeAndWait(new Runnable() {
+	    @Override
+	    public void run() {
+		window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		window.add(view);
+		window.pack();
+		window.setVisible(true);
+	    }
+	});
+
+	long start = System.nanoTime();
+	control.control(scenario.getBarHeights(), scenario.getBlockHeights(), scenario.getRequired(),
+		scenario.isOrdered());
+	long elapsed = System.nanoTime() - start;
+	view.close();
+	SwingUtilities.invokeLater(new Runnable() {
+	    @Override
+	    public void run() {
+		window.pack();
+	    }
+	});
+	System.out.printf("%d operations in %.1f ms, %d frames, %d snapshots coalesced%n",
+		robot.getOperationCount(), elapsed / 1e6, view.getFrameCount(), view.getCoalescedCount());
+    }
+}
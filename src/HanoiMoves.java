@@ -0,0 +1,176 @@
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Move sequence of the Tower of Hanoi used by Part E, generated lazily in
+ * constant time per move.</p>
+ *
+ * <p>Consecutive equal blocks of the source column are grouped once, when
+ * the sequence is created, and every group is moved as a single disc: a move
+ * of group <code>g</code> is <code>g</code>'s block count consecutive
+ * {@link RobotControl} moves between the same two columns. With
+ * <code>n</code> groups the tower takes <code>2^n - 1</code> group moves;
+ * move <code>m</code> (from 1) moves the group whose index from the top is
+ * the number of trailing zeros of <code>m</code>, from peg
+ * <code>(m &amp; m - 1) % 3</code> to peg <code>((m | m - 1) + 1) % 3</code>.
+ * This is the same sequence as the legal move rule between Source,
+ * Temporary and Target, without looking at the columns.</p>
+ *
+ * <p>Moves are returned as packed longs, see {@link #from(long)},
+ * {@link #to(long)} and {@link #count(long)}; the columns are the
+ * {@link ColumnType} ordinals. Iterating allocates nothing and
+ * {@link #seek(long)} resumes the sequence at any move.</p>
+ */
+public class HanoiMoves {
+
+    /** Largest number of groups, so the number of moves fits a long. */
+    public static final int MAX_GROUPS = 62;
+
+    /** Peg holding the tower at the start. */
+    private static final int SOURCE = ColumnType.source.ordinal();
+
+    /** Peg used as the intermediate peg. */
+    private static final int TEMPORARY = ColumnType.temporary.ordinal();
+
+    /** Peg holding the tower at the end. */
+    private static final int TARGET = ColumnType.target.ordinal();
+
+    /** Block count of each group, from the top group. */
+    private final int[] groups;
+
+    /** Number of group moves. */
+    private final long moveCount;
+
+    /**
+     * Formula pegs to columns, the formula ends on peg 2 for an odd number
+     * of groups and on peg 1 otherwise.
+     */
+    private final int[] pegs;
+
+    /** Number of group moves already returned. */
+    private long position;
+
+    /**
+     * Instantiates the move sequence of the given source blocks.
+     *
+     * @param blocks
+     *            the source column blocks, larger blocks at the bottom
+     */
+    public HanoiMoves(BlockView blocks) {
+	int groupCount = 0;
+	for (int x = 0; x < blocks.size(); x++) {
+	    if (x == 0 || blocks.get(x) != blocks.get(x - 1))
+		groupCount++;
+	}
+	if (groupCount > MAX_GROUPS)
+	    throw new IllegalArgumentException("Too many distinct block groups: " + groupCount);
+
+	this.groups = new int[groupCount];
+	int group = groupCount;
+	for (int x = 0; x < blocks.size(); x++) {
+	    if (x == 0 || blocks.get(x) != blocks.get(x - 1))
+		group--;
+	    groups[group]++;
+	}
+	this.moveCount = (1L << groupCount) - 1;
+	this.pegs = groupCount % 2 == 1 ? new int[] { SOURCE, TEMPORARY, TARGET }
+		: new int[] { SOURCE, TARGET, TEMPORARY };
+    }
+
+    /**
+     * Get the number of block groups.
+     *
+     * @return the number of groups
+     */
+    public int getGroupCount() {
+	return groups.length;
+    }
+
+    /**
+     * Get the total number of group moves.
+     *
+     * @return the number of group moves
+     */
+    public long getMoveCount() {
+	return moveCount;
+    }
+
+    /**
+     * Get the number of group moves already returned.
+     *
+     * @return the position in the sequence
+     */
+    public long getPosition() {
+	return position;
+    }
+
+    /**
+     * Continue the sequence after the given number of group moves.
+     *
+     * @param position
+     *            the number of group moves already made
+     */
+    public void seek(long position) {
+	if (position < 0 || position > moveCount)
+	    throw new IllegalArgumentException("Position " + position + " outside 0-" + moveCount);
+	this.position = position;
+    }
+
+    /**
+     * Checks if group moves are left.
+     *
+     * @return true, if the tower is not complete yet
+     */
+    public boolean hasNext() {
+	return position < moveCount;
+    }
+
+    /**
+     * Get the next group move.
+     *
+     * @return the packed move
+     * @throws NoSuchElementException
+     *             if no group moves are left
+     */
+    public long nextLong() {
+	if (position >= moveCount)
+	    throw new NoSuchElementException();
+	long m = ++position;
+	int from = pegs[(int) ((m & (m - 1)) % 3)];
+	int to = pegs[(int) (((m | (m - 1)) + 1) % 3)];
+	int count = groups[Long.numberOfTrailingZeros(m)];
+	return (long) count << 4 | to << 2 | from;
+    }
+
+    /**
+     * Get the column a move starts from.
+     *
+     * @param move
+     *            the packed move
+     * @return the {@link ColumnType} ordinal
+     */
+    public static int from(long move) {
+	return (int) move & 3;
+    }
+
+    /**
+     * Get the column a move ends in.
+     *
+     * @param move
+     *            the packed move
+     * @return the {@link ColumnType} ordinal
+     */
+    public static int to(long move) {
+	return (int) move >> 2 & 3;
+    }
+
+    /**
+     * Get the number of blocks of a move.
+     *
+     * @param move
+     *            the packed move
+     * @return the number of blocks moved one by one
+     */
+    public static int count(long move) {
+	return (int) (move >>> 4);
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Driver decorator recording the count and latency of every primitive call
+ * into {@link RobotMetrics}.
+ */
+public class InstrumentedDriver implements SegmentDriver {
+
+    /** The decorated driver. */
+    private final RobotDriver r;
+
+    /** The decorated driver, if it executes segments. */
+    private final SegmentDriver segmentDriver;
+
+    /** The recorded metrics. */
+    private final RobotMetrics metrics;
+
+    /**
+     * Instantiates a new instrumented driver.
+     *
+     * @param r
+     *            the decorated driver
+     * @param metrics
+     *            the metrics to record into
+     */
+    public InstrumentedDriver(RobotDriver r, RobotMetrics metrics) {
+	this.r = r;
+	this.segmentDriver = r instanceof SegmentDriver ? (SegmentDriver) r : null;
+	this.metrics = metrics;
+    }
+
+    /**
+     * Get the decorated driver.
+     *
+     * @return the decorated driver
+     */
+    public RobotDriver getDriver() {
+	return r;
+    }
+
+    @Override
+    public void move(Primitive primitive, int steps) {
+	if (!metrics.isEnabled()) {
+	    if (segmentDriver != null)
+		segmentDriver.move(primitive, steps);
+	    else
+		executeSteps(primitive, steps);
+	    return;
+	}
+	long start = System.nanoTime();
+	if (segmentDriver != null)
+	    segmentDriver.move(primitive, steps);
+	else
+	    executeSteps(primitive, steps);
+	metrics.recordPrimitive(primitive, steps, System.nanoTime() - start);
+    }
+
+    private void executeSteps(Primitive primitive, int steps) {
+	for (int x = 0; x < steps; x++) {
+	    primitive.execute(r);
+	}
+    }
+
+    /**
+     * Execute and record a single step.
+     */
+    private void step(Primitive primitive) {
+	if (!metrics.isEnabled()) {
+	    primitive.execute(r);
+	    return;
+	}
+	long start = System.nanoTime();
+	primitive.execute(r);
+	metrics.recordPrimitive(primitive, 1, System.nanoTime() - start);
+    }
+
+    @Override
+    public void up() {
+	step(Primitive.UP);
+    }
+
+    @Override
+    public void down() {
+	step(Primitive.DOWN);
+    }
+
+    @Override
+    public void extend() {
+	step(Primitive.EXTEND);
+    }
+
+    @Override
+    public void contract() {
+	step(Primitive.CONTRACT);
+    }
+
+    @Override
+    public void lower() {
+	step(Primitive.LOWER);
+    }
+
+    @Override
+    public void raise() {
+	step(Primitive.RAISE);
+    }
+
+    @Override
+    public void pick() {
+	step(Primitive.PICK);
+    }
+
+    @Override
+    public void drop() {
+	step(Primitive.DROP);
+    }
+}
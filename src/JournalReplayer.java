@@ -0,0 +1,260 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Reader of the journals written by {@link OperationJournal}.</p>
+ *
+ * <p>The journal is read through a memory-mapped view, one entry at a time
+ * with {@link #next()}, or fed back into any {@link RobotDriver} with
+ * {@link #replay(RobotDriver, long)}, either at full speed (segments are
+ * sent in one call to a {@link SegmentDriver}) or paced at a fixed time per
+ * step. Replaying a journal into a {@link SimulatedRobot} reproduces a run
+ * deterministically, and {@link #compare(Path, Path)} finds the first
+ * operation where two runs diverge.</p>
+ *
+ * <p>Usage: <code>JournalReplayer replay journal stepMicros bars blocks
+ * [ordered|required]</code>, with 0 step micros for full speed, or
+ * <code>JournalReplayer diff journal journal</code>.</p>
+ */
+public class JournalReplayer implements Closeable {
+
+    /** The journal file. */
+    private final FileChannel channel;
+
+    /** Size of the journal file. */
+    private final long fileSize;
+
+    /** The mapped region being read. */
+    private MappedByteBuffer region;
+
+    /** File offset of the mapped region. */
+    private long regionStart;
+
+    /** Primitive of the current entry, null for a move boundary. */
+    private Primitive primitive;
+
+    /** Number of steps of the current entry. */
+    private int steps;
+
+    /**
+     * Opens a journal.
+     *
+     * @param file
+     *            the journal file
+     * @throws IOException
+     *             if the file cannot be read or is not a journal
+     */
+    public JournalReplayer(Path file) throws IOException {
+	this.channel = FileChannel.open(file, StandardOpenOption.READ);
+	this.fileSize = channel.size();
+	if (fileSize < OperationJournal.HEADER_SIZE) {
+	    channel.close();
+	    throw new IOException("Not a journal: " + file);
+	}
+	map(0);
+	if (region.getInt() != OperationJournal.MAGIC || region.getInt() != OperationJournal.VERSION) {
+	    channel.close();
+	    throw new IOException("Not a journal: " + file);
+	}
+    }
+
+    /**
+     * Go back to the first entry.
+     *
+     * @throws IOException
+     *             if the file cannot be mapped
+     */
+    private void rewind() throws IOException {
+	map(0);
+	region.position(OperationJournal.HEADER_SIZE);
+    }
+
+    private void map(long start) throws IOException {
+	regionStart = start;
+	region = channel.map(FileChannel.MapMode.READ_ONLY, start,
+		Math.min(OperationJournal.REGION_SIZE, fileSize - start));
+    }
+
+    /**
+     * Read the next entry.
+     *
+     * @return true, if an entry was read, false at the end of the journal
+     * @throws IOException
+     *             if the file cannot be mapped
+     */
+    public boolean next() throws IOException {
+	if (region.remaining() < OperationJournal.MAX_ENTRY_SIZE && regionStart + region.limit() < fileSize)
+	    map(regionStart + region.position());
+	if (!region.hasRemaining())
+	    return false;
+	int code = region.get() & 0xFF;
+	if (code == 0) {
+	    // end of a journal that was not closed
+	    region.position(region.position() - 1);
+	    return false;
+	}
+	if (code == OperationJournal.MOVE_END) {
+	    primitive = null;
+	    steps = 0;
+	    return true;
+	}
+	primitive = Primitive.valueOf((code & ~OperationJournal.RUN_FLAG) - 1);
+	if ((code & OperationJournal.RUN_FLAG) == 0) {
+	    steps = 1;
+	} else {
+	    int value = 0;
+	    int shift = 0;
+	    int b;
+	    do {
+		b = region.get();
+		value |= (b & 0x7F) << shift;
+		shift += 7;
+	    } while ((b & 0x80) != 0);
+	    steps = value;
+	}
+	return true;
+    }
+
+    /**
+     * Check if the current entry is a move boundary.
+     *
+     * @return true, for the end of a move
+     */
+    public boolean isMoveEnd() {
+	return primitive == null;
+    }
+
+    /**
+     * Get the primitive of the current entry.
+     *
+     * @return the primitive, null for a move boundary
+     */
+    public Primitive getPrimitive() {
+	return primitive;
+    }
+
+    /**
+     * Get the number of steps of the current entry.
+     *
+     * @return the number of steps, 0 for a move boundary
+     */
+    public int getSteps() {
+	return steps;
+    }
+
+    /**
+     * Send the whole journal to the given driver.
+     *
+     * @param r
+     *            the robot driver
+     * @param stepNanos
+     *            time taken by every step, 0 for full speed
+     * @return the number of replayed operations
+     * @throws IOException
+     *             if the file cannot be mapped
+     */
+    public long replay(RobotDriver r, long stepNanos) throws IOException {
+	rewind();
+	SegmentDriver segmentDriver = r instanceof SegmentDriver ? (SegmentDriver) r : null;
+	long operations = 0;
+	long start = System.nanoTime();
+	while (next()) {
+	    if (primitive == null)
+		continue;
+	    if (stepNanos > 0) {
+		// pace every step against the start, so delays do not add up
+		for (int x = 0; x < steps; x++) {
+		    long wait = start + (operations + 1) * stepNanos - System.nanoTime();
+		    if (wait > 0)
+			LockSupport.parkNanos(wait);
+		    primitive.execute(r);
+		    operations++;
+		}
+	    } else {
+		if (segmentDriver != null) {
+		    segmentDriver.move(primitive, steps);
+		} else {
+		    for (int x = 0; x < steps; x++) {
+			primitive.execute(r);
+		    }
+		}
+		operations += steps;
+	    }
+	}
+	return operations;
+    }
+
+    /**
+     * Find the first operation where two journals differ.
+     *
+     * @param first
+     *            the first journal
+     * @param second
+     *            the second journal
+     * @return the index of the first differing operation, -1 if both
+     *         journals hold the same operations
+     * @throws IOException
+     *             if a journal cannot be read
+     */
+    public static long compare(Path first, Path second) throws IOException {
+	try (JournalReplayer a = new JournalReplayer(first); JournalReplayer b = new JournalReplayer(second)) {
+	    long index = 0;
+	    int aSteps = 0;
+	    int bSteps = 0;
+	    while (true) {
+		// runs are compared step by step, as moves may split them differently
+		while (aSteps == 0 && a.next()) {
+		    aSteps = a.steps;
+		}
+		while (bSteps == 0 && b.next()) {
+		    bSteps = b.steps;
+		}
+		if (aSteps == 0 || bSteps == 0)
+		    return aSteps == bSteps ? -1 : index;
+		if (a.primitive != b.primitive)
+		    return index;
+		int common = Math.min(aSteps, bSteps);
+		aSteps -= common;
+		bSteps -= common;
+		index += common;
+	    }
+	}
+    }
+
+    @Override
+    public void close() throws IOException {
+	channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+	if (args.length == 3 && args[0].equals("diff")) {
+	    long index = compare(Paths.get(args[1]), Paths.get(args[2]));
+	    System.out.println(index < 0 ? "Journals are identical" : "First difference at operation " + index);
+	    return;
+	}
+	if (args.length < 5 || !args[0].equals("replay")) {
+	    System.out.println("Usage: JournalReplayer replay journal stepMicros bars blocks [ordered|required]");
+	    System.out.println("       JournalReplayer diff journal journal");
+	    return;
+	}
+	long stepNanos = Long.parseLong(args[2]) * 1000;
+	Scenario scenario = Scenario.parse(0, args[3] + " " + args[4] + (args.length > 5 ? " " + args[5] : ""));
+
+	SimulatedRobot robot = new SimulatedRobot(scenario.getBarHeights(), scenario.getBlockHeights(),
+		scenario.getRequired(), scenario.isOrdered());
+	try (JournalReplayer replayer = new JournalReplayer(Paths.get(args[1]))) {
+	    long start = System.nanoTime();
+	    long operations = replayer.replay(robot, stepNanos);
+	    System.out.println("Operations: " + operations);
+	    System.out.println("Time (ms): " + (System.nanoTime() - start) / 1000000.0);
+	} catch (IllegalStateException e) {
+	    System.out.println("Replay failed after " + robot.getOperationCount() + " operations: " + e.getMessage());
+	}
+    }
+}
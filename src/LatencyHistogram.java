@@ -0,0 +1,148 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Lock-free latency histogram with logarithmic buckets.</p>
+ *
+ * <p>As in an HDR histogram, every power of two is split into 8 linear
+ * sub-buckets, so any recorded value is known within 12.5% while the whole
+ * nanosecond range fits in a fixed array. Recording is a few atomic
+ * increments and never allocates.</p>
+ */
+public class LatencyHistogram {
+
+    /** Sub-buckets per power of two, as a number of bits. */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /** Sub-buckets per power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Number of buckets covering all positive long values. */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /** Number of values in each bucket. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** Number of recorded values. */
+    private final AtomicLong count = new AtomicLong();
+
+    /** Sum of recorded values. */
+    private final AtomicLong sum = new AtomicLong();
+
+    /** Highest recorded value. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value.
+     *
+     * @param value
+     *            the value, negative values are recorded as 0
+     */
+    public void record(long value) {
+	value = Math.max(value, 0);
+	counts.incrementAndGet(bucket(value));
+	count.incrementAndGet();
+	sum.addAndGet(value);
+	long currentMax = max.get();
+	while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+	    currentMax = max.get();
+	}
+    }
+
+    /**
+     * Get the number of recorded values.
+     *
+     * @return the count
+     */
+    public long getCount() {
+	return count.get();
+    }
+
+    /**
+     * Get the sum of recorded values.
+     *
+     * @return the sum
+     */
+    public long getSum() {
+	return sum.get();
+    }
+
+    /**
+     * Get the highest recorded value.
+     *
+     * @return the maximum, 0 if empty
+     */
+    public long getMax() {
+	return max.get();
+    }
+
+    /**
+     * Get the mean of recorded values.
+     *
+     * @return the mean, 0 if empty
+     */
+    public double getMean() {
+	long values = count.get();
+	return values == 0 ? 0 : (double) sum.get() / values;
+    }
+
+    /**
+     * Get the value below which the given percentage of values fall.
+     *
+     * @param percentile
+     *            the percentile, between 0 and 100
+     * @return the upper bound of the bucket holding the percentile
+     */
+    public long getPercentile(double percentile) {
+	long values = count.get();
+	if (values == 0)
+	    return 0;
+	long rank = Math.max(1, (long) Math.ceil(values * percentile / 100));
+	long seen = 0;
+	for (int x = 0; x < BUCKETS; x++) {
+	    seen += counts.get(x);
+	    if (seen >= rank)
+		return Math.min(upperBound(x), max.get());
+	}
+	return max.get();
+    }
+
+    /**
+     * Summarize the histogram in microseconds, values being nanoseconds.
+     *
+     * @return the summary
+     */
+    public LatencySummary toSummary() {
+	return new LatencySummary(getCount(), getMean() / 1000, getPercentile(50) / 1000.0,
+		getPercentile(99) / 1000.0, getMax() / 1000.0);
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    public void reset() {
+	for (int x = 0; x < BUCKETS; x++) {
+	    counts.set(x, 0);
+	}
+	count.set(0);
+	sum.set(0);
+	max.set(0);
+    }
+
+    private static int bucket(long value) {
+	if (value < SUB_BUCKETS)
+	    return (int) value;
+	int exponent = 63 - Long.numberOfLeadingZeros(value);
+	int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+	return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+	if (bucket < SUB_BUCKETS)
+	    return bucket;
+	int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+	long subBucket = bucket % SUB_BUCKETS;
+	int shift = exponent - SUB_BUCKET_BITS;
+	return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
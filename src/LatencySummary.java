@@ -0,0 +1,63 @@
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of a {@link LatencyHistogram}, in microseconds. Exposed over JMX
+ * as composite data.
+ */
+public class LatencySummary {
+
+    private final long count;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double maxMicros;
+
+    /**
+     * Instantiates a new latency summary.
+     *
+     * @param count
+     *            number of recorded values
+     * @param meanMicros
+     *            mean latency
+     * @param p50Micros
+     *            median latency
+     * @param p99Micros
+     *            99th percentile latency
+     * @param maxMicros
+     *            maximum latency
+     */
+    @ConstructorProperties({ "count", "meanMicros", "p50Micros", "p99Micros", "maxMicros" })
+    public LatencySummary(long count, double meanMicros, double p50Micros, double p99Micros, double maxMicros) {
+	this.count = count;
+	this.meanMicros = meanMicros;
+	this.p50Micros = p50Micros;
+	this.p99Micros = p99Micros;
+	this.maxMicros = maxMicros;
+    }
+
+    public long getCount() {
+	return count;
+    }
+
+    public double getMeanMicros() {
+	return meanMicros;
+    }
+
+    public double getP50Micros() {
+	return p50Micros;
+    }
+
+    public double getP99Micros() {
+	return p99Micros;
+    }
+
+    public double getMaxMicros() {
+	return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+	return String.format("count=%d mean=%.2fus p50=%.2fus p99=%.2fus max=%.2fus", count, meanMicros, p50Micros,
+		p99Micros, maxMicros);
+    }
+}
@@ -0,0 +1,602 @@
+import java.util.Arrays;
+
+/**
+ * <p>Compiles each move knowing the next moves of the run, so the arms are
+ * left where the following moves need them instead of being parked at fixed
+ * positions.</p>
+ *
+ * <p>The fixed path of {@link RobotControl} raises arm 3 back to depth 0
+ * after every pick and drop, and each move chooses the arm 1 height without
+ * knowing the next move, so digging loops of Part D often raise an arm only
+ * to lower it again at the start of the next move. The controller instead
+ * queues its moves here, with the columns already updated, and compiles the
+ * oldest one once a window of upcoming moves is known. Windows of 2 to 8
+ * moves compiled the very same moves as knowing only the next one in every
+ * scenario of <code>LookaheadBenchmark</code>, so the default window is one
+ * move.</p>
+ *
+ * <p>The window is walked as a sequence of slots: every step of arm 2, every
+ * pick and every drop. Each slot bounds the arms the same way the robot
+ * checks them:<br>
+ * 1- arm 2 above every obstacle it spans: arm 1 above the highest obstacle
+ * before both positions of the step<br>
+ * 2- arm 3, or the held block, above the obstacles at both positions<br>
+ * 3- arm 3 exactly on the top block at a pick, or the held block exactly on
+ * the top of the ending column at a drop</p>
+ *
+ * <p>The arm 1 height and arm 3 depth of every slot are chosen together by
+ * dynamic programming over the slots, for the fewest arm 1 and arm 3 steps
+ * over the whole window. The states of a slot are the heights and depths
+ * within its bounds, no higher than the highest bound or the starting
+ * height, and the cheapest way to reach each of them from the states of the
+ * previous slot is a distance transform, swept along each arm in turn. Only
+ * the oldest move is sent, up to where arms park after its drop. Changes at
+ * a slot raise arms before lowering any, so every intermediate position is
+ * within the bounds, and every compiled move is checked step by step before
+ * it is sent.</p>
+ *
+ * <p>Once no move follows, arm 3 is raised back to depth 0, so a run always
+ * ends as with the fixed path.</p>
+ */
+public class LookaheadPlanner {
+
+    /** Slot of a step of arm 2. */
+    private static final int TRAVEL = 0;
+
+    /** Slot of a pick. */
+    private static final int PICK = 1;
+
+    /** Slot of a drop. */
+    private static final int DROP = 2;
+
+    /** Last slot, once every move is done. */
+    private static final int PARK = 3;
+
+    /** Steps of an unreachable state. */
+    private static final int UNREACHABLE = Integer.MAX_VALUE / 2;
+
+    /** Number of upcoming moves known when a move is compiled. */
+    private final int window;
+
+    /** Starting position of each queued move, oldest first from head. */
+    private final int[] fromPositions;
+
+    /** Ending position of each queued move. */
+    private final int[] toPositions;
+
+    /** Height of the block of each queued move. */
+    private final int[] blocks;
+
+    /** Index of the oldest queued move. */
+    private int head;
+
+    /** Number of queued moves. */
+    private int size;
+
+    /** Obstacle heights before the compiled move. */
+    private int[] heights = new int[0];
+
+    /** Obstacle heights while walking the queued moves. */
+    private int[] work = new int[0];
+
+    /** Highest obstacle from position 1 to each position, while walking the queued moves. */
+    private int[] prefix = new int[0];
+
+    /** Kind of each slot. */
+    private int[] kinds = new int[0];
+
+    /** Arm 2 position of each slot. */
+    private int[] positions = new int[0];
+
+    /** Next arm 2 position of each travel slot. */
+    private int[] nextPositions = new int[0];
+
+    /** Lowest arm 1 height of each slot. */
+    private int[] limits = new int[0];
+
+    /** Lowest arm 3 tip height of each slot, or its exact height at a pick or drop. */
+    private int[] tips = new int[0];
+
+    /** Arm 1 height of each slot. */
+    private int[] armOne = new int[0];
+
+    /** Arm 3 depth of each slot. */
+    private int[] armThree = new int[0];
+
+    /** Fewest steps reaching each arm 1 height and arm 3 depth of the current slot. */
+    private int[] steps = new int[0];
+
+    /** State of the previous slot each state of the current slot is reached from. */
+    private int[] origins = new int[0];
+
+    /** Origin of each state of each slot, to walk the cheapest path back. */
+    private int[][] pathOrigins = new int[0][];
+
+    /** Number of slots of the queued moves. */
+    private int slotCount;
+
+    /** Arm 1 height after the compiled move. */
+    private int armOneHeight;
+
+    /** Arm 3 depth after the compiled move. */
+    private int armThreeDepth;
+
+    /** Starting position of the compiled move. */
+    private int fromPosition;
+
+    /** Ending position of the compiled move. */
+    private int toPosition;
+
+    /** Height of the block of the compiled move. */
+    private int block;
+
+    /** Number of compiled moves. */
+    private long moves;
+
+    /**
+     * Instantiates a new lookahead planner knowing the next move.
+     */
+    public LookaheadPlanner() {
+	this(1);
+    }
+
+    /**
+     * Instantiates a new lookahead planner.
+     *
+     * @param window
+     *            the number of upcoming moves known when a move is compiled,
+     *            at least 1
+     */
+    public LookaheadPlanner(int window) {
+	if (window < 1)
+	    throw new IllegalArgumentException("Lookahead window must be at least 1: " + window);
+	this.window = window;
+	this.fromPositions = new int[window + 1];
+	this.toPositions = new int[window + 1];
+	this.blocks = new int[window + 1];
+    }
+
+    /**
+     * Queue a move whose block was already moved between the columns.
+     *
+     * @param fromPosition
+     *            the position of the column the block is picked from
+     * @param toPosition
+     *            the position of the column the block is dropped in
+     * @param block
+     *            the height of the block
+     */
+    public void add(int fromPosition, int toPosition, int block) {
+	if (size > window)
+	    throw new IllegalStateException("Lookahead queue is full");
+	int x = (head + size++) % fromPositions.length;
+	fromPositions[x] = fromPosition;
+	toPositions[x] = toPosition;
+	blocks[x] = block;
+    }
+
+    /**
+     * Check the window of upcoming moves of the oldest queued move is
+     * known.
+     *
+     * @return true, if the oldest move should be compiled
+     */
+    public boolean isFull() {
+	return size > window;
+    }
+
+    /**
+     * Get the number of upcoming moves known when a move is compiled.
+     *
+     * @return the window
+     */
+    public int getWindow() {
+	return window;
+    }
+
+    /**
+     * Get the number of queued moves.
+     *
+     * @return the number of moves
+     */
+    public int size() {
+	return size;
+    }
+
+    /**
+     * Forget the queued moves, such as when a new run starts.
+     */
+    public void clear() {
+	head = 0;
+	size = 0;
+    }
+
+    /**
+     * Compile the oldest queued move and remove it from the queue.
+     *
+     * @param program
+     *            the program to add the move to
+     * @param track
+     *            the track, with every queued move already applied
+     * @param armOneHeight
+     *            arm 1 height
+     * @param armTwoWidth
+     *            arm 2 width
+     * @param armThreeDepth
+     *            arm 3 depth
+     */
+    public void compile(MotionProgram program, Track track, int armOneHeight, int armTwoWidth, int armThreeDepth) {
+	if (size == 0)
+	    throw new IllegalStateException("No queued move");
+	int width = track.getWidth();
+	if (heights.length != width + 1) {
+	    heights = new int[width + 1];
+	    work = new int[width + 1];
+	    prefix = new int[width + 1];
+	}
+	for (int x = 1; x <= width; x++) {
+	    heights[x] = track.getHeight(x);
+	}
+	// undo the queued moves, latest first
+	for (int y = size - 1; y >= 0; y--) {
+	    int x = (head + y) % fromPositions.length;
+	    heights[toPositions[x]] -= blocks[x];
+	    heights[fromPositions[x]] += blocks[x];
+	}
+	fromPosition = fromPositions[head];
+	toPosition = toPositions[head];
+	block = blocks[head];
+
+	int parkSlot = buildSlots(armTwoWidth);
+	plan(armOneHeight, armThreeDepth);
+
+	int start = program.size();
+	emit(program, parkSlot, armOneHeight, armThreeDepth);
+	verify(program, start, armOneHeight, armTwoWidth, armThreeDepth);
+	this.armOneHeight = armOne[parkSlot];
+	this.armThreeDepth = armThree[parkSlot];
+	head = (head + 1) % fromPositions.length;
+	size--;
+	moves++;
+    }
+
+    /**
+     * Walk the queued moves into slots and bound each of them.
+     *
+     * @return the slot where the arms park after the drop of the oldest
+     *         move
+     */
+    private int buildSlots(int armTwoWidth) {
+	System.arraycopy(heights, 0, work, 0, heights.length);
+	updatePrefix();
+	slotCount = 0;
+	int parkSlot = -1;
+	int x = armTwoWidth;
+	for (int y = 0; y < size; y++) {
+	    int move = (head + y) % fromPositions.length;
+	    int from = fromPositions[move];
+	    int to = toPositions[move];
+	    int held = blocks[move];
+	    if (y == 1)
+		parkSlot = slotCount;
+	    for (; x != from; x += Integer.signum(from - x)) {
+		addTravel(x, x + Integer.signum(from - x), 0);
+	    }
+	    addSlot(PICK, from, from, Math.max(prefix[from - 1], work[from]) + 1, work[from]);
+	    work[from] -= held;
+	    updatePrefix();
+	    for (; x != to; x += Integer.signum(to - x)) {
+		addTravel(x, x + Integer.signum(to - x), held);
+	    }
+	    addSlot(DROP, to, to, Math.max(prefix[to - 1], work[to] + held) + 1, work[to] + held);
+	    work[to] += held;
+	    updatePrefix();
+	}
+	if (parkSlot < 0)
+	    parkSlot = slotCount;
+	addSlot(PARK, x, x, Math.max(prefix[x - 1], work[x]) + 1, work[x]);
+	return parkSlot;
+    }
+
+    private void addTravel(int position, int nextPosition, int held) {
+	int tip = Math.max(work[position], work[nextPosition]) + held;
+	int span = Math.max(prefix[position - 1], prefix[nextPosition - 1]);
+	addSlot(TRAVEL, position, nextPosition, Math.max(span, tip) + 1, tip);
+    }
+
+    private void addSlot(int kind, int position, int nextPosition, int limit, int tip) {
+	if (slotCount == kinds.length) {
+	    int capacity = Math.max(16, slotCount << 1);
+	    kinds = Arrays.copyOf(kinds, capacity);
+	    positions = Arrays.copyOf(positions, capacity);
+	    nextPositions = Arrays.copyOf(nextPositions, capacity);
+	    limits = Arrays.copyOf(limits, capacity);
+	    tips = Arrays.copyOf(tips, capacity);
+	    armOne = Arrays.copyOf(armOne, capacity);
+	    armThree = Arrays.copyOf(armThree, capacity);
+	    pathOrigins = Arrays.copyOf(pathOrigins, capacity);
+	}
+	kinds[slotCount] = kind;
+	positions[slotCount] = position;
+	nextPositions[slotCount] = nextPosition;
+	limits[slotCount] = Math.max(limit, 2);
+	tips[slotCount] = tip;
+	slotCount++;
+    }
+
+    private void updatePrefix() {
+	for (int x = 1; x < work.length; x++) {
+	    prefix[x] = Math.max(prefix[x - 1], work[x]);
+	}
+    }
+
+    /**
+     * Choose the arm 1 height and arm 3 depth of every slot, for the fewest
+     * arm 1 and arm 3 steps over all the slots.
+     */
+    private void plan(int armOneHeight, int armThreeDepth) {
+	// going above every bound and the start never saves a step
+	int highest = armOneHeight;
+	for (int s = 0; s < slotCount; s++) {
+	    highest = Math.max(highest, limits[s]);
+	}
+	int depths = highest;
+	int states = (highest + 1) * depths;
+	if (steps.length < states) {
+	    steps = new int[states];
+	    origins = new int[states];
+	}
+	Arrays.fill(steps, 0, states, UNREACHABLE);
+	int start = armOneHeight * depths + armThreeDepth;
+	steps[start] = 0;
+	origins[start] = start;
+
+	for (int s = 0; s < slotCount; s++) {
+	    if (s > 0) {
+		for (int x = 0; x < states; x++) {
+		    origins[x] = x;
+		}
+	    }
+	    // cheapest steps to every state: along arm 3, then along arm 1
+	    for (int height = 0; height <= highest; height++) {
+		sweep(height * depths, 1, depths);
+	    }
+	    for (int depth = 0; depth < depths; depth++) {
+		sweep(depth, depths, highest + 1);
+	    }
+	    int[] path = pathOrigins[s];
+	    if (path == null || path.length < states) {
+		path = new int[states];
+		pathOrigins[s] = path;
+	    }
+	    for (int height = 0; height <= highest; height++) {
+		int lowest = lowestDepth(height, s);
+		int deepest = height < limits[s] ? -1 : deepestDepth(height, s);
+		for (int depth = 0; depth < depths; depth++) {
+		    int x = height * depths + depth;
+		    if (depth < lowest || depth > deepest)
+			steps[x] = UNREACHABLE;
+		    path[x] = origins[x];
+		}
+	    }
+	}
+
+	int best = 0;
+	for (int x = 1; x < states; x++) {
+	    if (steps[x] < steps[best])
+		best = x;
+	}
+	if (steps[best] >= UNREACHABLE)
+	    throw new IllegalStateException("Lookahead window has no path within the bounds");
+	int x = best;
+	for (int s = slotCount - 1; s >= 0; s--) {
+	    armOne[s] = x / depths;
+	    armThree[s] = x % depths;
+	    x = pathOrigins[s][x];
+	}
+    }
+
+    /**
+     * Lower the steps of a line of states to the steps of a neighbour plus
+     * one, in both directions, keeping the state reached from. A state keeps
+     * its own steps on a tie, so an arm only moves when it saves a step.
+     */
+    private void sweep(int first, int stride, int count) {
+	int last = first + (count - 1) * stride;
+	for (int x = first + stride; x <= last; x += stride) {
+	    if (steps[x - stride] + 1 < steps[x]) {
+		steps[x] = steps[x - stride] + 1;
+		origins[x] = origins[x - stride];
+	    }
+	}
+	for (int x = last - stride; x >= first; x -= stride) {
+	    if (steps[x + stride] + 1 < steps[x]) {
+		steps[x] = steps[x + stride] + 1;
+		origins[x] = origins[x + stride];
+	    }
+	}
+    }
+
+    /**
+     * Lowest arm 3 depth of a slot at the given arm 1 height.
+     */
+    private int lowestDepth(int height, int s) {
+	return kinds[s] == PICK || kinds[s] == DROP ? height - 1 - tips[s] : 0;
+    }
+
+    /**
+     * Deepest arm 3 depth of a slot at the given arm 1 height; back at depth
+     * 0 once every move is done.
+     */
+    private int deepestDepth(int height, int s) {
+	return kinds[s] == PARK && size == 1 ? 0 : height - 1 - tips[s];
+    }
+
+    /**
+     * Add the slots of the oldest move to the program, up to where the arms
+     * park after its drop.
+     */
+    private void emit(MotionProgram program, int parkSlot, int height, int depth) {
+	int[] one = armOne;
+	int[] three = armThree;
+	boolean picked = false;
+	program.setPhase(MovePhase.RAISE);
+	for (int s = 0; s <= parkSlot; s++) {
+	    // raise the arms before lowering any
+	    if (one[s] > height)
+		program.add(Primitive.UP, one[s] - height);
+	    if (three[s] < depth)
+		program.add(Primitive.RAISE, depth - three[s]);
+	    if (one[s] < height)
+		program.add(Primitive.DOWN, height - one[s]);
+	    if (three[s] > depth)
+		program.add(Primitive.LOWER, three[s] - depth);
+	    height = one[s];
+	    depth = three[s];
+	    if (s == parkSlot)
+		break;
+	    switch (kinds[s]) {
+	    case TRAVEL:
+		program.setPhase(picked ? MovePhase.CONTRACT : MovePhase.EXTEND);
+		program.add(nextPositions[s] > positions[s] ? Primitive.EXTEND : Primitive.CONTRACT, 1);
+		break;
+	    case PICK:
+		program.setPhase(MovePhase.PICK);
+		program.add(Primitive.PICK, 1);
+		picked = true;
+		break;
+	    case DROP:
+		program.setPhase(MovePhase.DROP);
+		program.add(Primitive.DROP, 1);
+		break;
+	    }
+	}
+    }
+
+    /**
+     * Replay the compiled move and check every position it goes through.
+     *
+     * @throws IllegalStateException
+     *             if the move hits an obstacle
+     */
+    private void verify(MotionProgram program, int start, int armOne, int armTwo, int armThree) {
+	System.arraycopy(heights, 0, work, 0, heights.length);
+	int held = 0;
+	for (int x = start; x < program.size(); x++) {
+	    Primitive primitive = program.getPrimitive(x);
+	    int count = program.getSteps(x);
+	    switch (primitive) {
+	    case UP:
+		armOne += count;
+		break;
+	    case RAISE:
+		armThree -= count;
+		if (armThree < 0)
+		    throw new IllegalStateException("Lookahead path raises arm 3 above depth 0");
+		break;
+	    case DOWN:
+		armOne -= count;
+		check(armOne, armTwo, armThree, held);
+		break;
+	    case LOWER:
+		armThree += count;
+		check(armOne, armTwo, armThree, held);
+		break;
+	    case EXTEND:
+	    case CONTRACT:
+		for (int step = 0; step < count; step++) {
+		    armTwo += primitive == Primitive.EXTEND ? 1 : -1;
+		    check(armOne, armTwo, armThree, held);
+		}
+		break;
+	    case PICK:
+		if (armTwo != fromPosition || armOne - 1 - armThree != work[armTwo])
+		    throw new IllegalStateException("Lookahead path does not reach the top block");
+		work[armTwo] -= block;
+		held = block;
+		break;
+	    case DROP:
+		if (armTwo != toPosition || armOne - 1 - armThree - held != work[armTwo])
+		    throw new IllegalStateException("Lookahead path does not reach the ending column");
+		work[armTwo] += held;
+		held = 0;
+		break;
+	    }
+	}
+	if (held != 0 || armTwo != toPosition)
+	    throw new IllegalStateException("Lookahead path does not complete the move");
+    }
+
+    private void check(int armOne, int armTwo, int armThree, int held) {
+	if (armOne < 2 || armThree < 0 || armThree >= armOne || work[armTwo] >= armOne - armThree - held)
+	    throw new IllegalStateException("Lookahead path hits an obstacle at position " + armTwo);
+	for (int x = 1; x < armTwo; x++) {
+	    if (work[x] >= armOne)
+		throw new IllegalStateException("Lookahead path hits an obstacle at position " + x);
+	}
+    }
+
+    /**
+     * Get the obstacle heights before the last compiled move, indexed by
+     * track position.
+     *
+     * @return the heights, reused by the next compiled move
+     */
+    int[] getHeights() {
+	return heights;
+    }
+
+    /**
+     * Get the arm 1 height after the last compiled move.
+     *
+     * @return the arm 1 height
+     */
+    public int getArmOneHeight() {
+	return armOneHeight;
+    }
+
+    /**
+     * Get the arm 3 depth after the last compiled move.
+     *
+     * @return the arm 3 depth
+     */
+    public int getArmThreeDepth() {
+	return armThreeDepth;
+    }
+
+    /**
+     * Get the starting position of the last compiled move.
+     *
+     * @return the track position
+     */
+    public int getFromPosition() {
+	return fromPosition;
+    }
+
+    /**
+     * Get the ending position of the last compiled move; arm 2 ends there.
+     *
+     * @return the track position
+     */
+    public int getToPosition() {
+	return toPosition;
+    }
+
+    /**
+     * Get the height of the block of the last compiled move.
+     *
+     * @return the block height
+     */
+    public int getBlock() {
+	return block;
+    }
+
+    /**
+     * Get the number of compiled moves.
+     *
+     * @return the number of moves
+     */
+    public long getMoveCount() {
+	return moves;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * <p>Driver decorator measuring the makespan of a run: the time taken when
+ * every step of an arm, pick or drop lasts one time unit and the arms are
+ * independent actuators.</p>
+ *
+ * <p>Arms moved together through {@link #moveTogether(int, int, int, int)}
+ * take one time unit per step whatever the number of moving arms; they are
+ * forwarded to the decorated driver one arm after the other. Any other call
+ * takes one time unit per step, as when a single arm moves at a time.</p>
+ */
+public class MakespanDriver implements MultiAxisDriver, SegmentDriver {
+
+    /** The decorated driver. */
+    private final RobotDriver r;
+
+    /** The decorated driver, if it executes segments. */
+    private final SegmentDriver segmentDriver;
+
+    /** Elapsed time units. */
+    private long makespan;
+
+    /** Executed primitive steps. */
+    private long steps;
+
+    /**
+     * Instantiates a new makespan driver.
+     *
+     * @param r
+     *            the decorated driver
+     */
+    public MakespanDriver(RobotDriver r) {
+	this.r = r;
+	this.segmentDriver = r instanceof SegmentDriver ? (SegmentDriver) r : null;
+    }
+
+    /**
+     * Get the decorated driver.
+     *
+     * @return the decorated driver
+     */
+    public RobotDriver getDriver() {
+	return r;
+    }
+
+    /**
+     * Get the elapsed time units.
+     *
+     * @return the makespan
+     */
+    public long getMakespan() {
+	return makespan;
+    }
+
+    /**
+     * Get the executed primitive steps, the makespan of moving one arm at a
+     * time.
+     *
+     * @return the number of steps
+     */
+    public long getSteps() {
+	return steps;
+    }
+
+    @Override
+    public void moveTogether(int armOne, int armTwo, int armThree, int count) {
+	makespan += count;
+	for (int x = 0; x < count; x++) {
+	    if (armOne != 0)
+		step(armOne > 0 ? Primitive.UP : Primitive.DOWN);
+	    if (armTwo != 0)
+		step(armTwo > 0 ? Primitive.EXTEND : Primitive.CONTRACT);
+	    if (armThree != 0)
+		step(armThree > 0 ? Primitive.LOWER : Primitive.RAISE);
+	}
+    }
+
+    private void step(Primitive primitive) {
+	steps++;
+	primitive.execute(r);
+    }
+
+    @Override
+    public void move(Primitive primitive, int count) {
+	makespan += count;
+	steps += count;
+	if (segmentDriver != null) {
+	    segmentDriver.move(primitive, count);
+	} else {
+	    for (int x = 0; x < count; x++) {
+		primitive.execute(r);
+	    }
+	}
+    }
+
+    @Override
+    public void up() {
+	move(Primitive.UP, 1);
+    }
+
+    @Override
+    public void down() {
+	move(Primitive.DOWN, 1);
+    }
+
+    @Override
+    public void extend() {
+	move(Primitive.EXTEND, 1);
+    }
+
+    @Override
+    public void contract() {
+	move(Primitive.CONTRACT, 1);
+    }
+
+    @Override
+    public void lower() {
+	move(Primitive.LOWER, 1);
+    }
+
+    @Override
+    public void raise() {
+	move(Primitive.RAISE, 1);
+    }
+
+    @Override
+    public void pick() {
+	move(Primitive.PICK, 1);
+    }
+
+    @Override
+    public void drop() {
+	move(Primitive.DROP, 1);
+    }
+}
@@ -0,0 +1,241 @@
+import java.util.Arrays;
+
+/**
+ * <p>Intermediate list of primitive commands produced for a move, such as
+ * <code>UP x5, EXTEND x8, LOWER x3, PICK x1</code>.</p>
+ *
+ * <p>Commands are stored as (primitive, steps) segments in int arrays.
+ * {@link #optimize()} merges consecutive runs of the same primitive and
+ * cancels opposing ones (e.g. raise then lower) before the program is sent
+ * to the driver, and {@link #sendTo(RobotDriver)} issues one call per
+ * segment to drivers implementing {@link SegmentDriver}.</p>
+ *
+ * <p>Every segment is tagged with the {@link MovePhase} that was current when
+ * it was added, so {@link #sendTo(RobotDriver, RobotMetrics)} can report the
+ * actuation time of each phase.</p>
+ */
+public class MotionProgram {
+
+    /** Initial number of segments. */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** Primitive ordinal of each segment. */
+    private int[] primitives = new int[DEFAULT_CAPACITY];
+
+    /** Number of steps of each segment. */
+    private int[] steps = new int[DEFAULT_CAPACITY];
+
+    /** Move phase ordinal of each segment. */
+    private int[] phases = new int[DEFAULT_CAPACITY];
+
+    /** Phase of the segments being added. */
+    private MovePhase phase = MovePhase.RAISE;
+
+    /** Number of segments. */
+    private int size;
+
+    /**
+     * Set the phase of the segments added from now on.
+     *
+     * @param phase
+     *            the move phase
+     */
+    public void setPhase(MovePhase phase) {
+	this.phase = phase;
+    }
+
+    /**
+     * Append a segment to the program.
+     *
+     * @param primitive
+     *            the primitive
+     * @param count
+     *            the number of steps, ignored if not positive
+     */
+    public void add(Primitive primitive, int count) {
+	if (count <= 0)
+	    return;
+	if (size == primitives.length) {
+	    primitives = Arrays.copyOf(primitives, size << 1);
+	    steps = Arrays.copyOf(steps, size << 1);
+	    phases = Arrays.copyOf(phases, size << 1);
+	}
+	primitives[size] = primitive.ordinal();
+	steps[size] = count;
+	phases[size] = phase.ordinal();
+	size++;
+    }
+
+    /**
+     * Append all segments of another program, keeping their phases.
+     *
+     * @param other
+     *            the program to append
+     */
+    public void addAll(MotionProgram other) {
+	MovePhase current = phase;
+	for (int x = 0; x < other.size; x++) {
+	    phase = MovePhase.valueOf(other.phases[x]);
+	    add(Primitive.valueOf(other.primitives[x]), other.steps[x]);
+	}
+	phase = current;
+    }
+
+    /**
+     * <p>Peephole pass over the program.</p>
+     *
+     * <p>Consecutive segments of the same primitive are merged and
+     * consecutive opposing segments cancel each other, leaving only the net
+     * movement. Cancelling can make earlier segments adjacent again (e.g.
+     * <code>UP, EXTEND, CONTRACT, DOWN</code>), so the pass works like a
+     * stack. Pick and drop are never merged nor cancelled. A merged segment
+     * keeps the phase of its earliest part.</p>
+     */
+    public void optimize() {
+	int top = 0;
+	for (int x = 0; x < size; x++) {
+	    Primitive primitive = Primitive.valueOf(primitives[x]);
+	    int count = steps[x];
+	    int segmentPhase = phases[x];
+	    while (count > 0 && top > 0 && primitive.isMotion()) {
+		Primitive previous = Primitive.valueOf(primitives[top - 1]);
+		if (previous == primitive) {
+		    count += steps[--top];
+		    segmentPhase = phases[top];
+		} else if (previous == primitive.opposite()) {
+		    int cancelled = Math.min(count, steps[top - 1]);
+		    count -= cancelled;
+		    steps[top - 1] -= cancelled;
+		    if (steps[top - 1] == 0)
+			top--;
+		    else
+			break;
+		} else {
+		    break;
+		}
+	    }
+	    if (count > 0) {
+		primitives[top] = primitive.ordinal();
+		steps[top] = count;
+		phases[top] = segmentPhase;
+		top++;
+	    }
+	}
+	size = top;
+    }
+
+    /**
+     * Send the program to the given driver. Segments are sent in one call
+     * to a {@link SegmentDriver}, step by step to any other driver.
+     *
+     * @param r
+     *            the robot driver
+     */
+    public void sendTo(RobotDriver r) {
+	if (r instanceof SegmentDriver) {
+	    SegmentDriver segmentDriver = (SegmentDriver) r;
+	    for (int x = 0; x < size; x++) {
+		segmentDriver.move(Primitive.valueOf(primitives[x]), steps[x]);
+	    }
+	} else {
+	    for (int x = 0; x < size; x++) {
+		Primitive primitive = Primitive.valueOf(primitives[x]);
+		for (int step = 0; step < steps[x]; step++) {
+		    primitive.execute(r);
+		}
+	    }
+	}
+    }
+
+    /**
+     * Send the program to the given driver, recording the actuation time of
+     * every segment against its move phase.
+     *
+     * @param r
+     *            the robot driver
+     * @param metrics
+     *            the metrics to record into, null to send without timing
+     */
+    public void sendTo(RobotDriver r, RobotMetrics metrics) {
+	if (metrics == null || !metrics.isEnabled()) {
+	    sendTo(r);
+	    return;
+	}
+	SegmentDriver segmentDriver = r instanceof SegmentDriver ? (SegmentDriver) r : null;
+	for (int x = 0; x < size; x++) {
+	    Primitive primitive = Primitive.valueOf(primitives[x]);
+	    long start = System.nanoTime();
+	    if (segmentDriver != null) {
+		segmentDriver.move(primitive, steps[x]);
+	    } else {
+		for (int step = 0; step < steps[x]; step++) {
+		    primitive.execute(r);
+		}
+	    }
+	    metrics.recordPhase(MovePhase.valueOf(phases[x]), System.nanoTime() - start);
+	}
+    }
+
+    /**
+     * Remove all segments.
+     */
+    public void clear() {
+	size = 0;
+	phase = MovePhase.RAISE;
+    }
+
+    /**
+     * Get the number of segments.
+     *
+     * @return the number of segments
+     */
+    public int size() {
+	return size;
+    }
+
+    /**
+     * Get the primitive of a segment.
+     *
+     * @param index
+     *            the segment index
+     * @return the primitive
+     */
+    public Primitive getPrimitive(int index) {
+	return Primitive.valueOf(primitives[index]);
+    }
+
+    /**
+     * Get the number of steps of a segment.
+     *
+     * @param index
+     *            the segment index
+     * @return the number of steps
+     */
+    public int getSteps(int index) {
+	return steps[index];
+    }
+
+    /**
+     * Get the total number of primitive operations.
+     *
+     * @return the number of operations
+     */
+    public int getOperationCount() {
+	int total = 0;
+	for (int x = 0; x < size; x++) {
+	    total += steps[x];
+	}
+	return total;
+    }
+
+    @Override
+    public String toString() {
+	StringBuilder builder = new StringBuilder();
+	for (int x = 0; x < size; x++) {
+	    if (x > 0)
+		builder.append(", ");
+	    builder.append(Primitive.valueOf(primitives[x])).append(" x").append(steps[x]);
+	}
+	return builder.toString();
+    }
+}
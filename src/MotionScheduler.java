@@ -0,0 +1,432 @@
+import java.util.Arrays;
+
+/**
+ * <p>Schedules the compiled moves of {@link RobotControl} so the three arms
+ * move at the same time whenever it is collision-free.</p>
+ *
+ * <p>A {@link MotionProgram} moves one arm at a time. The scheduler replays
+ * it one time unit at a time: in each unit, every arm with work left moves
+ * one step toward the end of its own segments, or, if that is not safe, the
+ * largest group of arms (preferring the arms whose segments come first in
+ * the program) for which it is. A time unit is only accepted if every
+ * corner of the box spanned by the moving arms is clear of the obstacles,
+ * using the same clearance rules as <code>armPass</code>/<code>blockPass</code>
+ * and the robot checks: arm 2 above every obstacle it spans and arm 3 (or
+ * the held block) above the obstacle below it. Executing the moving arms one
+ * after the other in any order therefore only goes through checked
+ * positions. Pick and drop wait for all arms to stop. If no arm can move
+ * safely, the segments up to the next pick or drop are sent one arm at a
+ * time as compiled.</p>
+ *
+ * <p>Every arm ends each move where the program leaves it, so the makespan
+ * (time units of the schedule) is never longer than the number of
+ * primitive steps. The totals over all scheduled moves give the makespan
+ * reduction of a scenario.</p>
+ */
+public class MotionScheduler {
+
+    /** Initial number of schedule entries. */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** Code of a pick. */
+    private static final int PICK = 64;
+
+    /** Code of a drop. */
+    private static final int DROP = 65;
+
+    /** Subsets of three ranked arms, largest first, earlier ranks first. */
+    private static final int[][] SUBSETS = { { 0, 1, 2 }, { 0, 1 }, { 0, 2 }, { 1, 2 }, { 0 }, { 1 }, { 2 } };
+
+    /** Code of each entry: 2 bits per arm (1 forward, 2 backward), or pick/drop. */
+    private int[] codes = new int[DEFAULT_CAPACITY];
+
+    /** Number of time units of each entry. */
+    private int[] counts = new int[DEFAULT_CAPACITY];
+
+    /** Number of entries. */
+    private int size;
+
+    /** Obstacle height at each track position during the move. */
+    private int[] heights = new int[0];
+
+    /** Highest obstacle from position 1 to each position. */
+    private int[] limits = new int[0];
+
+    /** Farthest track position. */
+    private int width;
+
+    /** Arm positions while scheduling: arm 1 height, arm 2 width, arm 3 depth. */
+    private final int[] arms = new int[3];
+
+    /** Height of the held block, 0 if none. */
+    private int held;
+
+    /** Next segment index of each arm. */
+    private final int[] nextSegment = new int[3];
+
+    /** Steps left of the next segment of each arm. */
+    private final int[] stepsLeft = new int[3];
+
+    /** Arms with work left, by rank. */
+    private final int[] ranked = new int[3];
+
+    /** Time units of the last scheduled move. */
+    private int makespan;
+
+    /** Primitive steps of all scheduled moves. */
+    private long totalSteps;
+
+    /** Time units of all scheduled moves. */
+    private long totalMakespan;
+
+    /**
+     * Schedule a compiled move.
+     *
+     * @param program
+     *            the compiled move, optimized
+     * @param track
+     *            the track, columns already holding the moved block at its
+     *            destination
+     * @param fromPosition
+     *            the position of the column the block is picked from
+     * @param toPosition
+     *            the position of the column the block is dropped in
+     * @param armOneHeight
+     *            arm 1 height at the start of the move
+     * @param armTwoWidth
+     *            arm 2 width at the start of the move
+     * @param armThreeDepth
+     *            arm 3 depth at the start of the move
+     */
+    public void schedule(MotionProgram program, Track track, int fromPosition, int toPosition, int armOneHeight,
+	    int armTwoWidth, int armThreeDepth) {
+	resize(track.getWidth());
+	for (int x = 1; x <= width; x++) {
+	    heights[x] = track.getHeight(x);
+	}
+	// undo the move already applied to the columns
+	int block = track.getColumn(toPosition).getTopBlockHeight();
+	heights[fromPosition] += block;
+	heights[toPosition] -= block;
+	schedule(program, block, armOneHeight, armTwoWidth, armThreeDepth);
+    }
+
+    /**
+     * Schedule a compiled move from the obstacle heights before the move,
+     * such as when the columns are already ahead of the robot.
+     *
+     * @param program
+     *            the compiled move, optimized
+     * @param heightsBefore
+     *            the obstacle height at each track position before the move
+     * @param width
+     *            the track width
+     * @param block
+     *            the height of the moved block
+     * @param armOneHeight
+     *            arm 1 height at the start of the move
+     * @param armTwoWidth
+     *            arm 2 width at the start of the move
+     * @param armThreeDepth
+     *            arm 3 depth at the start of the move
+     */
+    void schedule(MotionProgram program, int[] heightsBefore, int width, int block, int armOneHeight,
+	    int armTwoWidth, int armThreeDepth) {
+	resize(width);
+	System.arraycopy(heightsBefore, 1, heights, 1, width);
+	schedule(program, block, armOneHeight, armTwoWidth, armThreeDepth);
+    }
+
+    private void resize(int width) {
+	this.width = width;
+	if (heights.length != width + 1) {
+	    heights = new int[width + 1];
+	    limits = new int[width + 1];
+	}
+    }
+
+    private void schedule(MotionProgram program, int block, int armOneHeight, int armTwoWidth,
+	    int armThreeDepth) {
+	arms[0] = armOneHeight;
+	arms[1] = armTwoWidth;
+	arms[2] = armThreeDepth;
+	held = 0;
+	size = 0;
+	makespan = 0;
+
+	int start = 0;
+	for (int x = 0; x <= program.size(); x++) {
+	    if (x < program.size() && program.getPrimitive(x).isMotion())
+		continue;
+	    scheduleMotion(program, start, x);
+	    if (x < program.size()) {
+		for (int step = 0; step < program.getSteps(x); step++) {
+		    if (program.getPrimitive(x) == Primitive.PICK) {
+			held = block;
+			heights[arms[1]] -= held;
+			append(PICK, 1);
+		    } else {
+			heights[arms[1]] += held;
+			held = 0;
+			append(DROP, 1);
+		    }
+		}
+	    }
+	    start = x + 1;
+	}
+	totalSteps += program.getOperationCount();
+	totalMakespan += makespan;
+    }
+
+    /**
+     * Schedule the arm segments between two picks or drops.
+     */
+    private void scheduleMotion(MotionProgram program, int from, int to) {
+	if (from >= to)
+	    return;
+	limits[0] = 0;
+	for (int x = 1; x <= width; x++) {
+	    limits[x] = Math.max(limits[x - 1], heights[x]);
+	}
+	int savedSize = size;
+	int savedMakespan = makespan;
+	int savedArmOne = arms[0];
+	int savedArmTwo = arms[1];
+	int savedArmThree = arms[2];
+	for (int arm = 0; arm < 3; arm++) {
+	    nextSegment[arm] = from - 1;
+	    advance(program, arm, to);
+	}
+
+	while (true) {
+	    // arms with work left, by the index of their next segment
+	    int active = 0;
+	    for (int arm = 0; arm < 3; arm++) {
+		if (nextSegment[arm] < to) {
+		    int y = active++;
+		    while (y > 0 && nextSegment[ranked[y - 1]] > nextSegment[arm]) {
+			ranked[y] = ranked[y - 1];
+			y--;
+		    }
+		    ranked[y] = arm;
+		}
+	    }
+	    if (active == 0)
+		return;
+
+	    int mask = -1;
+	    for (int[] subset : SUBSETS) {
+		int candidate = 0;
+		boolean usable = true;
+		for (int rank : subset) {
+		    if (rank >= active) {
+			usable = false;
+			break;
+		    }
+		    candidate |= 1 << ranked[rank];
+		}
+		if (usable && isClear(program, candidate)) {
+		    mask = candidate;
+		    break;
+		}
+	    }
+
+	    if (mask < 0) {
+		// no safe step from here, send the segments as compiled
+		size = savedSize;
+		makespan = savedMakespan;
+		arms[0] = savedArmOne;
+		arms[1] = savedArmTwo;
+		arms[2] = savedArmThree;
+		for (int x = from; x < to; x++) {
+		    Primitive primitive = program.getPrimitive(x);
+		    int arm = armOf(primitive);
+		    int direction = directionOf(primitive);
+		    arms[arm] += direction * program.getSteps(x);
+		    append((direction > 0 ? 1 : 2) << (arm * 2), program.getSteps(x));
+		}
+		return;
+	    }
+
+	    int code = 0;
+	    for (int arm = 0; arm < 3; arm++) {
+		if ((mask & 1 << arm) != 0) {
+		    int direction = directionOf(program.getPrimitive(nextSegment[arm]));
+		    arms[arm] += direction;
+		    code |= (direction > 0 ? 1 : 2) << (arm * 2);
+		    if (--stepsLeft[arm] == 0)
+			advance(program, arm, to);
+		}
+	    }
+	    append(code, 1);
+	}
+    }
+
+    /**
+     * Move an arm to its next segment in the given range.
+     */
+    private void advance(MotionProgram program, int arm, int to) {
+	int x = nextSegment[arm] + 1;
+	while (x < to && armOf(program.getPrimitive(x)) != arm) {
+	    x++;
+	}
+	nextSegment[arm] = x;
+	stepsLeft[arm] = x < to ? program.getSteps(x) : 0;
+    }
+
+    /**
+     * Check every corner of the box spanned by moving the given arms one
+     * step toward their next segment.
+     */
+    private boolean isClear(MotionProgram program, int mask) {
+	for (int corner = mask; corner != 0; corner = (corner - 1) & mask) {
+	    int armOne = arms[0];
+	    int armTwo = arms[1];
+	    int armThree = arms[2];
+	    if ((corner & 1) != 0)
+		armOne += directionOf(program.getPrimitive(nextSegment[0]));
+	    if ((corner & 2) != 0)
+		armTwo += directionOf(program.getPrimitive(nextSegment[1]));
+	    if ((corner & 4) != 0)
+		armThree += directionOf(program.getPrimitive(nextSegment[2]));
+	    if (!isClear(armOne, armTwo, armThree))
+		return false;
+	}
+	return true;
+    }
+
+    /**
+     * Check the arms are within their limits and clear of every obstacle.
+     */
+    private boolean isClear(int armOne, int armTwo, int armThree) {
+	if (armOne < 2 || armTwo < 1 || armTwo > width || armThree < 0 || armThree > armOne - 1)
+	    return false;
+	return limits[armTwo - 1] < armOne && heights[armTwo] < armOne - armThree - held;
+    }
+
+    private static int armOf(Primitive primitive) {
+	switch (primitive) {
+	case UP:
+	case DOWN:
+	    return 0;
+	case EXTEND:
+	case CONTRACT:
+	    return 1;
+	default:
+	    return 2;
+	}
+    }
+
+    private static int directionOf(Primitive primitive) {
+	return primitive == Primitive.UP || primitive == Primitive.EXTEND || primitive == Primitive.LOWER ? 1 : -1;
+    }
+
+    /**
+     * Append time units to the schedule, merging them with the last entry
+     * if it has the same code.
+     */
+    private void append(int code, int count) {
+	makespan += count;
+	if (size > 0 && codes[size - 1] == code && code != PICK && code != DROP) {
+	    counts[size - 1] += count;
+	    return;
+	}
+	if (size == codes.length) {
+	    codes = Arrays.copyOf(codes, size << 1);
+	    counts = Arrays.copyOf(counts, size << 1);
+	}
+	codes[size] = code;
+	counts[size] = count;
+	size++;
+    }
+
+    /**
+     * Send the last scheduled move to the given driver. Arms moving
+     * together are sent in one call to a {@link MultiAxisDriver}, one arm
+     * after the other to any other driver.
+     *
+     * @param r
+     *            the robot driver
+     */
+    public void sendTo(RobotDriver r) {
+	MultiAxisDriver multiAxisDriver = r instanceof MultiAxisDriver ? (MultiAxisDriver) r : null;
+	for (int x = 0; x < size; x++) {
+	    int code = codes[x];
+	    if (code == PICK) {
+		r.pick();
+	    } else if (code == DROP) {
+		r.drop();
+	    } else if (multiAxisDriver != null) {
+		multiAxisDriver.moveTogether(direction(code, 0), direction(code, 1), direction(code, 2), counts[x]);
+	    } else {
+		for (int step = 0; step < counts[x]; step++) {
+		    for (int arm = 0; arm < 3; arm++) {
+			int direction = direction(code, arm);
+			if (direction != 0)
+			    primitive(arm, direction).execute(r);
+		    }
+		}
+	    }
+	}
+    }
+
+    private static int direction(int code, int arm) {
+	int bits = code >> (arm * 2) & 3;
+	return bits == 1 ? 1 : bits == 2 ? -1 : 0;
+    }
+
+    private static Primitive primitive(int arm, int direction) {
+	switch (arm) {
+	case 0:
+	    return direction > 0 ? Primitive.UP : Primitive.DOWN;
+	case 1:
+	    return direction > 0 ? Primitive.EXTEND : Primitive.CONTRACT;
+	default:
+	    return direction > 0 ? Primitive.LOWER : Primitive.RAISE;
+	}
+    }
+
+    /**
+     * Get the time units of the last scheduled move.
+     *
+     * @return the makespan
+     */
+    public int getMakespan() {
+	return makespan;
+    }
+
+    /**
+     * Get the primitive steps of all scheduled moves.
+     *
+     * @return the number of steps
+     */
+    public long getTotalSteps() {
+	return totalSteps;
+    }
+
+    /**
+     * Get the time units of all scheduled moves.
+     *
+     * @return the makespan
+     */
+    public long getTotalMakespan() {
+	return totalMakespan;
+    }
+
+    /**
+     * Get the share of time saved over moving one arm at a time.
+     *
+     * @return the makespan reduction, between 0 and 1
+     */
+    public double getMakespanReduction() {
+	return totalSteps == 0 ? 0 : 1 - (double) totalMakespan / totalSteps;
+    }
+
+    /**
+     * Reset the totals, such as between two scenarios.
+     */
+    public void reset() {
+	totalSteps = 0;
+	totalMakespan = 0;
+    }
+}
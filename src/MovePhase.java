@@ -0,0 +1,33 @@
+/**
+ * Phases of a block move, in the order <code>RobotControl.moveBlock</code>
+ * runs them.
+ */
+public enum MovePhase {
+
+    /** Arm 1 goes up so arm 2 can pass. */
+    RAISE,
+    /** Arm 2 extends to the starting column. */
+    EXTEND,
+    /** Arm 3 lowers, picks the block and raises. */
+    PICK,
+    /** Arm 1 height changes so the block can pass. */
+    REHEIGHT,
+    /** Arm 2 moves to the ending column. */
+    CONTRACT,
+    /** The block is lowered and dropped. */
+    DROP;
+
+    /** Cached values, avoids cloning the values array on lookups. */
+    private static final MovePhase[] VALUES = values();
+
+    /**
+     * Get the phase with the given ordinal.
+     *
+     * @param ordinal
+     *            the phase ordinal
+     * @return the phase
+     */
+    public static MovePhase valueOf(int ordinal) {
+	return VALUES[ordinal];
+    }
+}
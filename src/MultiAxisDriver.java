@@ -0,0 +1,21 @@
+/**
+ * A {@link RobotDriver} whose three arms are independent actuators able to
+ * move at the same time.
+ */
+public interface MultiAxisDriver extends RobotDriver {
+
+    /**
+     * Move the given arms together, each by one unit per step, taking the
+     * time of a single step per step.
+     *
+     * @param armOne
+     *            arm 1 direction: 1 up, -1 down, 0 still
+     * @param armTwo
+     *            arm 2 direction: 1 extend, -1 contract, 0 still
+     * @param armThree
+     *            arm 3 direction: 1 lower, -1 raise, 0 still
+     * @param steps
+     *            the number of steps, at least 1
+     */
+    void moveTogether(int armOne, int armTwo, int armThree, int steps);
+}
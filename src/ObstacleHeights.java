@@ -0,0 +1,36 @@
+/**
+ * Obstacle (bar or column) heights along the track, answering "highest
+ * obstacle between two positions" queries.
+ */
+public interface ObstacleHeights {
+
+    /**
+     * Set the obstacle height at the given position.
+     *
+     * @param position
+     *            the track position
+     * @param height
+     *            the obstacle height
+     */
+    void set(int position, int height);
+
+    /**
+     * Get the obstacle height at the given position.
+     *
+     * @param position
+     *            the track position
+     * @return the obstacle height
+     */
+    int get(int position);
+
+    /**
+     * Get the highest obstacle between two positions, both included.
+     *
+     * @param from
+     *            the first position
+     * @param to
+     *            the last position
+     * @return the highest obstacle, 0 if the range is empty
+     */
+    int max(int from, int to);
+}
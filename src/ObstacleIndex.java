@@ -0,0 +1,61 @@
+/**
+ * <p>Positional index of the obstacle heights (bars and columns) along the
+ * track, answering "highest obstacle between two positions" queries.</p>
+ *
+ * <p>Heights are kept in an iterative segment tree, so both updating a
+ * position and querying a range take O(log N) for a track of N positions.
+ * Columns update their position whenever a block is added or removed.</p>
+ */
+public class ObstacleIndex implements ObstacleHeights {
+
+    /** Number of leaves, a power of two covering positions 0 to width. */
+    private final int leaves;
+
+    /** Segment tree, leaves start at index {@link #leaves}. */
+    private final int[] tree;
+
+    /**
+     * Instantiates a new obstacle index for positions 1 to trackWidth.
+     *
+     * @param trackWidth
+     *            the farthest track position
+     */
+    public ObstacleIndex(int trackWidth) {
+	int size = 1;
+	while (size < trackWidth + 1) {
+	    size <<= 1;
+	}
+	this.leaves = size;
+	this.tree = new int[size << 1];
+    }
+
+    @Override
+    public void set(int position, int height) {
+	int node = position + leaves;
+	tree[node] = height;
+	for (node >>= 1; node > 0; node >>= 1) {
+	    tree[node] = Math.max(tree[node << 1], tree[(node << 1) + 1]);
+	}
+    }
+
+    @Override
+    public int get(int position) {
+	return tree[position + leaves];
+    }
+
+    @Override
+    public int max(int from, int to) {
+	int maxHeight = 0;
+	int left = Math.max(from, 0) + leaves;
+	int right = Math.min(to, leaves - 1) + leaves + 1;
+	while (left < right) {
+	    if ((left & 1) == 1)
+		maxHeight = Math.max(maxHeight, tree[left++]);
+	    if ((right & 1) == 1)
+		maxHeight = Math.max(maxHeight, tree[--right]);
+	    left >>= 1;
+	    right >>= 1;
+	}
+	return maxHeight;
+    }
+}
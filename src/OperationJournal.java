@@ -0,0 +1,251 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>Driver decorator recording every primitive call, and the end of every
+ * move, into a compact binary journal.</p>
+ *
+ * <p>The journal starts with a header (magic and version) followed by one
+ * entry per call: a byte holding the primitive ordinal plus 1, or
+ * {@link #MOVE_END} for a move boundary. If the call made more than one
+ * step, {@link #RUN_FLAG} is set and the number of steps follows as an
+ * unsigned varint. A zero byte marks the end of the journal.</p>
+ *
+ * <p>Entries are written into a memory-mapped region of the file, so
+ * recording does not make a system call per operation; the file is mapped
+ * again every {@link #REGION_SIZE} bytes. Entries are written before the
+ * call is forwarded, so a journal ends with the operation that failed, and
+ * whatever reached the mapping survives a crash of the process. Journals
+ * are read back by {@link JournalReplayer}.</p>
+ */
+public class OperationJournal implements SegmentDriver, Closeable {
+
+    /** Journal magic, "RBJ1". */
+    public static final int MAGIC = 0x52424A31;
+
+    /** Journal format version. */
+    public static final int VERSION = 1;
+
+    /** Header size: magic and version. */
+    public static final int HEADER_SIZE = 8;
+
+    /** Code of a move boundary. */
+    public static final int MOVE_END = 0x0F;
+
+    /** Flag set on the code of an entry followed by its number of steps. */
+    public static final int RUN_FLAG = 0x10;
+
+    /** Largest entry: code and a 5 byte varint. */
+    static final int MAX_ENTRY_SIZE = 6;
+
+    /** Size of the mapped regions. */
+    static final int REGION_SIZE = 1 << 20;
+
+    /** The decorated driver. */
+    private final RobotDriver r;
+
+    /** The decorated driver, if it executes segments. */
+    private final SegmentDriver segmentDriver;
+
+    /** The journal file. */
+    private FileChannel channel;
+
+    /** The mapped region being written, null once closed. */
+    private MappedByteBuffer region;
+
+    /** File offset of the mapped region. */
+    private long regionStart;
+
+    /** Number of recorded operations. */
+    private long operations;
+
+    /** Number of recorded moves. */
+    private long moves;
+
+    /**
+     * Instantiates a new journal, replacing any existing file.
+     *
+     * @param r
+     *            the decorated driver
+     * @param file
+     *            the journal file
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    public OperationJournal(RobotDriver r, Path file) throws IOException {
+	this.r = r;
+	this.segmentDriver = r instanceof SegmentDriver ? (SegmentDriver) r : null;
+	this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+		StandardOpenOption.READ, StandardOpenOption.WRITE);
+	this.region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+	region.putInt(MAGIC);
+	region.putInt(VERSION);
+    }
+
+    /**
+     * Get the decorated driver.
+     *
+     * @return the decorated driver
+     */
+    public RobotDriver getDriver() {
+	return r;
+    }
+
+    /**
+     * Get the number of recorded operations.
+     *
+     * @return the number of unit steps, picks and drops
+     */
+    public long getOperationCount() {
+	return operations;
+    }
+
+    /**
+     * Get the number of recorded moves.
+     *
+     * @return the number of move boundaries
+     */
+    public long getMoveCount() {
+	return moves;
+    }
+
+    /**
+     * Record the end of a move.
+     */
+    public void markMove() {
+	if (region == null)
+	    return;
+	ensureCapacity();
+	region.put((byte) MOVE_END);
+	moves++;
+    }
+
+    /**
+     * Append an entry.
+     *
+     * @param primitive
+     *            the primitive
+     * @param steps
+     *            the number of steps
+     */
+    private void record(Primitive primitive, int steps) {
+	if (region == null)
+	    return;
+	ensureCapacity();
+	int code = primitive.ordinal() + 1;
+	if (steps == 1) {
+	    region.put((byte) code);
+	} else {
+	    region.put((byte) (code | RUN_FLAG));
+	    int value = steps;
+	    while ((value & ~0x7F) != 0) {
+		region.put((byte) (value & 0x7F | 0x80));
+		value >>>= 7;
+	    }
+	    region.put((byte) value);
+	}
+	operations += steps;
+    }
+
+    /**
+     * Map the next region if the current one cannot hold another entry.
+     */
+    private void ensureCapacity() {
+	if (region.remaining() >= MAX_ENTRY_SIZE)
+	    return;
+	try {
+	    regionStart += region.position();
+	    region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE);
+	} catch (IOException e) {
+	    throw new IllegalStateException("Cannot extend the journal", e);
+	}
+    }
+
+    /**
+     * Flush the recorded entries to the storage device.
+     */
+    public void force() {
+	if (region != null)
+	    region.force();
+    }
+
+    /**
+     * Flush the journal and cut the file after the last entry. Calls made
+     * afterwards are forwarded without being recorded.
+     */
+    @Override
+    public void close() throws IOException {
+	if (region == null)
+	    return;
+	region.force();
+	long end = regionStart + region.position();
+	region = null;
+	channel.truncate(end);
+	channel.close();
+	channel = null;
+    }
+
+    @Override
+    public void move(Primitive primitive, int steps) {
+	record(primitive, steps);
+	if (segmentDriver != null) {
+	    segmentDriver.move(primitive, steps);
+	} else {
+	    for (int x = 0; x < steps; x++) {
+		primitive.execute(r);
+	    }
+	}
+    }
+
+    @Override
+    public void up() {
+	record(Primitive.UP, 1);
+	r.up();
+    }
+
+    @Override
+    public void down() {
+	record(Primitive.DOWN, 1);
+	r.down();
+    }
+
+    @Override
+    public void extend() {
+	record(Primitive.EXTEND, 1);
+	r.extend();
+    }
+
+    @Override
+    public void contract() {
+	record(Primitive.CONTRACT, 1);
+	r.contract();
+    }
+
+    @Override
+    public void lower() {
+	record(Primitive.LOWER, 1);
+	r.lower();
+    }
+
+    @Override
+    public void raise() {
+	record(Primitive.RAISE, 1);
+	r.raise();
+    }
+
+    @Override
+    public void pick() {
+	record(Primitive.PICK, 1);
+	r.pick();
+    }
+
+    @Override
+    public void drop() {
+	record(Primitive.DROP, 1);
+	r.drop();
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * <p>Runs {@link RobotControl} as a two stage pipeline.</p>
+ *
+ * <p>A planner thread runs the controller against its own model of the
+ * columns and pushes the compiled primitive segments into a
+ * {@link CommandRing}, while the calling thread drains the ring into the
+ * robot. Planning the next moves therefore overlaps with the actuation of
+ * the current one, and the planner blocks once it is a full ring ahead of
+ * the robot.</p>
+ *
+ * <p>An error on either side closes the ring, stops the other side and is
+ * rethrown by {@link #control(int[], int[], int[], boolean)}.</p>
+ */
+public class PipelinedControl {
+
+    /** Default number of segments the planner may run ahead. */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /** The robot, only called from the actuator thread. */
+    private final RobotDriver robot;
+
+    /** Segments compiled but not yet actuated. */
+    private final CommandRing ring;
+
+    /** Controller running on the planner thread. */
+    private final RobotControl planner;
+
+    /** Exception or error raised by the planner thread. */
+    private volatile Throwable plannerFailure;
+
+    /**
+     * Driver of the planner thread, pushing every segment into the ring.
+     */
+    private static class RingDriver implements SegmentDriver {
+
+	private final CommandRing ring;
+
+	RingDriver(CommandRing ring) {
+	    this.ring = ring;
+	}
+
+	@Override
+	public void move(Primitive primitive, int steps) {
+	    ring.put(primitive, steps);
+	}
+
+	@Override
+	public void up() {
+	    ring.put(Primitive.UP, 1);
+	}
+
+	@Override
+	public void down() {
+	    ring.put(Primitive.DOWN, 1);
+	}
+
+	@Override
+	public void extend() {
+	    ring.put(Primitive.EXTEND, 1);
+	}
+
+	@Override
+	public void contract() {
+	    ring.put(Primitive.CONTRACT, 1);
+	}
+
+	@Override
+	public void lower() {
+	    ring.put(Primitive.LOWER, 1);
+	}
+
+	@Override
+	public void raise() {
+	    ring.put(Primitive.RAISE, 1);
+	}
+
+	@Override
+	public void pick() {
+	    ring.put(Primitive.PICK, 1);
+	}
+
+	@Override
+	public void drop() {
+	    ring.put(Primitive.DROP, 1);
+	}
+    }
+
+    /**
+     * Instantiates a new pipelined control with the default capacity.
+     *
+     * @param robot
+     *            the robot driver
+     */
+    public PipelinedControl(RobotDriver robot) {
+	this(robot, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new pipelined control.
+     *
+     * @param robot
+     *            the robot driver
+     * @param capacity
+     *            the number of segments the planner may run ahead
+     */
+    public PipelinedControl(RobotDriver robot, int capacity) {
+	this.robot = robot;
+	this.ring = new CommandRing(capacity);
+	this.planner = new RobotControl(new RingDriver(ring));
+    }
+
+    /**
+     * Get the controller running on the planner thread, for instance to
+     * enable the Part D planner or the trajectory cache.
+     *
+     * @return the controller
+     */
+    public RobotControl getPlanner() {
+	return planner;
+    }
+
+    /**
+     * Get the ring buffer, for its wait statistics.
+     *
+     * @return the ring buffer
+     */
+    public CommandRing getRing() {
+	return ring;
+    }
+
+    /**
+     * Solve the scenario, planning on a separate thread while the calling
+     * thread actuates the robot.
+     *
+     * @param barHeights
+     *            the bar heights
+     * @param blockHeights
+     *            the block heights
+     * @param required
+     *            the required ordering
+     * @param ordered
+     *            the ordered argument
+     * @throws InterruptedException
+     *             if interrupted while waiting for the planner
+     */
+    public void control(final int[] barHeights, final int[] blockHeights, final int[] required,
+	    final boolean ordered) throws InterruptedException {
+	Thread plannerThread = new Thread("planner") {
+	    @Override
+	    public void run() {
+		try {
+		    planner.control(barHeights, blockHeights, required, ordered);
+		    ring.end();
+		} catch (Throwable e) {
+		    // errors too, or the actuator would wait for the ring forever
+		    plannerFailure = e;
+		    ring.close();
+		}
+	    }
+	};
+	plannerThread.start();
+
+	Throwable failure = null;
+	try {
+	    SegmentDriver segmentDriver = robot instanceof SegmentDriver ? (SegmentDriver) robot : null;
+	    for (long command = ring.take(); command >= 0; command = ring.take()) {
+		Primitive primitive = CommandRing.primitiveOf(command);
+		int steps = CommandRing.stepsOf(command);
+		if (segmentDriver != null) {
+		    segmentDriver.move(primitive, steps);
+		} else {
+		    for (int x = 0; x < steps; x++) {
+			primitive.execute(robot);
+		    }
+		}
+	    }
+	} catch (Throwable e) {
+	    // the ring closed by a failing planner is not the cause of the error
+	    failure = plannerFailure != null ? plannerFailure : e;
+	    // errors too, or the planner would wait for the ring forever
+	    ring.close();
+	}
+	plannerThread.join();
+	if (failure == null)
+	    return;
+	if (failure instanceof RuntimeException)
+	    throw (RuntimeException) failure;
+	if (failure instanceof Error)
+	    throw (Error) failure;
+	throw new IllegalStateException(failure);
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Cost of a scenario: primitive operation counts, arm peaks and the
+ * simulated execution time.
+ */
+public class PlanEstimate {
+
+    /** Number of steps for each primitive, indexed by ordinal. */
+    private final long[] steps;
+
+    /** Highest arm 1 height. */
+    private final int peakArmOneHeight;
+
+    /** Farthest arm 2 width. */
+    private final int peakArmTwoWidth;
+
+    /** Deepest arm 3 depth. */
+    private final int peakArmThreeDepth;
+
+    /** Simulated duration of one arm step. */
+    private final double millisPerStep;
+
+    /**
+     * Instantiates a new plan estimate.
+     *
+     * @param steps
+     *            number of steps for each primitive, indexed by ordinal
+     * @param peakArmOneHeight
+     *            highest arm 1 height
+     * @param peakArmTwoWidth
+     *            farthest arm 2 width
+     * @param peakArmThreeDepth
+     *            deepest arm 3 depth
+     * @param millisPerStep
+     *            simulated duration of one arm step
+     */
+    public PlanEstimate(long[] steps, int peakArmOneHeight, int peakArmTwoWidth, int peakArmThreeDepth,
+	    double millisPerStep) {
+	this.steps = steps;
+	this.peakArmOneHeight = peakArmOneHeight;
+	this.peakArmTwoWidth = peakArmTwoWidth;
+	this.peakArmThreeDepth = peakArmThreeDepth;
+	this.millisPerStep = millisPerStep;
+    }
+
+    /**
+     * Get the number of steps of the given primitive.
+     *
+     * @param primitive
+     *            the primitive
+     * @return the number of steps
+     */
+    public long getSteps(Primitive primitive) {
+	return steps[primitive.ordinal()];
+    }
+
+    /**
+     * Get the number of arm 1 steps (up and down).
+     *
+     * @return the number of steps
+     */
+    public long getArmOneSteps() {
+	return getSteps(Primitive.UP) + getSteps(Primitive.DOWN);
+    }
+
+    /**
+     * Get the number of arm 2 steps (extend and contract).
+     *
+     * @return the number of steps
+     */
+    public long getArmTwoSteps() {
+	return getSteps(Primitive.EXTEND) + getSteps(Primitive.CONTRACT);
+    }
+
+    /**
+     * Get the number of arm 3 steps (lower and raise).
+     *
+     * @return the number of steps
+     */
+    public long getArmThreeSteps() {
+	return getSteps(Primitive.LOWER) + getSteps(Primitive.RAISE);
+    }
+
+    /**
+     * Get the number of picked blocks.
+     *
+     * @return the number of picks
+     */
+    public long getPicks() {
+	return getSteps(Primitive.PICK);
+    }
+
+    /**
+     * Get the number of dropped blocks.
+     *
+     * @return the number of drops
+     */
+    public long getDrops() {
+	return getSteps(Primitive.DROP);
+    }
+
+    /**
+     * Get the total number of primitive operations.
+     *
+     * @return the number of operations
+     */
+    public long getOperationCount() {
+	return getArmOneSteps() + getArmTwoSteps() + getArmThreeSteps() + getPicks() + getDrops();
+    }
+
+    /**
+     * Get the highest arm 1 height.
+     *
+     * @return the height
+     */
+    public int getPeakArmOneHeight() {
+	return peakArmOneHeight;
+    }
+
+    /**
+     * Get the farthest arm 2 width.
+     *
+     * @return the width
+     */
+    public int getPeakArmTwoWidth() {
+	return peakArmTwoWidth;
+    }
+
+    /**
+     * Get the deepest arm 3 depth.
+     *
+     * @return the depth
+     */
+    public int getPeakArmThreeDepth() {
+	return peakArmThreeDepth;
+    }
+
+    /**
+     * Get the simulated execution time. Arm steps take a fixed time, picking
+     * and dropping are immediate (as in the Swing robot).
+     *
+     * @return the simulated time in milliseconds
+     */
+    public double getSimulatedMillis() {
+	return (getArmOneSteps() + getArmTwoSteps() + getArmThreeSteps()) * millisPerStep;
+    }
+
+    @Override
+    public String toString() {
+	return "arm1=" + getArmOneSteps() + " arm2=" + getArmTwoSteps() + " arm3=" + getArmThreeSteps() + " picks="
+		+ getPicks() + " drops=" + getDrops() + " peaks=(" + peakArmOneHeight + "," + peakArmTwoWidth + ","
+		+ peakArmThreeDepth + ") time=" + getSimulatedMillis() + "ms";
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * <p>Dry run of a scenario: runs the {@link RobotControl} logic on its own
+ * copy of the columns against a {@link CountingRobot}, without touching the
+ * robot, and returns the resulting {@link PlanEstimate}.</p>
+ *
+ * <p>Each estimate only allocates the columns of the scenario, so thousands
+ * of candidate scenarios can be evaluated per second.</p>
+ */
+public class PlanPreview {
+
+    /** Duration of an arm step of the Swing robot at its default speed. */
+    public static final double DEFAULT_MILLIS_PER_STEP = 100;
+
+    /** Simulated duration of one arm step. */
+    private final double millisPerStep;
+
+    /** Part D planner time budget, 0 to use the greedy rule. */
+    private long plannerBudgetMillis;
+
+    /** Part D planner heuristic weight. */
+    private double plannerWeight = 1.0;
+
+    /**
+     * Instantiates a new plan preview using the Swing robot step duration.
+     */
+    public PlanPreview() {
+	this(DEFAULT_MILLIS_PER_STEP);
+    }
+
+    /**
+     * Instantiates a new plan preview.
+     *
+     * @param millisPerStep
+     *            simulated duration of one arm step
+     */
+    public PlanPreview(double millisPerStep) {
+	this.millisPerStep = millisPerStep;
+    }
+
+    /**
+     * Preview scenarios with the Part D planner enabled.
+     *
+     * @param budgetMillis
+     *            the planner time budget
+     * @param weight
+     *            the planner heuristic weight
+     * @see RobotControl#setPlanner(long, double)
+     */
+    public void setPlanner(long budgetMillis, double weight) {
+	this.plannerBudgetMillis = budgetMillis;
+	this.plannerWeight = weight;
+    }
+
+    /**
+     * Estimate the cost of a <code>control</code> call with the given
+     * arguments.
+     *
+     * @param barHeights
+     *            the bar heights
+     * @param blockHeights
+     *            the block heights
+     * @param required
+     *            the required ordering
+     * @param ordered
+     *            the ordered argument
+     * @return the estimate
+     */
+    public PlanEstimate estimate(int[] barHeights, int[] blockHeights, int[] required, boolean ordered) {
+	CountingRobot robot = new CountingRobot();
+	RobotControl control = new RobotControl(robot);
+	control.setPlanner(plannerBudgetMillis, plannerWeight);
+	control.control(barHeights, blockHeights, required, ordered);
+	return robot.toEstimate(millisPerStep);
+    }
+}
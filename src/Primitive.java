@@ -0,0 +1,104 @@
+/**
+ * Primitive robot operations, as sent to a {@link RobotDriver}.
+ */
+public enum Primitive {
+
+    /** Move arm 1 up. */
+    UP,
+    /** Move arm 1 down. */
+    DOWN,
+    /** Extend arm 2. */
+    EXTEND,
+    /** Contract arm 2. */
+    CONTRACT,
+    /** Lower arm 3. */
+    LOWER,
+    /** Raise arm 3. */
+    RAISE,
+    /** Pick a block. */
+    PICK,
+    /** Drop a block. */
+    DROP;
+
+    /** Cached values, avoids cloning the values array on lookups. */
+    private static final Primitive[] VALUES = values();
+
+    /**
+     * Get the primitive undoing this one.
+     *
+     * @return the opposite primitive, null for pick and drop
+     */
+    public Primitive opposite() {
+	switch (this) {
+	case UP:
+	    return DOWN;
+	case DOWN:
+	    return UP;
+	case EXTEND:
+	    return CONTRACT;
+	case CONTRACT:
+	    return EXTEND;
+	case LOWER:
+	    return RAISE;
+	case RAISE:
+	    return LOWER;
+	default:
+	    return null;
+	}
+    }
+
+    /**
+     * Check if consecutive primitives of this type can be merged.
+     *
+     * @return true, for arm movements
+     */
+    public boolean isMotion() {
+	return this != PICK && this != DROP;
+    }
+
+    /**
+     * Send a single step of this primitive to the given driver.
+     *
+     * @param r
+     *            the robot driver
+     */
+    public void execute(RobotDriver r) {
+	switch (this) {
+	case UP:
+	    r.up();
+	    break;
+	case DOWN:
+	    r.down();
+	    break;
+	case EXTEND:
+	    r.extend();
+	    break;
+	case CONTRACT:
+	    r.contract();
+	    break;
+	case LOWER:
+	    r.lower();
+	    break;
+	case RAISE:
+	    r.raise();
+	    break;
+	case PICK:
+	    r.pick();
+	    break;
+	case DROP:
+	    r.drop();
+	    break;
+	}
+    }
+
+    /**
+     * Get the primitive with the given ordinal.
+     *
+     * @param ordinal
+     *            the primitive ordinal
+     * @return the primitive
+     */
+    public static Primitive valueOf(int ordinal) {
+	return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,478 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * <p>Search based planner for Part D (required ordering).</p>
+ *
+ * <p>Runs a weighted A* search over the states of the Source and Temporary
+ * columns, the number of blocks already placed in the Target column and the
+ * arm 1/arm 2 positions. The cost of a move is the number of primitive
+ * operations {@link RobotControl} issues for it, computed by the same
+ * height rules as <code>moveBlock</code> (arm pass, block pass, picking,
+ * dropping). With a weight of 1 the plan uses the minimum number of steps,
+ * a larger weight returns a plan at most that many times the optimum.</p>
+ *
+ * <p>The search stops when its time budget or node limit is exhausted, in
+ * which case no plan is returned and the caller falls back to the greedy
+ * digging rule. A plan is only returned if it is cheaper than the greedy
+ * one. Above {@link #MAX_BLOCKS} blocks no search is tried at all: the
+ * state space is far too large to beat the greedy rule within any useful
+ * budget.</p>
+ */
+public class RequiredPlanner {
+
+    /** Index of the Source column. */
+    private static final int SOURCE = ColumnType.source.ordinal();
+
+    /** Index of the Temporary column. */
+    private static final int TEMPORARY = ColumnType.temporary.ordinal();
+
+    /** Index of the Target column. */
+    private static final int TARGET = ColumnType.target.ordinal();
+
+    /** Track position of each column. */
+    private static final int[] POSITIONS = { ColumnType.source.getValue(), ColumnType.temporary.getValue(),
+	    ColumnType.target.getValue() };
+
+    /** Check the time budget every this many expanded nodes. */
+    private static final int BUDGET_CHECK_INTERVAL = 256;
+
+    /** Most blocks in the Source and Temporary columns a search is tried for. */
+    public static final int MAX_BLOCKS = 28;
+
+    /** Highest bar on the track. */
+    private final int highestBar;
+
+    /** Heuristic weight, 1 for optimal plans. */
+    private final double weight;
+
+    /** Maximum number of nodes kept by the search. */
+    private final int maxNodes;
+
+    /** Required ordering. */
+    private int[] required;
+
+    /** Target column height after placing the first n required blocks. */
+    private int[] targetHeights;
+
+    /** Number of nodes expanded by the last search. */
+    private int expandedNodes;
+
+    /**
+     * Instantiates a new required ordering planner.
+     *
+     * @param highestBar
+     *            the highest bar on the track
+     * @param weight
+     *            the heuristic weight, at least 1
+     * @param maxNodes
+     *            the maximum number of nodes kept by the search
+     */
+    public RequiredPlanner(int highestBar, double weight, int maxNodes) {
+	this.highestBar = highestBar;
+	this.weight = Math.max(weight, 1.0);
+	this.maxNodes = maxNodes;
+    }
+
+    /**
+     * <p>Plan the moves placing the required blocks in the Target column.</p>
+     *
+     * @param source
+     *            the Source column
+     * @param temporary
+     *            the Temporary column
+     * @param target
+     *            the Target column, holding a prefix of the required blocks
+     * @param required
+     *            the required ordering
+     * @param armOneHeight
+     *            current arm 1 height
+     * @param armTwoWidth
+     *            current arm 2 width
+     * @param budgetMillis
+     *            the search time budget
+     * @return the moves as (from, to) column pairs, null if no plan cheaper
+     *         than the greedy one was found within the budget, or if there
+     *         are more than {@link #MAX_BLOCKS} blocks to plan
+     * @throws IllegalStateException
+     *             if a required block is in neither the Source nor the
+     *             Temporary column
+     */
+    public ColumnType[] plan(Column source, Column temporary, Column target, int[] required, int armOneHeight,
+	    int armTwoWidth, long budgetMillis) {
+	long deadline = System.nanoTime() + budgetMillis * 1000000L;
+	this.expandedNodes = 0;
+	if (source.getBlockCount() + temporary.getBlockCount() > MAX_BLOCKS)
+	    return null;
+	this.required = required;
+	this.targetHeights = new int[required.length + 1];
+	for (int x = 0; x < required.length; x++) {
+	    targetHeights[x + 1] = targetHeights[x] + required[x];
+	}
+
+	int[] sourceBlocks = toArray(source.getBlocks());
+	int[] temporaryBlocks = toArray(temporary.getBlocks());
+	int placed = target.getBlockCount();
+	int greedyCost = greedyCost(sourceBlocks, temporaryBlocks, placed, armOneHeight, armTwoWidth, deadline);
+	if (greedyCost < 0)
+	    return null;
+	Node start = new Node(sourceBlocks, temporaryBlocks, sum(sourceBlocks), sum(temporaryBlocks), placed,
+		armOneHeight, armTwoWidth, 0, null, -1, -1);
+
+	PriorityQueue<Node> open = new PriorityQueue<>(11, BY_PRIORITY);
+	Map<Node, Integer> bestCosts = new HashMap<>();
+	start.priority = weight * estimate(start);
+	open.add(start);
+	bestCosts.put(start, 0);
+
+	while (!open.isEmpty()) {
+	    Node node = open.poll();
+	    if (bestCosts.get(node) < node.cost)
+		continue;
+	    if (node.placed == required.length)
+		return node.cost < greedyCost ? toMoves(node) : null;
+	    if (node.cost + estimate(node) >= greedyCost)
+		continue;
+
+	    expandedNodes++;
+	    if (bestCosts.size() > maxNodes)
+		return null;
+	    if (expandedNodes % BUDGET_CHECK_INTERVAL == 0 && System.nanoTime() > deadline)
+		return null;
+
+	    expand(node, SOURCE, TEMPORARY, open, bestCosts);
+	    expand(node, TEMPORARY, SOURCE, open, bestCosts);
+	    expand(node, SOURCE, TARGET, open, bestCosts);
+	    expand(node, TEMPORARY, TARGET, open, bestCosts);
+	}
+	return null;
+    }
+
+    /**
+     * Get the number of nodes expanded by the last search.
+     *
+     * @return the number of expanded nodes
+     */
+    public int getExpandedNodes() {
+	return expandedNodes;
+    }
+
+    /**
+     * Add the successor reached by moving the top block between two columns.
+     */
+    private void expand(Node node, int from, int to, PriorityQueue<Node> open, Map<Node, Integer> bestCosts) {
+	int[] fromBlocks = from == SOURCE ? node.source : node.temporary;
+	if (fromBlocks.length == 0)
+	    return;
+	int block = fromBlocks[fromBlocks.length - 1];
+	if (to == TARGET && block != required[node.placed])
+	    return;
+
+	Node next = move(node, from, to);
+	Integer bestCost = bestCosts.get(next);
+	if (bestCost != null && bestCost <= next.cost)
+	    return;
+	bestCosts.put(next, next.cost);
+	next.priority = next.cost + weight * estimate(next);
+	open.add(next);
+    }
+
+    /**
+     * Apply a move to a state.
+     */
+    private Node move(Node node, int from, int to) {
+	int[] heights = { node.sourceHeight, node.temporaryHeight, targetHeights[node.placed] };
+	int[] arms = { node.armOne, node.armTwo };
+	int[] fromBlocks = from == SOURCE ? node.source : node.temporary;
+	int block = fromBlocks[fromBlocks.length - 1];
+	int cost = node.cost + moveCost(from, to, block, heights, arms);
+
+	int[] source = node.source;
+	int[] temporary = node.temporary;
+	int placed = node.placed;
+	if (from == SOURCE)
+	    source = Arrays.copyOf(source, source.length - 1);
+	else
+	    temporary = Arrays.copyOf(temporary, temporary.length - 1);
+	if (to == SOURCE)
+	    source = push(source, block);
+	else if (to == TEMPORARY)
+	    temporary = push(temporary, block);
+	else
+	    placed++;
+	return new Node(source, temporary, heights[SOURCE], heights[TEMPORARY], placed, arms[0], arms[1], cost, node,
+		from, to);
+    }
+
+    /**
+     * <p>Cost of moving a block between two columns, following the same
+     * steps and height rules as <code>RobotControl.moveBlock</code>.</p>
+     *
+     * @param heights
+     *            the column heights, updated by the move
+     * @param arms
+     *            the arm 1 height and arm 2 width, updated by the move
+     * @return the number of primitive operations
+     */
+    private int moveCost(int from, int to, int block, int[] heights, int[] arms) {
+	int fromPosition = POSITIONS[from];
+	int toPosition = POSITIONS[to];
+	int armOne = arms[0];
+	int armTwo = arms[1];
+	int cost = 0;
+
+	// contract first if both columns are behind the arm
+	if (Math.max(fromPosition, toPosition) < armTwo) {
+	    cost += armTwo - fromPosition;
+	    armTwo = fromPosition;
+	}
+	// go up making sure the arm pass, then extend
+	int height = armPass(from, to, heights) + 1;
+	cost += Math.abs(armOne - height) + Math.abs(armTwo - fromPosition);
+	armOne = height;
+	armTwo = fromPosition;
+	// lower arm 3, pick, raise arm 3
+	cost += 2 * (armOne - heights[from] - 1) + 1;
+	// change arm 1 height so the block passes, then move to the end column
+	height = Math.max(armPass(from, to, heights), blockPass(from, to, heights, block)) + 1;
+	cost += Math.abs(armOne - height) + Math.abs(armTwo - toPosition);
+	armOne = height;
+	armTwo = toPosition;
+	// drop, lowering either arm 1 or arm 3
+	int depth = armOne - heights[to] - block - 1;
+	heights[from] -= block;
+	heights[to] += block;
+	if (armOne - depth > armPass(TARGET, to, heights)) {
+	    cost += depth;
+	    armOne -= depth;
+	} else {
+	    cost += 2 * depth;
+	}
+	cost += 1;
+
+	arms[0] = armOne;
+	arms[1] = armTwo;
+	return cost;
+    }
+
+    /**
+     * Highest column or bar between the Target column and the farthest of
+     * the given columns.
+     */
+    private int armPass(int from, int to, int[] heights) {
+	int maxPosition = Math.max(POSITIONS[from], POSITIONS[to]);
+	int maxHeight = highestBar;
+	for (int x = 0; x < POSITIONS.length; x++) {
+	    if (POSITIONS[x] <= maxPosition)
+		maxHeight = Math.max(maxHeight, heights[x]);
+	}
+	return maxHeight;
+    }
+
+    /**
+     * Block height plus the highest column or bar between the given
+     * columns, excluding the starting one.
+     */
+    private int blockPass(int from, int to, int[] heights, int block) {
+	int minPosition = Math.min(POSITIONS[from], POSITIONS[to]);
+	int maxPosition = Math.max(POSITIONS[from], POSITIONS[to]);
+	int maxHeight = highestBar;
+	for (int x = 0; x < POSITIONS.length; x++) {
+	    if (x != from && POSITIONS[x] >= minPosition && POSITIONS[x] <= maxPosition)
+		maxHeight = Math.max(maxHeight, heights[x]);
+	}
+	return block + maxHeight;
+    }
+
+    /**
+     * <p>Lower bound of the remaining cost.</p>
+     *
+     * <p>Every remaining block needs a pick, a drop and a trip from the
+     * Temporary or Source column to the Target column, and the arm must
+     * travel back between trips. Blocks above the next required block need
+     * at least a pick, a drop and one step to the other column.</p>
+     */
+    private int estimate(Node node) {
+	int remaining = required.length - node.placed;
+	if (remaining == 0)
+	    return 0;
+	int columnDistance = POSITIONS[TEMPORARY] - POSITIONS[TARGET];
+	int estimate = Math.max(POSITIONS[TEMPORARY] - node.armTwo, 0);
+	estimate += remaining * (2 + columnDistance) + (remaining - 1) * columnDistance;
+
+	int next = required[node.placed];
+	int sourceAbove = blocksAbove(node.source, next);
+	int temporaryAbove = blocksAbove(node.temporary, next);
+	int above = sourceAbove < 0 ? temporaryAbove
+		: temporaryAbove < 0 ? sourceAbove : Math.min(sourceAbove, temporaryAbove);
+	return estimate + Math.max(above, 0) * 3;
+    }
+
+    /**
+     * <p>Cost of the greedy digging rule used by
+     * <code>RobotControl.moveBlocksRequired</code>.</p>
+     *
+     * <p>The columns are followed in place, so each move costs constant
+     * time apart from finding the next required block.</p>
+     *
+     * @return the number of primitive operations, -1 if the deadline passed
+     */
+    private int greedyCost(int[] source, int[] temporary, int placed, int armOne, int armTwo, long deadline) {
+	int blockCount = source.length + temporary.length;
+	int[][] stacks = { Arrays.copyOf(source, blockCount), Arrays.copyOf(temporary, blockCount) };
+	int[] sizes = { source.length, temporary.length };
+	int[] heights = { sum(source), sum(temporary), targetHeights[placed] };
+	int[] arms = { armOne, armTwo };
+	int cost = 0;
+	for (; placed < required.length; placed++) {
+	    // finding the block scans the columns, so check before each one
+	    if (System.nanoTime() > deadline)
+		return -1;
+	    int next = required[placed];
+	    int from = SOURCE;
+	    int depth = blocksAbove(stacks[SOURCE], sizes[SOURCE], next);
+	    if (depth < 0) {
+		from = TEMPORARY;
+		depth = blocksAbove(stacks[TEMPORARY], sizes[TEMPORARY], next);
+		if (depth < 0)
+		    throw new IllegalStateException(
+			    "Required block " + next + " is not in the Source or Temporary column");
+	    }
+	    int other = from == SOURCE ? TEMPORARY : SOURCE;
+	    for (; depth >= 0; depth--) {
+		int to = depth > 0 ? other : TARGET;
+		int block = stacks[from][--sizes[from]];
+		cost += moveCost(from, to, block, heights, arms);
+		if (to != TARGET)
+		    stacks[to][sizes[to]++] = block;
+	    }
+	}
+	return cost;
+    }
+
+    /**
+     * Number of blocks above the highest block of the given height.
+     *
+     * @return the number of blocks, -1 if the height is not found
+     */
+    private static int blocksAbove(int[] blocks, int blockHeight) {
+	return blocksAbove(blocks, blocks.length, blockHeight);
+    }
+
+    /**
+     * Number of blocks above the highest block of the given height, in the
+     * first size blocks.
+     *
+     * @return the number of blocks, -1 if the height is not found
+     */
+    private static int blocksAbove(int[] blocks, int size, int blockHeight) {
+	for (int x = size - 1; x >= 0; x--) {
+	    if (blocks[x] == blockHeight)
+		return size - 1 - x;
+	}
+	return -1;
+    }
+
+    private static ColumnType[] toMoves(Node node) {
+	int count = 0;
+	for (Node current = node; current.parent != null; current = current.parent) {
+	    count++;
+	}
+	ColumnType[] moves = new ColumnType[count * 2];
+	ColumnType[] types = ColumnType.values();
+	for (Node current = node; current.parent != null; current = current.parent) {
+	    count--;
+	    moves[count * 2] = types[current.from];
+	    moves[count * 2 + 1] = types[current.to];
+	}
+	return moves;
+    }
+
+    private static int[] toArray(BlockView blocks) {
+	int[] values = new int[blocks.size()];
+	for (int x = 0; x < values.length; x++) {
+	    values[x] = blocks.get(x);
+	}
+	return values;
+    }
+
+    private static int[] push(int[] blocks, int block) {
+	int[] values = Arrays.copyOf(blocks, blocks.length + 1);
+	values[blocks.length] = block;
+	return values;
+    }
+
+    private static int sum(int[] blocks) {
+	int total = 0;
+	for (int block : blocks) {
+	    total += block;
+	}
+	return total;
+    }
+
+    /** Orders the open nodes, lowest priority first. */
+    private static final Comparator<Node> BY_PRIORITY = new Comparator<Node>() {
+	@Override
+	public int compare(Node first, Node second) {
+	    return Double.compare(first.priority, second.priority);
+	}
+    };
+
+    /**
+     * Search state: the Source and Temporary stacks, the number of placed
+     * blocks and the arm positions. The stack heights follow from the
+     * stacks and are only carried along; cost and parent are not part of
+     * the state identity. Not comparable: the open queue orders nodes by
+     * priority, and a map of nodes with colliding hashes would otherwise
+     * search them by priority instead of by state.
+     */
+    private static final class Node {
+	final int[] source;
+	final int[] temporary;
+	final int sourceHeight;
+	final int temporaryHeight;
+	final int placed;
+	final int armOne;
+	final int armTwo;
+	final int cost;
+	final Node parent;
+	final int from;
+	final int to;
+	final int hash;
+	double priority;
+
+	Node(int[] source, int[] temporary, int sourceHeight, int temporaryHeight, int placed, int armOne, int armTwo,
+		int cost, Node parent, int from, int to) {
+	    this.source = source;
+	    this.temporary = temporary;
+	    this.sourceHeight = sourceHeight;
+	    this.temporaryHeight = temporaryHeight;
+	    this.placed = placed;
+	    this.armOne = armOne;
+	    this.armTwo = armTwo;
+	    this.cost = cost;
+	    this.parent = parent;
+	    this.from = from;
+	    this.to = to;
+	    this.hash = ((Arrays.hashCode(source) * 31 + Arrays.hashCode(temporary)) * 31 + placed) * 31
+		    + armOne * 17 + armTwo;
+	}
+
+	@Override
+	public int hashCode() {
+	    return hash;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+	    if (!(other instanceof Node))
+		return false;
+	    Node node = (Node) other;
+	    return hash == node.hash && placed == node.placed && armOne == node.armOne && armTwo == node.armTwo
+		    && Arrays.equals(source, node.source) && Arrays.equals(temporary, node.temporary);
+	}
+    }
+}
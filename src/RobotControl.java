@@ -1,17 +1,16 @@
-import java.util.HashSet;
-import java.util.Random;
-import java.util.Set;
-import java.util.Stack;
-
-import com.sun.media.sound.MidiUtils.TempoCache;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * The Class RobotControl.
  */
 public class RobotControl {
 
-    /** The Robot object. */
-    private Robot r;
+    /** The robot driver. */
+    private RobotDriver r;
 
     /** The current height value for arm 1. */
     private int armOneCurrentHeight = 2;
@@ -28,11 +27,107 @@ public class RobotControl {
     /** Arm 1 width (not changed). */
     private final int ARM_ONE_WIDTH = 1;
 
+    /** Primitive commands of the current move. */
+    private final MotionProgram program = new MotionProgram();
+
     /** Original values of Bars heights. */
     private int[] barHeights;
 
-    /** Original values of Block heights. */
-    private int[] blockHeights;
+    /** Bars and columns along the track. */
+    private Track track;
+
+    /** Bar heights and column positions of the track, -1 for a column. */
+    private int[] trackLayout;
+
+    /** Original values of Block heights, read in place. */
+    private BlockView blockHeights;
+
+    /** Required ordering of the target column, empty or { 0 } if none. */
+    private BlockView required;
+
+    /** Larger blocks cannot be placed over smaller ones (Part E). */
+    private boolean ordered;
+
+    /** The source column. */
+    private Column source;
+
+    /** The temporary column. */
+    private Column temporary;
+
+    /** The target column. */
+    private Column target;
+
+    /** Maximum number of nodes kept by the Part D planner. */
+    private final int PLANNER_MAX_NODES = 2000000;
+
+    /** Time budget of the Part D planner, 0 to always use the greedy rule. */
+    private long plannerBudgetMillis = 0;
+
+    /** Heuristic weight of the Part D planner, 1 for minimum step plans. */
+    private double plannerWeight = 1.0;
+
+    /** Recorded metrics, null if not instrumented. */
+    private RobotMetrics metrics;
+
+    /** Compiled moves of the previous runs, null unless enabled. */
+    private TrajectoryCache trajectoryCache;
+
+    /** Column heights in track order, reused to build cache keys. */
+    private int[] columnHeights;
+
+    /** Publisher of the robot state for observers, null if disabled. */
+    private SnapshotPublisher snapshots;
+
+    /** Journal of the operations sent to the robot, null if disabled. */
+    private OperationJournal journal;
+
+    /** Planner following the clearance profile of each move, null for the fixed path. */
+    private ClearancePlanner clearancePlanner;
+
+    /** Scheduler moving the arms at the same time, null if disabled. */
+    private MotionScheduler scheduler;
+
+    /** Planner compiling moves knowing the next ones, null if disabled. */
+    private LookaheadPlanner lookahead;
+
+    /** Moves are queued in the lookahead planner (while solving a part). */
+    private boolean deferring;
+
+    /** Arm 1 height at the start of the current move. */
+    private int moveStartArmOne;
+
+    /** Arm 2 width at the start of the current move. */
+    private int moveStartArmTwo;
+
+    /** Arm 3 depth at the start of the current move. */
+    private int moveStartArmThree;
+
+    /** Default number of moves between two checkpoints. */
+    private final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    /** Number of moves between two checkpoints. */
+    private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+    /** Writer of the checkpoints of the current run, null if disabled. */
+    private CheckpointWriter checkpoints;
+
+    /** Fingerprint of the scenario of the current run. */
+    private long checkpointFingerprint;
+
+    /** Moves made since the last checkpoint. */
+    private int movesSinceCheckpoint;
+
+    /** Moves made by the current run. */
+    private long movesDone;
+
+    /** Index of the next required block (Part D) or next block to move (Parts A to C). */
+    private int requiredCursor;
+
+    /** Tower of Hanoi moves of the current Part E run. */
+    private HanoiMoves hanoiMoves;
+
+    /** Blocks already moved of the current Hanoi group. */
+    private int groupProgress;
 
     /**
      * Instantiates a new robot control.
@@ -41,63 +136,236 @@ public class RobotControl {
      *            Robot object
      */
     public RobotControl(Robot r) {
+	this(new SwingRobotDriver(r));
+    }
+
+    /**
+     * Instantiates a new robot control using the given driver.
+     *
+     * @param r
+     *            robot driver, such as the headless {@link SimulatedRobot}
+     */
+    public RobotControl(RobotDriver r) {
 	this.r = r;
     }
 
     /**
-     * <p>Non-stopping stress test for moving blocks between Source, Temporary and Target</p>
-     * 
-     * <b>Does not work if required or ordered arguments are passed</b>
+     * <p>Enable the search based planner for Part D.</p>
      * 
-     * @param showDebugVariables prints debug variables
-     */
-    @SuppressWarnings("unused")
-    private void stressTest(Column source,Column temp, Column target,boolean showDebugVariables) {
-	moveBlock(source, target);
-	moveBlock(source, temp);
-	Random rand = new Random();
-
-	while (true) {
-	    if (showDebugVariables) {
-		System.out.println("xxxxxxxxxxxxxxxxxxxxxxxxxxxx");
-		printDebugVariables(source,temp,target);
-	    }
-	    int fromColumnRandom = rand.nextInt(3) + 0;
-	    int toColumnRandom = rand.nextInt(3) + 0;
-	    Column c = Column.getColumns().get(fromColumnRandom);
-	    
-	    if (c.getHeight()==0) continue;
-	    
-	    while (toColumnRandom == fromColumnRandom){
-		toColumnRandom = rand.nextInt(3) + 0;
-	    }
-	    if (showDebugVariables) {
-		System.out.println("Moving From "+c + " To "+Column.getColumns().get(toColumnRandom));
-	    }
-	    moveBlock(c, Column.getColumns().get(toColumnRandom));
-	    if (showDebugVariables) {
-		printDebugVariables(source,temp,target);
-		System.out.println("xxxxxxxxxxxxxxxxxxxxxxxxxxxx");
-	    }
+     * <p>The planner looks for the move sequence with the fewest primitive
+     * steps (or at most weight times the fewest) and falls back to the
+     * greedy rule if no cheaper plan is found within the time budget. It is
+     * not tried above {@link RequiredPlanner#MAX_BLOCKS} blocks.</p>
+     *
+     * @param budgetMillis
+     *            the search time budget, 0 to disable the planner
+     * @param weight
+     *            the heuristic weight, 1 for minimum step plans
+     */
+    public void setPlanner(long budgetMillis, double weight) {
+	this.plannerBudgetMillis = budgetMillis;
+	this.plannerWeight = weight;
+    }
+
+    /**
+     * <p>Record primitive counts and latencies, the latency of every move
+     * phase and the planning versus actuation time of each move.</p>
+     *
+     * <p>The driver is wrapped in an {@link InstrumentedDriver}. Metrics can
+     * be published over JMX with {@link RobotMetrics#register(String)}.</p>
+     *
+     * @param metrics
+     *            the metrics to record into
+     */
+    public void setMetrics(RobotMetrics metrics) {
+	if (this.r instanceof InstrumentedDriver)
+	    this.r = ((InstrumentedDriver) this.r).getDriver();
+	this.metrics = metrics;
+	if (metrics != null)
+	    this.r = new InstrumentedDriver(this.r, metrics);
+    }
+
+    /**
+     * <p>Set the number of compiled moves kept for replay.</p>
+     *
+     * <p>The cache is off by default. A move is only replayed when the arms
+     * and every column up to the farthest one are back in the same state,
+     * which hardly happens within a run, so it only pays off when the same
+     * scenario is run again on this controller.</p>
+     *
+     * @param maxEntries
+     *            the maximum number of cached trajectories, 0 to disable
+     *            the cache
+     */
+    public void setTrajectoryCacheSize(int maxEntries) {
+	this.trajectoryCache = maxEntries > 0 ? new TrajectoryCache(maxEntries) : null;
+    }
+
+    /**
+     * Get the trajectory cache and its hit/miss statistics.
+     *
+     * @return the trajectory cache, null if disabled
+     */
+    public TrajectoryCache getTrajectoryCache() {
+	return trajectoryCache;
+    }
+
+    /**
+     * <p>Publish an immutable {@link RobotSnapshot} of the arms and columns
+     * after every primitive sent to the robot.</p>
+     *
+     * <p>Observers running on other threads should read the state through
+     * {@link #getSnapshot()} only, never through the columns.</p>
+     *
+     * @param enabled
+     *            start or stop publishing snapshots
+     */
+    public void setSnapshots(boolean enabled) {
+	if (enabled && snapshots == null) {
+	    snapshots = new SnapshotPublisher(r);
+	    r = snapshots;
+	    if (track != null)
+		snapshots.reset(track, armOneCurrentHeight, armTwoCurrentWidth, armThreeCurrentDepth);
+	} else if (!enabled && snapshots != null) {
+	    if (r == snapshots)
+		r = snapshots.getDriver();
+	    snapshots = null;
 	}
     }
 
+    /**
+     * Get the latest published snapshot. Safe to call from any thread.
+     *
+     * @return the snapshot, null if snapshots are disabled
+     */
+    public RobotSnapshot getSnapshot() {
+	SnapshotPublisher publisher = snapshots;
+	return publisher == null ? null : publisher.getSnapshot();
+    }
+
+    /**
+     * <p>Record every primitive sent to the robot, and the end of every move,
+     * into a binary journal replacing the given file.</p>
+     *
+     * <p>The journal can be fed back into any driver with
+     * {@link JournalReplayer}.</p>
+     *
+     * @param file
+     *            the journal file
+     * @return the journal
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    public OperationJournal startJournal(Path file) throws IOException {
+	stopJournal();
+	journal = new OperationJournal(r, file);
+	r = journal;
+	return journal;
+    }
+
+    /**
+     * Stop recording and close the journal, if any.
+     *
+     * @throws IOException
+     *             if the journal cannot be closed
+     */
+    public void stopJournal() throws IOException {
+	if (journal == null)
+	    return;
+	if (r == journal)
+	    r = journal.getDriver();
+	journal.close();
+	journal = null;
+    }
+
+    /**
+     * <p>Compile moves along the clearance profile of arm 2's travel
+     * instead of the fixed path: arm 1 climbs only as high as each position
+     * needs and is lowered as soon as the obstacles are passed.</p>
+     *
+     * <p>The planner reports the arm 1 steps saved over the fixed path.</p>
+     *
+     * @param planner
+     *            the planner, null for the fixed path
+     */
+    public void setClearancePlanner(ClearancePlanner planner) {
+	this.clearancePlanner = planner;
+	// cached trajectories follow the other path
+	if (trajectoryCache != null)
+	    trajectoryCache.clear();
+    }
+
+    /**
+     * <p>Move the three arms at the same time whenever it is collision-free,
+     * instead of one arm at a time.</p>
+     *
+     * <p>Every compiled move is rescheduled by the given
+     * {@link MotionScheduler}, which reports the makespan reduction. Arms
+     * moving together are sent in one call to a {@link MultiAxisDriver}
+     * such as {@link MakespanDriver}.</p>
+     *
+     * @param scheduler
+     *            the scheduler, null to move one arm at a time
+     */
+    public void setMotionScheduler(MotionScheduler scheduler) {
+	this.scheduler = scheduler;
+    }
+
+    /**
+     * <p>Compile the moves of Parts A to E knowing the next moves, so the
+     * arms park where the following moves need them.</p>
+     *
+     * <p>Moves are queued in the given {@link LookaheadPlanner} with the
+     * columns already updated, and sent once the planner's window of
+     * upcoming moves is known; the remaining moves are sent at the end of
+     * the part and before every checkpoint.
+     * Queued moves bypass the trajectory cache and the clearance planner.
+     * Single moves such as {@link #moveBlock(int, int)} are sent at
+     * once.</p>
+     *
+     * @param planner
+     *            the planner, null to compile each move on its own
+     */
+    public void setLookahead(LookaheadPlanner planner) {
+	this.lookahead = planner;
+    }
+
+    /**
+     * Set the number of moves between two checkpoints of
+     * {@link #control(int[], int[], int[], boolean, Path)}.
+     *
+     * @param moves
+     *            the number of moves
+     */
+    public void setCheckpointInterval(int moves) {
+	if (moves < 1)
+	    throw new IllegalArgumentException("Checkpoint interval must be at least 1: " + moves);
+	this.checkpointInterval = moves;
+    }
+
     /**
      * Prints the debug variables.
      */
-    private void printDebugVariables(Column source,Column temp, Column target) {
+    void printDebugVariables() {
+	RobotSnapshot snapshot = getSnapshot();
+	if (snapshot != null) {
+	    System.out.println("======= Debug ======");
+	    System.out.println(snapshot);
+	    System.out.println("====================");
+	    return;
+	}
 	System.out.println("======= Debug ======");
 	System.out.println("Arm One Current height:" + this.armOneCurrentHeight);
 	System.out.println("Arm Two Current width:" + this.armTwoCurrentWidth);
 	System.out.println("Arm Three Current Depth:" + this.armThreeCurrentDepth);
 	System.out.println("-----");
-	System.out.println("Source Blocks size:" + source.getBlocks().size());
+	System.out.println("Source Blocks size:" + source.getBlockCount());
 	System.out.println("Source Blocks height:" + source.getHeight());
 	System.out.println("-----");
-	System.out.println("Temporary Blocks size:" + temp.getBlocks().size());
-	System.out.println("Temporary Blocks height:" + temp.getHeight());
+	System.out.println("Temporary Blocks size:" + temporary.getBlockCount());
+	System.out.println("Temporary Blocks height:" + temporary.getHeight());
 	System.out.println("-----");
-	System.out.println("Target Blocks size:" + target.getBlocks().size());
+	System.out.println("Target Blocks size:" + target.getBlockCount());
 	System.out.println("Target Blocks height:" + target.getHeight());
 	System.out.println("====================");
     }
@@ -127,7 +395,7 @@ public class RobotControl {
 	changeArmThreeDepth(stepsToMoveArmThree);
 	
 	// pick the block from the current column 
-	r.pick();
+	program.add(Primitive.PICK, 1);
 	
 	// reset arm 3 depth to it's default depth of 0
 	changeArmThreeDepth(0);
@@ -164,9 +432,10 @@ public class RobotControl {
 
 	/*
 	 * lower robot determine if robot should lower arm 1 or arm 3 this will
-	 * reduce the number of unnecessary steps
+	 * reduce the number of unnecessary steps (arm 2 must still pass every
+	 * obstacle up to the end column)
 	 */
-	boolean lowerArmOne = (armOneCurrentHeight - stepsToMoveArmThree) <= armPass(Column.getColumnByType(ColumnType.target), toColumn)
+	boolean lowerArmOne = (armOneCurrentHeight - stepsToMoveArmThree) <= armPass(toColumn, toColumn)
 		? false : true;
 	if (lowerArmOne) {
 	    // lower arm 1
@@ -177,7 +446,7 @@ public class RobotControl {
 	}
 
 	// drop block at the current column
-	r.drop();
+	program.add(Primitive.DROP, 1);
 
 	// reset arm 3 depth to it's default depth of 0
 	changeArmThreeDepth(0);
@@ -196,20 +465,13 @@ public class RobotControl {
 	}
 	// move the arm up to reach the new given height
 	else if (newHeight > armOneCurrentHeight) {
-	    for (int x = this.armOneCurrentHeight; x < newHeight; x++) {
-		r.up();
-		// avoid hitting the column
-		this.armOneCurrentHeight = x + ARM_TWO_HEIGHT;
-	    }
+	    program.add(Primitive.UP, newHeight - this.armOneCurrentHeight);
 	}
 	// move the arm down to reach the new given height
 	else if (newHeight < armOneCurrentHeight) {
-	    for (int x = this.armOneCurrentHeight; x > newHeight; x--) {
-		r.down();
-		// avoid hitting arm 2
-		this.armOneCurrentHeight = x - ARM_TWO_HEIGHT;
-	    }
+	    program.add(Primitive.DOWN, this.armOneCurrentHeight - newHeight);
 	}
+	this.armOneCurrentHeight = newHeight;
     }
 
     /**
@@ -227,20 +489,13 @@ public class RobotControl {
 	}
 	// move the arm forward to reach the new given width
 	else if (newWidth > armTwoCurrentWidth) {
-	    for (int oldArmTwoWidth = this.armTwoCurrentWidth; oldArmTwoWidth < newWidth; oldArmTwoWidth++) {
-		r.extend();
-		// to reach above the column
-		this.armTwoCurrentWidth = oldArmTwoWidth + ARM_ONE_WIDTH;
-	    }
+	    program.add(Primitive.EXTEND, (newWidth - this.armTwoCurrentWidth));
 	}
 	// move the arm backward to reach the new given width
 	else if (newWidth < armTwoCurrentWidth) {
-	    for (int x = this.armTwoCurrentWidth; x > newWidth; x--) {
-		r.contract();
-		// to reach above the column
-		this.armTwoCurrentWidth = x - ARM_ONE_WIDTH;
-	    }
+	    program.add(Primitive.CONTRACT, (this.armTwoCurrentWidth - newWidth));
 	}
+	this.armTwoCurrentWidth = newWidth;
     }
 
     /**
@@ -258,21 +513,13 @@ public class RobotControl {
 	}
 	// move the arm down to reach the new given depth
 	else if (newDepth > armThreeCurrentDepth) {
-	    for (int x = this.armThreeCurrentDepth; x < newDepth; x++) {
-		r.lower();
-		// avoid hitting the column
-		this.armThreeCurrentDepth = x + ARM_TWO_HEIGHT;
-	    }
+	    program.add(Primitive.LOWER, newDepth - this.armThreeCurrentDepth);
 	}
 	// move the arm up to reach the new given depth
 	else if (newDepth < armThreeCurrentDepth) {
-	    for (int x = this.armThreeCurrentDepth; x > newDepth; x--) {
-		r.raise();
-
-		// avoid hitting arm 2
-		this.armThreeCurrentDepth = x - ARM_TWO_HEIGHT;
-	    }
+	    program.add(Primitive.RAISE, this.armThreeCurrentDepth - newDepth);
 	}
+	this.armThreeCurrentDepth = newDepth;
     }
 
     /**
@@ -281,12 +528,7 @@ public class RobotControl {
      * @return highest bar height
      */
     private int getHighestBar() {
-	int highestValue = 0;
-	for (int x = 0; x < barHeights.length; x++) {
-	    if (barHeights[x] > highestValue)
-		highestValue = barHeights[x];
-	}
-	return highestValue;
+	return track.getHighestBar();
     }
 
     /**
@@ -314,18 +556,15 @@ public class RobotControl {
 	 * Always consider the smallest column index as the starting point to
 	 * handle block movement in both direction (forward and backward)
 	 */
-	int fromColumnIndex = Math.min(fromColumn.getType().getValue(), toColumn.getType().getValue());
+	int fromColumnIndex = Math.min(fromColumn.getPosition(), toColumn.getPosition());
 
 	// fathers column will be reached
-	int toColumnIndex = Math.max(fromColumn.getType().getValue(), toColumn.getType().getValue());
-
-	for (Column column : Column.getColumns()) {
-	    boolean sameColumn = column.getType().getValue() == fromColumn.getType().getValue();
-	    boolean inRange = column.getType().getValue() >= fromColumnIndex
-		    && column.getType().getValue() <= toColumnIndex;
-	    if (!sameColumn && inRange)
-		maxColumnHeightFound = Math.max(maxColumnHeightFound, column.getHeight());
-	}
+	int toColumnIndex = Math.max(fromColumn.getPosition(), toColumn.getPosition());
+
+	// highest obstacle in range on both sides of the starting column
+	int startingColumnIndex = fromColumn.getPosition();
+	maxColumnHeightFound = Math.max(track.maxObstacle(fromColumnIndex, startingColumnIndex - 1),
+		track.maxObstacle(startingColumnIndex + 1, toColumnIndex));
 	maxColumnHeightFound = Math.max(maxColumnHeightFound, getHighestBar());
 	return blockHeight + maxColumnHeightFound;
     }
@@ -352,13 +591,10 @@ public class RobotControl {
 	int maxColumnHeightFound = 0;
 	
 	// Determine the farthest column index for the given columns
-	int maxColumnIndex = Math.max(fromColumn.getType().getValue(), toColumn.getType().getValue());
+	int maxColumnIndex = Math.max(fromColumn.getPosition(), toColumn.getPosition());
 	
 	// Start searching between column 1 and the farthest column the arm will reach
-	for (Column column : Column.getColumns()) {
-	    if (column.getType().getValue() <= maxColumnIndex)
-		maxColumnHeightFound = Math.max(maxColumnHeightFound, column.getHeight());
-	}
+	maxColumnHeightFound = track.maxObstacle(1, maxColumnIndex);
 	// compare with bars height
 	maxColumnHeightFound = Math.max(maxColumnHeightFound, getHighestBar());
 	return maxColumnHeightFound;
@@ -398,7 +634,9 @@ public class RobotControl {
      * 4- Change arm 1 height making sure the block and arm will pass without collision<br>
      * 5- Contract the arm to the end column<br>
      * 6- Drop the block<br>
-
+     * 
+     * <p>The arm movements are first compiled into a {@link MotionProgram},
+     * optimized, and then sent to the robot in one go.</p>
      * 
      * <p>This is used in all parts (A,B,C,D and E) to move a block between columns</p>
      * @param fromColumn
@@ -407,6 +645,44 @@ public class RobotControl {
      *            the column which the block will be dropped in
      */
     private void moveBlock(Column fromColumn, Column toColumn) {
+	if (deferring) {
+	    lookahead.add(fromColumn.getPosition(), toColumn.getPosition(), fromColumn.getTopBlockHeight());
+	    toColumn.addBlock(fromColumn.removeBlock());
+	    if (lookahead.isFull())
+		sendQueuedMove();
+	    return;
+	}
+	long planningStart = metrics != null ? System.nanoTime() : 0;
+	moveStartArmOne = armOneCurrentHeight;
+	moveStartArmTwo = armTwoCurrentWidth;
+	moveStartArmThree = armThreeCurrentDepth;
+	TrajectoryCache.Key key = null;
+	if (trajectoryCache != null) {
+	    key = trajectoryKey(fromColumn, toColumn);
+	    TrajectoryCache.Trajectory trajectory = trajectoryCache.get(key);
+	    if (trajectory != null) {
+		toColumn.addBlock(fromColumn.removeBlock());
+		program.addAll(trajectory.getProgram());
+		armOneCurrentHeight = trajectory.getArmOneHeight();
+		armTwoCurrentWidth = trajectory.getArmTwoWidth();
+		armThreeCurrentDepth = trajectory.getArmThreeDepth();
+		sendProgram(planningStart, fromColumn, toColumn);
+		return;
+	    }
+	}
+	if (clearancePlanner != null) {
+	    armOneCurrentHeight = clearancePlanner.compile(program, track, fromColumn.getPosition(),
+		    toColumn.getPosition(), armOneCurrentHeight, armTwoCurrentWidth, armThreeCurrentDepth);
+	    armTwoCurrentWidth = toColumn.getPosition();
+	    armThreeCurrentDepth = 0;
+	    toColumn.addBlock(fromColumn.removeBlock());
+	    program.optimize();
+	    if (key != null)
+		trajectoryCache.put(key, program, armOneCurrentHeight, armTwoCurrentWidth, armThreeCurrentDepth);
+	    sendProgram(planningStart, fromColumn, toColumn);
+	    return;
+	}
+	program.setPhase(MovePhase.RAISE);
 	/*
 	 * In some cases, the starting and ending columns falls behind the column
 	 * in which the previous block was dropped in.
@@ -414,44 +690,125 @@ public class RobotControl {
 	 * arm 2 width should be changed before changing arm 1 height to avoid possible
 	 * collision
 	 */
-	if (Math.max(fromColumn.getType().getValue(), toColumn.getType().getValue()) < this.armTwoCurrentWidth) {
-	    changeArmTwoWidth(fromColumn.getType().getValue());
+	if (Math.max(fromColumn.getPosition(), toColumn.getPosition()) < this.armTwoCurrentWidth) {
+	    changeArmTwoWidth(fromColumn.getPosition());
 	}
 	
 	// go up making sure the arm pass
 	changeArmOneHeight(armPass(fromColumn, toColumn)+1);
 	
 	// extend to reach the column
-	changeArmTwoWidth(fromColumn.getType().getValue());
+	program.setPhase(MovePhase.EXTEND);
+	changeArmTwoWidth(fromColumn.getPosition());
 	
 	// pick block from the given column
+	program.setPhase(MovePhase.PICK);
 	pickBlock(fromColumn);
 	
 	// Change arm 1 height making sure the block and arm will pass obstacles
+	program.setPhase(MovePhase.REHEIGHT);
 	changeArmOneHeight(calculateHeight(fromColumn, toColumn));
 	
 	// contract arm 2 making sure the block will pass any obstacles
-	changeArmTwoWidth(toColumn.getType().getValue());
+	program.setPhase(MovePhase.CONTRACT);
+	changeArmTwoWidth(toColumn.getPosition());
 	
 	// drop the current block at the given column
+	program.setPhase(MovePhase.DROP);
 	dropBlock(fromColumn, toColumn);
+	
+	// send the compiled primitive commands to the robot
+	program.optimize();
+	if (key != null)
+	    trajectoryCache.put(key, program, armOneCurrentHeight, armTwoCurrentWidth, armThreeCurrentDepth);
+	sendProgram(planningStart, fromColumn, toColumn);
+    }
+
+    /**
+     * Compile the oldest move queued in the lookahead planner and send it
+     * to the robot.
+     */
+    private void sendQueuedMove() {
+	long planningStart = metrics != null ? System.nanoTime() : 0;
+	moveStartArmOne = armOneCurrentHeight;
+	moveStartArmTwo = armTwoCurrentWidth;
+	moveStartArmThree = armThreeCurrentDepth;
+	lookahead.compile(program, track, armOneCurrentHeight, armTwoCurrentWidth, armThreeCurrentDepth);
+	armOneCurrentHeight = lookahead.getArmOneHeight();
+	armTwoCurrentWidth = lookahead.getToPosition();
+	armThreeCurrentDepth = lookahead.getArmThreeDepth();
+	program.optimize();
+	sendProgram(planningStart, track.getColumn(lookahead.getFromPosition()),
+		track.getColumn(lookahead.getToPosition()));
+    }
+
+    /**
+     * Send every move queued in the lookahead planner, so the robot catches
+     * up with the columns.
+     */
+    private void flushMoves() {
+	while (deferring && lookahead.size() > 0) {
+	    sendQueuedMove();
+	}
+    }
+
+    /**
+     * Build the trajectory cache key of a move from the current arm
+     * positions and column heights.
+     *
+     * @param fromColumn
+     *            the column which the block will be picked from
+     * @param toColumn
+     *            the column which the block will be dropped in
+     * @return the cache key
+     */
+    private TrajectoryCache.Key trajectoryKey(Column fromColumn, Column toColumn) {
+	// columns beyond the farthest reached column do not change the move
+	int farthest = Math.max(fromColumn.getPosition(), toColumn.getPosition());
+	List<Column> columns = track.getColumns();
+	for (int x = 0; x < columnHeights.length; x++) {
+	    Column column = columns.get(x);
+	    columnHeights[x] = column.getPosition() <= farthest ? column.getHeight() : -1;
+	}
+	return TrajectoryCache.key(armOneCurrentHeight, armTwoCurrentWidth, armThreeCurrentDepth,
+		fromColumn.getPosition(), toColumn.getPosition(), fromColumn.getTopBlockHeight(),
+		columnHeights);
     }
 
     /**
-     * Checks if the given block height exists in the given Column.
+     * Send the compiled move to the robot and clear it.
      *
-     * @param value
-     *            the value to check if it exists or not
-     * @param inColumn
-     *            the Column Stack to check the value in it
-     * @return true, if the value exist in the given column
+     * @param planningStart
+     *            time the move started being compiled, for the metrics
+     * @param fromColumn
+     *            the column which the block was picked from
+     * @param toColumn
+     *            the column which the block was dropped in
      */
-    private boolean isBlockExist(int value, Column inColumn) {
-	for (int currentValue : inColumn.getBlocks()) {
-	    if (value == currentValue)
-		return true;
+    private void sendProgram(long planningStart, Column fromColumn, Column toColumn) {
+	if (scheduler != null) {
+	    // the columns of queued moves are ahead of the robot
+	    if (deferring)
+		scheduler.schedule(program, lookahead.getHeights(), track.getWidth(), lookahead.getBlock(),
+			moveStartArmOne, moveStartArmTwo, moveStartArmThree);
+	    else
+		scheduler.schedule(program, track, fromColumn.getPosition(), toColumn.getPosition(),
+			moveStartArmOne, moveStartArmTwo, moveStartArmThree);
+	    long actuationStart = metrics != null ? System.nanoTime() : 0;
+	    scheduler.sendTo(r);
+	    if (metrics != null && metrics.isEnabled())
+		metrics.recordMove(actuationStart - planningStart, System.nanoTime() - actuationStart);
+	} else if (metrics != null && metrics.isEnabled()) {
+	    long actuationStart = System.nanoTime();
+	    program.sendTo(r, metrics);
+	    long end = System.nanoTime();
+	    metrics.recordMove(actuationStart - planningStart, end - actuationStart);
+	} else {
+	    program.sendTo(r);
 	}
-	return false;
+	if (journal != null)
+	    journal.markMove();
+	program.clear();
     }
 
     /**
@@ -467,92 +824,62 @@ public class RobotControl {
      * the required block to the target column<br>
      * 4- Repeat until all blocks are moved to target
      *
+     * <p>Each column indexes the levels of its block heights, so finding the
+     * column holding the required block, and how many blocks are above it,
+     * takes constant expected time instead of scanning the columns.</p>
+     *
      * @param required
      *            the block heights as required to be ordered
      */
-    private void moveBlocksRequired(Column source,Column temporary,Column target,int required[]) {
-	for (int currentRequiredBlock : required) { // Step 1
-	    if (isBlockExist(currentRequiredBlock, source)) { // Step 2
-		while (source.getTopBlockHeight() != currentRequiredBlock) {
-		    moveBlock(source, temporary);
-		}
-		moveBlock(source, target);
-	    } else { // Step 3
-		while (temporary.getTopBlockHeight()!= currentRequiredBlock) {
-		    moveBlock(temporary, source);
+    private void moveBlocksRequired(Column source,Column temporary,Column target,BlockView required) {
+	// try to find a plan with less steps first
+	if (plannerBudgetMillis > 0 && requiredCursor == 0) {
+	    int[] order = new int[required.size()];
+	    for (int x = 0; x < order.length; x++) {
+		order[x] = required.get(x);
+	    }
+	    RequiredPlanner planner = new RequiredPlanner(getHighestBar(), plannerWeight, PLANNER_MAX_NODES);
+	    ColumnType[] moves = planner.plan(source, temporary, target, order, armOneCurrentHeight,
+		    armTwoCurrentWidth, plannerBudgetMillis);
+	    if (moves != null) {
+		for (int x = 0; x < moves.length; x += 2) {
+		    moveBlock(selectColumn(moves[x], source, temporary, target),
+			    selectColumn(moves[x + 1], source, temporary, target));
+		    requiredCursor = target.getBlockCount();
+		    moveDone();
 		}
-		moveBlock(temporary, target);
+		return;
 	    }
 	}
-    }
-
-    /**
-     * <p>Count the number of similar blocks in the given column</p>
-     * 
-     * <p>This will count how many similar (similar to the top block in the column)
-     * sequenced blocks exist in the given column using</p>  
-     * 
-     * @param countColumn
-     *            the column where the block exists in
-     * @return the number of similar blocks
-     */
-    private int countSimilarBlocks(Column countColumn) {
-	int counter = 0;
-	int value = 0;
-
-	// retrieve the top block from the column
-	value = countColumn.getTopBlockHeight();
 	
-	// count the block occurrence
-	for (int i = 0; i < blockHeights.length; i++) {
-	    counter = value == blockHeights[i] ? ++counter : counter;
+	while (requiredCursor < required.size()) { // Step 1
+	    int currentRequiredBlock = required.get(requiredCursor);
+	    Column from = source;
+	    Column other = temporary;
+	    int depth = source.getDepth(currentRequiredBlock); // Step 2
+	    if (depth < 0) { // Step 3
+		from = temporary;
+		other = source;
+		depth = temporary.getDepth(currentRequiredBlock);
+		if (depth < 0)
+		    throw new IllegalStateException(
+			    "Required block " + currentRequiredBlock + " is not in the Source or Temporary column");
+	    }
+	    for (; depth > 0; depth--) {
+		moveBlock(from, other);
+		moveDone();
+	    }
+	    moveBlock(from, target);
+	    requiredCursor++;
+	    moveDone();
 	}
-	return counter;
     }
 
     /**
-     * <p>Return the legal move direction between two columns for the Tower Of Hanoi</p>
-     * 
-     * <p><b>Movement Direction</b><br>
-     * The direction of block movements between columns
-     * is decided by satisfying the following rules:<br>
-     * 1- Smaller number placed above bigger numbers<br>
-     * 2- Similar numbers will use any direction<br>
-     * 3- Always move the block to the empty column<br>
-     *
-     * @param fromColumn
-     *            the starting column
-     * @param toColumn
-     *            the ending column
-     * @param fromValue
-     *            the height of top block of the starting column
-     * @param toValue
-     *            the height of top block of the ending column
-     * @return the legal moving direction between the columns
-     */
-    private Column[] hanoiLegalMoveDirection(Column fromColumn, Column toColumn) {
-	// similar block height
-	if (fromColumn.getTopBlockHeight() == toColumn.getTopBlockHeight())
-	    return new Column[] { fromColumn, toColumn };
-	
-	// starting column is empty
-	if (fromColumn.getTopBlockHeight() == 0) {
-	    return new Column[] { toColumn, fromColumn };
-	}
-	// ending column is empty
-	else if (toColumn.getTopBlockHeight() == 0) {
-	    return new Column[] { fromColumn, toColumn };
-	}
-	
-	// starting column is smaller than ending 
-	if (fromColumn.getTopBlockHeight() < toColumn.getTopBlockHeight()) {
-	    return new Column[] { fromColumn, toColumn };
-	}
-	// starting column is bigger than ending
-	else if (fromColumn.getTopBlockHeight() > toColumn.getTopBlockHeight()) {
-	    return new Column[] { toColumn, fromColumn };
-	}
-	return null;
+     * Return the column of the given type.
+     */
+    private Column selectColumn(ColumnType type, Column source, Column temporary, Column target) {
+	return type == ColumnType.source ? source : type == ColumnType.temporary ? temporary : target;
     }
 
     /**
@@ -560,17 +887,17 @@ public class RobotControl {
      * limitation that a larger block cannot be placed on top of a smaller block.</p>
      * 
      * <p>The algorithm followed is for the Tower Of Hanoi using
-     * iterative for an <b>even</b> number of discs (blocks) with supporting duplicated blocks value.</p>
+     * iterative solution with supporting duplicated blocks value.</p>
      * <p><b>Movement Steps</b><br>
      * 
-     * 1- Make a legal move between Source and Temporary<br>
-     * 2- Make a legal move between Source and Target<br>
-     * 3- Make a legal move between Temporary and Target<br>
-     * 4- Repeat until all blocks are moved to target</p>
-     * 
+     * 1- Group the consecutive similar blocks of the source column once<br>
+     * 2- Take the next legal group move from {@link HanoiMoves}<br>
+     * 3- Move every block of the group between the two columns<br>
+     * 4- Repeat until all groups are moved to target</p>
      * 
      * <p><b>Notes</b><br>
-     * 1- Each movement step is repeated if the consecutive blocks have similar value<br>
+     * 1- Each move is computed in constant time without scanning the columns
+     * or the block heights, and allocates nothing<br>
      * 2- Repeated blocks in each step will be moved together 
      * before going to the next iteration
      * 
@@ -578,69 +905,27 @@ public class RobotControl {
      * https://en.wikipedia.org/wiki/Tower_of_Hanoi#Iterative_solution</p>
      */
     private void moveBlocksOrdered(Column source,Column temporary,Column target) {
-	
-	// convert to set to remove duplicated values
-	Set<Integer> uniqueBlocks = new HashSet<Integer>(source.getBlocks());
-	
-	// determine if the number of blocks are even or odd
-	boolean isEven = uniqueBlocks.size() % 2 == 0 ? true : false;
-	
-	// will stop once all blocks are moved to the target column
-	while (true) {
-	    
-	    // legal movement direction between columns
-	    Column[] moveDirectionColumns;
-	    // number of movements for duplicated consecutive blocks
-	    int movesCounter = 0;
-	    /*
-	     *  The destination column will be determined based on the number of blocks,
-	     *  Even or odd blocks. 
-	     */
-	    Column to;
-
-	    // Even: Moving a block between Source and Temporary
-	    // Odd: Moving a block between Source and Target
-	    to = isEven ? temporary:target;
-	    moveDirectionColumns = hanoiLegalMoveDirection(source, to);
-  	    // determine the number of repeated blocks
-	    movesCounter = countSimilarBlocks(moveDirectionColumns[0]);
-	    // moving all similar blocks in this step
-	    for (int x = 0; x < movesCounter; x++) {
-		moveBlock(moveDirectionColumns[0], moveDirectionColumns[1]);
-	    }
-	    
-	    // stop if all blocks are moved to destination 
-	    if(target.getBlocks().size() == this.blockHeights.length)
-		break;
-	    
-	    // Even : Moving a block between Source and Target
-	    // Odd: Moving a block between Source and Temporary
-	    to = isEven ? target:temporary;
-	    moveDirectionColumns = hanoiLegalMoveDirection(source, to);
-	    // determine the number of repeated blocks
-	    movesCounter = countSimilarBlocks(moveDirectionColumns[0]);
-  	    // moving all similar blocks in this step
-	    for (int x = 0; x < movesCounter; x++) {
-		moveBlock(moveDirectionColumns[0], moveDirectionColumns[1]);
-	    }
+	// columns indexed by their type ordinal, as used by the moves
+	Column[] columns = new Column[3];
+	columns[ColumnType.source.ordinal()] = source;
+	columns[ColumnType.temporary.ordinal()] = temporary;
+	columns[ColumnType.target.ordinal()] = target;
 
-	    // stop if all blocks are moved to destination
-	    if(target.getBlocks().size() == this.blockHeights.length)
-		break;
-	    
-	    
-	    // Even and Odd: Moving a block between Temporary and target
-	    moveDirectionColumns = hanoiLegalMoveDirection(temporary, target);
-	    // determine the number of repeated blocks
-	    movesCounter = countSimilarBlocks(moveDirectionColumns[0]);
-	    // moving all similar blocks in this step
-	    for (int x = 0; x < movesCounter; x++) {
-		moveBlock(moveDirectionColumns[0], moveDirectionColumns[1]);
+	if (hanoiMoves == null)
+	    hanoiMoves = new HanoiMoves(source.getBlocks());
+	while (hanoiMoves.hasNext()) {
+	    long move = hanoiMoves.nextLong();
+	    Column from = columns[HanoiMoves.from(move)];
+	    Column to = columns[HanoiMoves.to(move)];
+	    // moving all similar blocks in this step, less those moved before resuming
+	    for (int x = HanoiMoves.count(move) - groupProgress; x > 0; x--) {
+		moveBlock(from, to);
+		groupProgress++;
+		moveDone();
 	    }
-	    
-	    // stop if all blocks are moved to destination
-	    if(target.getBlocks().size() == this.blockHeights.length)
-		break;
+	    // the last group stays complete, so resuming a finished run moves nothing
+	    if (hanoiMoves.hasNext())
+		groupProgress = 0;
 	}
     }
 
@@ -656,18 +941,183 @@ public class RobotControl {
      * @param ordered
      *            the ordered argument passed in the program arguments
      */
-    private void init(int barHeights[], int blockHeights[], int required[], boolean ordered) {
+    void init(int barHeights[], int blockHeights[], int required[], boolean ordered) {
+	// the arrays are only read, so they are used in place
+	init(barHeights, BlockViews.of(blockHeights), BlockViews.of(required), ordered);
+    }
+
+    /**
+     * Initialize class variables from block views read in place, such as
+     * those of a {@link ScenarioFile}.
+     *
+     * @param barHeights
+     *            the bar heights
+     * @param blockHeights
+     *            the block heights placed in the source column
+     * @param required
+     *            the required ordering, empty or { 0 } if none
+     * @param ordered
+     *            the ordered argument
+     */
+    void init(int barHeights[], BlockView blockHeights, BlockView required, boolean ordered) {
 //	this.targetBlocks = new Stack<>();
 //	this.sourceBlocks = new Stack<>();
 //	this.temporaryBlocks = new Stack<>();
 	this.barHeights = barHeights;
-	this.blockHeights = new int[blockHeights.length];
-	// void copying array be reference (used to avoid possible referencing problems in
-	// part E)
-	System.arraycopy(blockHeights, 0, this.blockHeights, 0, blockHeights.length);
+	this.blockHeights = blockHeights;
+	this.required = required;
+	this.ordered = ordered;
+	this.movesDone = 0;
+	this.movesSinceCheckpoint = 0;
+	this.requiredCursor = 0;
+	this.hanoiMoves = null;
+	this.groupProgress = 0;
 //	for (int x = 0; x < blockHeights.length; x++) {
 //	    sourceBlocks.push(blockHeights[x]);
 //	}
+	
+	
+	init(Track.threeColumns(barHeights, blockHeights));
+    }
+
+    /**
+     * <p>Use the given track. Source, temporary and target are the columns
+     * at the positions of their {@link ColumnType}, if any, so Parts A to E
+     * need the three column layout while {@link #moveBlock(int, int)} works
+     * on any track.</p>
+     *
+     * @param track
+     *            the bars and columns
+     */
+    void init(Track track) {
+	this.track = track;
+	this.source = track.getColumn(ColumnType.source);
+	this.temporary = track.getColumn(ColumnType.temporary);
+	this.target = track.getColumn(ColumnType.target);
+	this.columnHeights = new int[track.getColumns().size()];
+	// moves on a shared track depend on columns other robots change
+	if (track.getZoneLocks() != null)
+	    this.trajectoryCache = null;
+	if (snapshots != null)
+	    snapshots.reset(track, armOneCurrentHeight, armTwoCurrentWidth, armThreeCurrentDepth);
+	if (lookahead != null)
+	    lookahead.clear();
+
+	// forget the compiled moves of a previous run if the layout changed
+	int[] previousLayout = this.trackLayout;
+	this.trackLayout = new int[track.getWidth() + 1];
+	for (int x = 1; x <= track.getWidth(); x++) {
+	    trackLayout[x] = track.hasColumn(x) ? -1 : track.getBarHeight(x);
+	}
+	if (trajectoryCache != null && !Arrays.equals(trackLayout, previousLayout))
+	    trajectoryCache.clear();
+    }
+
+    /**
+     * Moves the top block between the columns of the given types.
+     *
+     * @param from
+     *            the column type which the block will be picked from
+     * @param to
+     *            the column type which the block will be dropped in
+     */
+    void moveBlock(ColumnType from, ColumnType to) {
+	moveBlock(selectColumn(from, source, temporary, target), selectColumn(to, source, temporary, target));
+    }
+
+    /**
+     * <p>Moves the top block between the columns at the given track
+     * positions.</p>
+     *
+     * <p>On a shared track every zone from position 1 to the farthest of
+     * both columns and arm 2 is locked for the whole move: arm 2 passes over
+     * all these positions, so no other robot may change any of them until
+     * the block is dropped. Only the zones of the two columns are locked
+     * exclusively; the others are shared with robots which also just pass
+     * over them. Other robots may have raised the columns under arm 2 since
+     * its last move, so arm 1 first goes up above them.</p>
+     *
+     * @param fromPosition
+     *            the position of the column which the block will be picked
+     *            from
+     * @param toPosition
+     *            the position of the column which the block will be dropped
+     *            in
+     * @return true, if a block was moved, false if the starting column is
+     *         empty
+     */
+    boolean moveBlock(int fromPosition, int toPosition) {
+	Column fromColumn = track.getColumn(fromPosition);
+	Column toColumn = track.getColumn(toPosition);
+	if (fromColumn == null || toColumn == null || fromColumn == toColumn)
+	    throw new IllegalArgumentException("No move from " + fromPosition + " to " + toPosition);
+	ZoneLocks zoneLocks = track.getZoneLocks();
+	if (zoneLocks == null) {
+	    if (fromColumn.getBlockCount() == 0)
+		return false;
+	    moveBlock(fromColumn, toColumn);
+	    return true;
+	}
+	int farthest = Math.max(Math.max(fromPosition, toPosition), armTwoCurrentWidth);
+	zoneLocks.lock(1, farthest, fromPosition, toPosition);
+	try {
+	    if (fromColumn.getBlockCount() == 0)
+		return false;
+	    // other robots may have raised the columns under the parked arm
+	    program.setPhase(MovePhase.RAISE);
+	    changeArmOneHeight(Math.max(armOneCurrentHeight, track.maxObstacle(1, armTwoCurrentWidth) + 1));
+	    moveBlock(fromColumn, toColumn);
+	    return true;
+	} finally {
+	    zoneLocks.unlock(1, farthest, fromPosition, toPosition);
+	}
+    }
+
+    /**
+     * Return the column of the given type.
+     *
+     * @param type
+     *            the column type
+     * @return the column
+     */
+    Column getColumn(ColumnType type) {
+	return track.getColumn(type);
+    }
+
+    /**
+     * Return the track.
+     *
+     * @return the bars and columns
+     */
+    Track getTrack() {
+	return track;
+    }
+
+    /**
+     * Get the current arm 1 height.
+     *
+     * @return the arm 1 height
+     */
+    int getArmOneHeight() {
+	return armOneCurrentHeight;
+    }
+
+    /**
+     * Get the current arm 2 width.
+     *
+     * @return the arm 2 width
+     */
+    int getArmTwoWidth() {
+	return armTwoCurrentWidth;
+    }
+
+    /**
+     * Get the current arm 3 depth.
+     *
+     * @return the arm 3 depth
+     */
+    int getArmThreeDepth() {
+	return armThreeCurrentDepth;
     }
     
 
@@ -690,29 +1140,154 @@ public class RobotControl {
 	 */
 	init(barHeights, blockHeights, required, ordered);
 	/*
-	 * Uncomment the following method call to perform stress test
-	 * 
-	 * Important:
-	 * required and ordered parameters should not be passed in the program arguments
-	 * 
-	 * stressTest(true);
+	 * Randomized stress testing is done by StressHarness
 	 */
 	
-	
-	Column source = new Column(ColumnType.source, blockHeights);
-	Column temp = new Column(ColumnType.temporary, null);
-	Column target = new Column(ColumnType.target, null);
-	
-	stressTest(source,temp,target,false);
-	
-	if (ordered) { // Part E
-	    moveBlocksOrdered(source,temp,target);
-	} else if (required[0] == 0) { // Part A,B and C
-	    for (int x = 0; x < blockHeights.length; x++) {
-		moveBlock(source, target);
+	solve();
+    }
+
+    /**
+     * <p>Control a scenario read from a file.</p>
+     *
+     * <p>The blocks and the required ordering are read in place from the
+     * mapped file: the source column reads its blocks until they are
+     * moved, and Part D reads the required blocks as it places them, so a
+     * run starts after a single pass over the blocks whatever their
+     * number.</p>
+     *
+     * @param scenario
+     *            the scenario file
+     */
+    public void control(ScenarioFile scenario) {
+	init(scenario.getBarHeights(), scenario.getBlocks(), scenario.getRequired(), scenario.isOrdered());
+	solve();
+    }
+
+    /**
+     * <p>Control, writing a checkpoint every few moves and resuming from the
+     * checkpoint file if it exists.</p>
+     *
+     * <p>The robot given to the constructor must be in the state of the
+     * checkpoint, such as a {@link SimulatedRobot} created over
+     * {@link Checkpoint#toTrack(int[])}. Checkpoints are written on a
+     * background thread; a final checkpoint is written once all blocks are
+     * moved, so resuming a finished run does nothing. A Part D run resumed
+     * after planning continues with the greedy rule.</p>
+     *
+     * @param barHeights
+     *            the bar heights
+     * @param blockHeights
+     *            the block heights
+     * @param required
+     *            the required
+     * @param ordered
+     *            the ordered
+     * @param checkpointFile
+     *            the checkpoint file
+     * @throws IOException
+     *             if the checkpoint cannot be read, belongs to another
+     *             scenario, or a checkpoint could not be written
+     */
+    public void control(int barHeights[], int blockHeights[], int required[], boolean ordered, Path checkpointFile)
+	    throws IOException {
+	long fingerprint = Checkpoint.fingerprint(barHeights, blockHeights, required, ordered);
+	init(barHeights, blockHeights, required, ordered);
+	if (Files.exists(checkpointFile)) {
+	    Checkpoint checkpoint = Checkpoint.read(checkpointFile);
+	    if (checkpoint.getFingerprint() != fingerprint)
+		throw new IOException("Checkpoint of another scenario: " + checkpointFile);
+	    resume(checkpoint, barHeights);
+	}
+
+	checkpointFingerprint = fingerprint;
+	checkpoints = new CheckpointWriter(checkpointFile);
+	try {
+	    solve();
+	    checkpoint();
+	} finally {
+	    CheckpointWriter writer = checkpoints;
+	    checkpoints = null;
+	    writer.close();
+	}
+    }
+
+    /**
+     * Restore the columns, arms and progress of a checkpoint.
+     *
+     * @param checkpoint
+     *            the checkpoint
+     * @param barHeights
+     *            the bar heights
+     */
+    private void resume(Checkpoint checkpoint, int barHeights[]) {
+	armOneCurrentHeight = checkpoint.getArmOneHeight();
+	armTwoCurrentWidth = checkpoint.getArmTwoWidth();
+	armThreeCurrentDepth = checkpoint.getArmThreeDepth();
+	init(checkpoint.toTrack(barHeights));
+	movesDone = checkpoint.getMoves();
+	requiredCursor = checkpoint.getRequiredCursor();
+	if (checkpoint.getMode() == Checkpoint.ORDERED) {
+	    // the groups are those of the blocks before the first move
+	    hanoiMoves = new HanoiMoves(blockHeights);
+	    // the last started group is taken again, less its moved blocks
+	    if (checkpoint.getHanoiPosition() > 0) {
+		hanoiMoves.seek(checkpoint.getHanoiPosition() - 1);
+		groupProgress = checkpoint.getGroupProgress();
+	    }
+	}
+    }
+
+    /**
+     * Run the part matching the arguments from the current progress.
+     */
+    private void solve() {
+	deferring = lookahead != null;
+	try {
+	    if (ordered) { // Part E
+		moveBlocksOrdered(source,temporary,target);
+	    } else if (!hasRequiredOrder()) { // Part A,B and C
+		while (requiredCursor < blockHeights.size()) {
+		    moveBlock(source, target);
+		    requiredCursor++;
+		    moveDone();
+		}
+	    } else { // Part D
+		moveBlocksRequired(source,temporary,target,required);
 	    }
-	} else if (required[0] != 0) { // Part D
-	    moveBlocksRequired(source,temp,target,required);
+	    flushMoves();
+	} finally {
+	    deferring = false;
+	}
+    }
+
+    /**
+     * Check the target column has a required ordering (Part D).
+     */
+    private boolean hasRequiredOrder() {
+	return required.size() > 0 && required.get(0) != 0;
+    }
+
+    /**
+     * Count a completed move, and hand over a checkpoint every
+     * checkpoint interval moves.
+     */
+    private void moveDone() {
+	movesDone++;
+	if (checkpoints != null && ++movesSinceCheckpoint >= checkpointInterval) {
+	    movesSinceCheckpoint = 0;
+	    checkpoint();
 	}
     }
-}
\ No newline at end of file
+
+    /**
+     * Hand over a checkpoint of the current state to the checkpoint writer.
+     */
+    private void checkpoint() {
+	// the checkpoint holds the robot state, so queued moves are sent first
+	flushMoves();
+	byte mode = ordered ? Checkpoint.ORDERED : hasRequiredOrder() ? Checkpoint.REQUIRED : Checkpoint.BULK;
+	checkpoints.submit(Checkpoint.encode(checkpointFingerprint, movesDone, mode, armOneCurrentHeight,
+		armTwoCurrentWidth, armThreeCurrentDepth, requiredCursor,
+		hanoiMoves != null ? hanoiMoves.getPosition() : 0, groupProgress, track));
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * The primitive operations of the robot arm used by {@link RobotControl}.
+ *
+ * <p>Every call moves a single arm by one unit or picks/drops a block. The
+ * Swing {@link Robot} is available through {@link SwingRobotDriver}, while
+ * {@link SimulatedRobot} runs the same checks headless and without delays.</p>
+ */
+public interface RobotDriver {
+
+    /** Move arm 1 one unit up. */
+    void up();
+
+    /** Move arm 1 one unit down. */
+    void down();
+
+    /** Extend arm 2 by one unit. */
+    void extend();
+
+    /** Contract arm 2 by one unit. */
+    void contract();
+
+    /** Lower arm 3 by one unit. */
+    void lower();
+
+    /** Raise arm 3 by one unit. */
+    void raise();
+
+    /** Pick the top block below arm 3. */
+    void pick();
+
+    /** Drop the held block on top of the column below arm 3. */
+    void drop();
+}
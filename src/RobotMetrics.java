@@ -0,0 +1,208 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * <p>Lock-free counters and latency histograms for the robot primitives and
+ * the phases of every block move.</p>
+ *
+ * <p>Primitive calls are recorded by {@link InstrumentedDriver}, move phases
+ * and the planning versus actuation split by {@link RobotControl} once
+ * {@link RobotControl#setMetrics(RobotMetrics)} is called. The metrics can be
+ * published as an MXBean with {@link #register(String)}. When disabled,
+ * recording costs a single volatile read.</p>
+ */
+public class RobotMetrics implements RobotMetricsMXBean {
+
+    /** JMX domain of the published metrics. */
+    private static final String JMX_DOMAIN = "RobotSimulation";
+
+    /** Metrics are recorded. */
+    private volatile boolean enabled = true;
+
+    /** Number of driver calls, indexed by primitive ordinal. */
+    private final AtomicLongArray calls = new AtomicLongArray(Primitive.values().length);
+
+    /** Number of unit steps, indexed by primitive ordinal. */
+    private final AtomicLongArray steps = new AtomicLongArray(Primitive.values().length);
+
+    /** Driver call latencies, indexed by primitive ordinal. */
+    private final LatencyHistogram[] primitiveLatencies = new LatencyHistogram[Primitive.values().length];
+
+    /** Actuation latencies, indexed by move phase ordinal. */
+    private final LatencyHistogram[] phaseLatencies = new LatencyHistogram[MovePhase.values().length];
+
+    /** Number of moved blocks. */
+    private final AtomicLong moves = new AtomicLong();
+
+    /** Time spent planning moves. */
+    private final AtomicLong planningNanos = new AtomicLong();
+
+    /** Time spent actuating moves. */
+    private final AtomicLong actuationNanos = new AtomicLong();
+
+    /** Name the metrics are registered under, null if not registered. */
+    private ObjectName objectName;
+
+    /**
+     * Instantiates new metrics.
+     */
+    public RobotMetrics() {
+	for (int x = 0; x < primitiveLatencies.length; x++) {
+	    primitiveLatencies[x] = new LatencyHistogram();
+	}
+	for (int x = 0; x < phaseLatencies.length; x++) {
+	    phaseLatencies[x] = new LatencyHistogram();
+	}
+    }
+
+    /**
+     * Publish the metrics on the platform MBean server.
+     *
+     * @param name
+     *            the name of the controller
+     * @throws JMException
+     *             if the metrics cannot be registered
+     */
+    public synchronized void register(String name) throws JMException {
+	ObjectName newName = new ObjectName(JMX_DOMAIN + ":type=RobotMetrics,name=" + ObjectName.quote(name));
+	ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+	objectName = newName;
+    }
+
+    /**
+     * Remove the metrics from the platform MBean server.
+     *
+     * @throws JMException
+     *             if the metrics cannot be unregistered
+     */
+    public synchronized void unregister() throws JMException {
+	if (objectName != null) {
+	    ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+	    objectName = null;
+	}
+    }
+
+    /**
+     * Record a driver call.
+     *
+     * @param primitive
+     *            the primitive
+     * @param count
+     *            the number of unit steps
+     * @param nanos
+     *            the call latency
+     */
+    public void recordPrimitive(Primitive primitive, int count, long nanos) {
+	calls.incrementAndGet(primitive.ordinal());
+	steps.addAndGet(primitive.ordinal(), count);
+	primitiveLatencies[primitive.ordinal()].record(nanos);
+    }
+
+    /**
+     * Record the actuation time of a move phase.
+     *
+     * @param phase
+     *            the move phase
+     * @param nanos
+     *            the phase latency
+     */
+    public void recordPhase(MovePhase phase, long nanos) {
+	phaseLatencies[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Record a block move.
+     *
+     * @param planning
+     *            time spent computing clearances and compiling the move
+     * @param actuation
+     *            time spent waiting for the robot
+     */
+    public void recordMove(long planning, long actuation) {
+	moves.incrementAndGet();
+	planningNanos.addAndGet(planning);
+	actuationNanos.addAndGet(actuation);
+    }
+
+    @Override
+    public boolean isEnabled() {
+	return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+	this.enabled = enabled;
+    }
+
+    @Override
+    public Map<String, Long> getPrimitiveCalls() {
+	Map<String, Long> values = new LinkedHashMap<>();
+	for (Primitive primitive : Primitive.values()) {
+	    values.put(primitive.name(), calls.get(primitive.ordinal()));
+	}
+	return values;
+    }
+
+    @Override
+    public Map<String, Long> getPrimitiveSteps() {
+	Map<String, Long> values = new LinkedHashMap<>();
+	for (Primitive primitive : Primitive.values()) {
+	    values.put(primitive.name(), steps.get(primitive.ordinal()));
+	}
+	return values;
+    }
+
+    @Override
+    public Map<String, LatencySummary> getPrimitiveLatencies() {
+	Map<String, LatencySummary> values = new LinkedHashMap<>();
+	for (Primitive primitive : Primitive.values()) {
+	    values.put(primitive.name(), primitiveLatencies[primitive.ordinal()].toSummary());
+	}
+	return values;
+    }
+
+    @Override
+    public Map<String, LatencySummary> getPhaseLatencies() {
+	Map<String, LatencySummary> values = new LinkedHashMap<>();
+	for (MovePhase phase : MovePhase.values()) {
+	    values.put(phase.name(), phaseLatencies[phase.ordinal()].toSummary());
+	}
+	return values;
+    }
+
+    @Override
+    public long getMoves() {
+	return moves.get();
+    }
+
+    @Override
+    public long getPlanningNanos() {
+	return planningNanos.get();
+    }
+
+    @Override
+    public long getActuationNanos() {
+	return actuationNanos.get();
+    }
+
+    @Override
+    public void reset() {
+	for (int x = 0; x < calls.length(); x++) {
+	    calls.set(x, 0);
+	    steps.set(x, 0);
+	    primitiveLatencies[x].reset();
+	}
+	for (LatencyHistogram histogram : phaseLatencies) {
+	    histogram.reset();
+	}
+	moves.set(0);
+	planningNanos.set(0);
+	actuationNanos.set(0);
+    }
+}
@@ -0,0 +1,58 @@
+import java.util.Map;
+
+/**
+ * JMX view of {@link RobotMetrics}.
+ */
+public interface RobotMetricsMXBean {
+
+    /**
+     * @return true, if metrics are being recorded
+     */
+    boolean isEnabled();
+
+    /**
+     * @param enabled
+     *            start or stop recording metrics
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return number of driver calls for each primitive
+     */
+    Map<String, Long> getPrimitiveCalls();
+
+    /**
+     * @return number of unit steps for each primitive
+     */
+    Map<String, Long> getPrimitiveSteps();
+
+    /**
+     * @return latency of the driver calls for each primitive
+     */
+    Map<String, LatencySummary> getPrimitiveLatencies();
+
+    /**
+     * @return actuation latency of each move phase
+     */
+    Map<String, LatencySummary> getPhaseLatencies();
+
+    /**
+     * @return number of moved blocks
+     */
+    long getMoves();
+
+    /**
+     * @return total time spent computing clearances and compiling moves
+     */
+    long getPlanningNanos();
+
+    /**
+     * @return total time spent waiting for the robot
+     */
+    long getActuationNanos();
+
+    /**
+     * Clear all recorded metrics.
+     */
+    void reset();
+}
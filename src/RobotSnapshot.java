@@ -0,0 +1,218 @@
+import java.util.Arrays;
+
+/**
+ * <p>Immutable, versioned view of the arm positions and all column stacks.</p>
+ *
+ * <p>A new snapshot is derived from the previous one after every primitive:
+ * arm moves share the column stacks, and a pick or drop only replaces the
+ * stack of one column, sharing the blocks below with {@link BlockChain}.</p>
+ */
+public final class RobotSnapshot {
+
+    private final long version;
+    private final int armOneHeight;
+    private final int armTwoWidth;
+    private final int armThreeDepth;
+
+    /** Height of the held block, 0 if none. */
+    private final int heldBlock;
+
+    /** Track positions of the columns, never modified. */
+    private final int[] positions;
+
+    /** Bar height at each track position, 0 if none, never modified. */
+    private final int[] barHeights;
+
+    /** Stack of each column, replaced as a whole when a column changes. */
+    private final BlockChain[] stacks;
+
+    private RobotSnapshot(long version, int armOneHeight, int armTwoWidth, int armThreeDepth, int heldBlock,
+	    int[] positions, int[] barHeights, BlockChain[] stacks) {
+	this.version = version;
+	this.armOneHeight = armOneHeight;
+	this.armTwoWidth = armTwoWidth;
+	this.armThreeDepth = armThreeDepth;
+	this.heldBlock = heldBlock;
+	this.positions = positions;
+	this.barHeights = barHeights;
+	this.stacks = stacks;
+    }
+
+    /**
+     * Create the first snapshot of a track.
+     *
+     * @param track
+     *            the bars and columns
+     * @param armOneHeight
+     *            the arm 1 height
+     * @param armTwoWidth
+     *            the arm 2 width
+     * @param armThreeDepth
+     *            the arm 3 depth
+     * @return the snapshot
+     */
+    public static RobotSnapshot of(Track track, int armOneHeight, int armTwoWidth, int armThreeDepth) {
+	int count = track.getColumns().size();
+	int[] positions = new int[count];
+	BlockChain[] stacks = new BlockChain[count];
+	for (int x = 0; x < count; x++) {
+	    Column column = track.getColumns().get(x);
+	    positions[x] = column.getPosition();
+	    stacks[x] = BlockChain.of(column.getBlocks());
+	}
+	int[] barHeights = new int[track.getWidth() + 1];
+	for (int x = 1; x < barHeights.length; x++) {
+	    barHeights[x] = track.getBarHeight(x);
+	}
+	return new RobotSnapshot(0, armOneHeight, armTwoWidth, armThreeDepth, 0, positions, barHeights, stacks);
+    }
+
+    /**
+     * Derive the snapshot with the given arm positions.
+     *
+     * @return the next snapshot
+     */
+    RobotSnapshot withArms(int armOneHeight, int armTwoWidth, int armThreeDepth) {
+	return new RobotSnapshot(version + 1, armOneHeight, armTwoWidth, armThreeDepth, heldBlock, positions, barHeights,
+		stacks);
+    }
+
+    /**
+     * Derive the snapshot after picking the top block below arm 3.
+     *
+     * @return the next snapshot
+     */
+    RobotSnapshot withPick() {
+	int index = indexOf(armTwoWidth);
+	BlockChain[] newStacks = stacks.clone();
+	newStacks[index] = stacks[index].pop();
+	return new RobotSnapshot(version + 1, armOneHeight, armTwoWidth, armThreeDepth, stacks[index].peek(),
+		positions, barHeights, newStacks);
+    }
+
+    /**
+     * Derive the snapshot after dropping the held block below arm 3.
+     *
+     * @return the next snapshot
+     */
+    RobotSnapshot withDrop() {
+	int index = indexOf(armTwoWidth);
+	BlockChain[] newStacks = stacks.clone();
+	newStacks[index] = stacks[index].push(heldBlock);
+	return new RobotSnapshot(version + 1, armOneHeight, armTwoWidth, armThreeDepth, 0, positions, barHeights,
+		newStacks);
+    }
+
+    private int indexOf(int position) {
+	int index = Arrays.binarySearch(positions, position);
+	if (index < 0)
+	    throw new IllegalStateException("No column at position " + position);
+	return index;
+    }
+
+    /**
+     * Get the number of primitives applied since the first snapshot.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+	return version;
+    }
+
+    public int getArmOneHeight() {
+	return armOneHeight;
+    }
+
+    public int getArmTwoWidth() {
+	return armTwoWidth;
+    }
+
+    public int getArmThreeDepth() {
+	return armThreeDepth;
+    }
+
+    /**
+     * Get the held block.
+     *
+     * @return the held block height, 0 if none
+     */
+    public int getHeldBlock() {
+	return heldBlock;
+    }
+
+    /**
+     * Checks if this snapshot and the given one belong to the same run, the
+     * later one derived from the earlier one through arm moves, picks and
+     * drops. Snapshots of the same run share the column stacks that did not
+     * change.
+     *
+     * @param other
+     *            the other snapshot
+     * @return true, if both were derived from the same first snapshot
+     */
+    public boolean isSameRun(RobotSnapshot other) {
+	return positions == other.positions;
+    }
+
+    /**
+     * Get the farthest track position.
+     *
+     * @return the track width
+     */
+    public int getTrackWidth() {
+	return barHeights.length - 1;
+    }
+
+    /**
+     * Get the bar height at the given position.
+     *
+     * @param position
+     *            the track position
+     * @return the bar height, 0 if there is no bar
+     */
+    public int getBarHeight(int position) {
+	return barHeights[position];
+    }
+
+    /**
+     * Get the number of columns.
+     *
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+	return positions.length;
+    }
+
+    /**
+     * Get the track position of a column.
+     *
+     * @param index
+     *            the column index, in track order
+     * @return the track position
+     */
+    public int getPosition(int index) {
+	return positions[index];
+    }
+
+    /**
+     * Get the blocks of the column at a track position.
+     *
+     * @param position
+     *            the track position
+     * @return the blocks
+     */
+    public BlockChain getBlocks(int position) {
+	return stacks[indexOf(position)];
+    }
+
+    @Override
+    public String toString() {
+	StringBuilder builder = new StringBuilder();
+	builder.append("version=").append(version).append(" arms=(").append(armOneHeight).append(", ")
+		.append(armTwoWidth).append(", ").append(armThreeDepth).append(") held=").append(heldBlock);
+	for (int x = 0; x < positions.length; x++) {
+	    builder.append(" col").append(positions[x]).append('=').append(Arrays.toString(stacks[x].toArray()));
+	}
+	return builder.toString();
+    }
+}
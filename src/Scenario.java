@@ -0,0 +1,95 @@
+import java.util.Arrays;
+
+/**
+ * A scenario to solve: the same inputs as the {@link Robot} program
+ * arguments, bar heights, block heights and either the required order or
+ * "ordered".
+ */
+public class Scenario {
+
+    private final long id;
+    private final int[] barHeights;
+    private final int[] blockHeights;
+    private final int[] required;
+    private final boolean ordered;
+
+    /**
+     * Instantiates a new scenario.
+     *
+     * @param id
+     *            the scenario id, echoed in its result
+     * @param barHeights
+     *            the bar heights
+     * @param blockHeights
+     *            the block heights placed in the source column
+     * @param required
+     *            the required ordering, { 0 } if none
+     * @param ordered
+     *            the ordered argument
+     */
+    public Scenario(long id, int[] barHeights, int[] blockHeights, int[] required, boolean ordered) {
+	this.id = id;
+	this.barHeights = barHeights;
+	this.blockHeights = blockHeights;
+	this.required = required;
+	this.ordered = ordered;
+    }
+
+    /**
+     * Parse a scenario written as the program arguments, e.g.
+     * <code>734561 321 ordered</code> or <code>123456 3131 1133</code>.
+     *
+     * @param id
+     *            the scenario id
+     * @param line
+     *            the arguments separated by spaces
+     * @return the scenario
+     * @throws IllegalArgumentException
+     *             if the line is not a valid scenario
+     */
+    public static Scenario parse(long id, String line) {
+	String[] args = line.trim().split("\\s+");
+	if (args.length < 2 || args.length > 3)
+	    throw new IllegalArgumentException("Expected: bars blocks [ordered|required]");
+	boolean ordered = args.length > 2 && args[2].equalsIgnoreCase("ordered");
+	int[] required = args.length > 2 && !ordered ? parseDigits(args[2]) : new int[] { 0 };
+	return new Scenario(id, parseDigits(args[0]), parseDigits(args[1]), required, ordered);
+    }
+
+    private static int[] parseDigits(String digits) {
+	int[] values = new int[digits.length()];
+	for (int x = 0; x < values.length; x++) {
+	    char digit = digits.charAt(x);
+	    if (digit < '0' || digit > '9')
+		throw new IllegalArgumentException("Not a digit string: " + digits);
+	    values[x] = digit - '0';
+	}
+	return values;
+    }
+
+    public long getId() {
+	return id;
+    }
+
+    public int[] getBarHeights() {
+	return barHeights;
+    }
+
+    public int[] getBlockHeights() {
+	return blockHeights;
+    }
+
+    public int[] getRequired() {
+	return required;
+    }
+
+    public boolean isOrdered() {
+	return ordered;
+    }
+
+    @Override
+    public String toString() {
+	return id + " bars=" + Arrays.toString(barHeights) + " blocks=" + Arrays.toString(blockHeights)
+		+ (ordered ? " ordered" : required[0] != 0 ? " required=" + Arrays.toString(required) : "");
+    }
+}
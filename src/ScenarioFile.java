@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * <p>Scenario stored in a compact binary file and read in place through a
+ * memory-mapped view.</p>
+ *
+ * <p>Layout, big endian:<br>
+ * int magic "RBS1", int version, byte ordered (0 or 1)<br>
+ * int bar count, int block count, int required count (0 if none)<br>
+ * one byte per bar height, then per block height from the bottom block,
+ * then per required block height</p>
+ *
+ * <p>Heights take a single byte, from 1 to 127 (bars from 0), so a file
+ * holds ten million blocks in about ten megabytes. Opening a file only maps
+ * it and checks its header: the blocks and the required ordering are
+ * {@link BlockView}s over the mapping, which
+ * {@link RobotControl#control(ScenarioFile)} reads in place instead of
+ * copying them into int arrays.</p>
+ *
+ * <p>Usage: <code>ScenarioFile write file bars blocks
+ * [ordered|required]</code> with the program arguments, <code>ScenarioFile
+ * random file blocks [bulk|required|ordered] [seed]</code>, or
+ * <code>ScenarioFile run file</code> to run it headless and print the
+ * operations.</p>
+ */
+public class ScenarioFile {
+
+    /** Scenario file magic, "RBS1". */
+    public static final int MAGIC = 0x52425331;
+
+    /** Scenario file format version. */
+    public static final int VERSION = 1;
+
+    /** Size of the header. */
+    private static final int HEADER_SIZE = 4 + 4 + 1 + 4 * 3;
+
+    /** Highest height a byte holds. */
+    private static final int MAX_HEIGHT = Byte.MAX_VALUE;
+
+    /** Size of the buffer heights are written through. */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final int[] barHeights;
+    private final BlockView blocks;
+    private final BlockView required;
+    private final boolean ordered;
+
+    private ScenarioFile(int[] barHeights, BlockView blocks, BlockView required, boolean ordered) {
+	this.barHeights = barHeights;
+	this.blocks = blocks;
+	this.required = required;
+	this.ordered = ordered;
+    }
+
+    /**
+     * Open a scenario file.
+     *
+     * @param file
+     *            the scenario file
+     * @return the scenario, reading the file in place
+     * @throws IOException
+     *             if the file cannot be read or is not a scenario file
+     */
+    public static ScenarioFile open(Path file) throws IOException {
+	MappedByteBuffer mapping;
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+	    long size = channel.size();
+	    if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+		throw new IOException("Not a scenario file: " + file);
+	    // the mapping stays valid once the channel is closed
+	    mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+	}
+	if (mapping.getInt() != MAGIC || mapping.getInt() != VERSION)
+	    throw new IOException("Not a scenario file: " + file);
+	byte ordered = mapping.get();
+	int barCount = mapping.getInt();
+	int blockCount = mapping.getInt();
+	int requiredCount = mapping.getInt();
+	if (ordered > 1 || barCount < 0 || blockCount < 0 || requiredCount < 0
+		|| (long) HEADER_SIZE + barCount + blockCount + requiredCount != mapping.capacity())
+	    throw new IOException("Corrupted scenario file: " + file);
+
+	int[] barHeights = new int[barCount];
+	for (int x = 0; x < barCount; x++) {
+	    barHeights[x] = mapping.get();
+	}
+	return new ScenarioFile(barHeights, new MappedBlocks(mapping, HEADER_SIZE + barCount, blockCount),
+		new MappedBlocks(mapping, HEADER_SIZE + barCount + blockCount, requiredCount), ordered == 1);
+    }
+
+    /**
+     * Write a scenario file.
+     *
+     * @param file
+     *            the scenario file
+     * @param barHeights
+     *            the bar heights
+     * @param blockHeights
+     *            the block heights placed in the source column
+     * @param required
+     *            the required ordering, empty or { 0 } if none
+     * @param ordered
+     *            the ordered argument
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public static void write(Path file, int[] barHeights, int[] blockHeights, int[] required, boolean ordered)
+	    throws IOException {
+	if (required.length > 0 && required[0] == 0)
+	    required = new int[0];
+	ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+	buffer.putInt(MAGIC).putInt(VERSION).put((byte) (ordered ? 1 : 0));
+	buffer.putInt(barHeights.length).putInt(blockHeights.length).putInt(required.length);
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+		StandardOpenOption.TRUNCATE_EXISTING)) {
+	    put(channel, buffer, barHeights, 0);
+	    put(channel, buffer, blockHeights, 1);
+	    put(channel, buffer, required, 1);
+	    buffer.flip();
+	    while (buffer.hasRemaining()) {
+		channel.write(buffer);
+	    }
+	}
+    }
+
+    /**
+     * Write the heights through the buffer, one byte each.
+     */
+    private static void put(FileChannel channel, ByteBuffer buffer, int[] heights, int lowest)
+	    throws IOException {
+	for (int height : heights) {
+	    if (height < lowest || height > MAX_HEIGHT)
+		throw new IllegalArgumentException("Height outside " + lowest + "-" + MAX_HEIGHT + ": " + height);
+	    if (!buffer.hasRemaining()) {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+		    channel.write(buffer);
+		}
+		buffer.clear();
+	    }
+	    buffer.put((byte) height);
+	}
+    }
+
+    public int[] getBarHeights() {
+	return barHeights;
+    }
+
+    /**
+     * Get the block heights placed in the source column.
+     *
+     * @return the blocks, bottom first, read from the file
+     */
+    public BlockView getBlocks() {
+	return blocks;
+    }
+
+    /**
+     * Get the required ordering of the target column.
+     *
+     * @return the required blocks, read from the file, empty if none
+     */
+    public BlockView getRequired() {
+	return required;
+    }
+
+    public boolean isOrdered() {
+	return ordered;
+    }
+
+    /**
+     * Block heights stored one byte each in a mapped file.
+     */
+    private static class MappedBlocks implements BlockView {
+	private final ByteBuffer mapping;
+	private final int offset;
+	private final int size;
+
+	MappedBlocks(ByteBuffer mapping, int offset, int size) {
+	    this.mapping = mapping;
+	    this.offset = offset;
+	    this.size = size;
+	}
+
+	@Override
+	public int size() {
+	    return size;
+	}
+
+	@Override
+	public int get(int index) {
+	    if (index < 0 || index >= size)
+		throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	    return mapping.get(offset + index);
+	}
+
+	@Override
+	public int peek() {
+	    return size == 0 ? 0 : mapping.get(offset + size - 1);
+	}
+
+	@Override
+	public boolean contains(int blockHeight) {
+	    for (int x = offset + size - 1; x >= offset; x--) {
+		if (mapping.get(x) == blockHeight)
+		    return true;
+	    }
+	    return false;
+	}
+    }
+
+    public static void main(String[] args) throws IOException {
+	if (args.length >= 3 && args[0].equals("write")) {
+	    StringBuilder line = new StringBuilder();
+	    for (int x = 2; x < args.length; x++) {
+		line.append(args[x]).append(' ');
+	    }
+	    Scenario scenario = Scenario.parse(0, line.toString().trim());
+	    write(Paths.get(args[1]), scenario.getBarHeights(), scenario.getBlockHeights(), scenario.getRequired(),
+		    scenario.isOrdered());
+	} else if (args.length >= 3 && args[0].equals("random")) {
+	    int blockCount = Integer.parseInt(args[2]);
+	    String part = args.length > 3 ? args[3] : "bulk";
+	    Random rand = new Random(args.length > 4 ? Long.parseLong(args[4]) : 1);
+	    int[] bars = new int[6];
+	    for (int x = 0; x < bars.length; x++) {
+		bars[x] = rand.nextInt(8) + 1;
+	    }
+	    int[] blocks = new int[blockCount];
+	    for (int x = 0; x < blocks.length; x++) {
+		blocks[x] = part.equals("ordered") ? 4 - (int) ((long) x * 4 / blockCount) : rand.nextInt(4) + 1;
+	    }
+	    int[] required = { 0 };
+	    if (part.equals("required")) {
+		required = blocks.clone();
+		for (int x = required.length - 1; x > 0; x--) {
+		    int y = rand.nextInt(x + 1);
+		    int swap = required[x];
+		    required[x] = required[y];
+		    required[y] = swap;
+		}
+	    }
+	    write(Paths.get(args[1]), bars, blocks, required, part.equals("ordered"));
+	} else if (args.length == 2 && args[0].equals("run")) {
+	    long start = System.nanoTime();
+	    ScenarioFile scenario = open(Paths.get(args[1]));
+	    CountingRobot robot = new CountingRobot();
+	    new RobotControl(robot).control(scenario);
+	    PlanEstimate estimate = robot.toEstimate(1);
+	    System.out.printf("%d blocks, %d operations in %.1f ms%n", scenario.getBlocks().size(),
+		    estimate.getOperationCount(), (System.nanoTime() - start) / 1e6);
+	} else {
+	    System.err.println("Usage: ScenarioFile write file bars blocks [ordered|required]");
+	    System.err.println("       ScenarioFile random file blocks [bulk|required|ordered] [seed]");
+	    System.err.println("       ScenarioFile run file");
+	    System.exit(1);
+	}
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.Arrays;
+
+/**
+ * Outcome of a {@link Scenario}: the number of robot operations and the
+ * final columns, or the error that stopped it.
+ */
+public class ScenarioResult {
+
+    private final long id;
+    private final long operations;
+    private final long elapsedNanos;
+    private final int[] source;
+    private final int[] temporary;
+    private final int[] target;
+    private final String error;
+
+    private ScenarioResult(long id, long operations, long elapsedNanos, int[] source, int[] temporary, int[] target,
+	    String error) {
+	this.id = id;
+	this.operations = operations;
+	this.elapsedNanos = elapsedNanos;
+	this.source = source;
+	this.temporary = temporary;
+	this.target = target;
+	this.error = error;
+    }
+
+    /**
+     * Create the result of a solved scenario.
+     *
+     * @param id
+     *            the scenario id
+     * @param operations
+     *            the number of robot operations
+     * @param elapsedNanos
+     *            the solving time
+     * @param source
+     *            the final source column, bottom first
+     * @param temporary
+     *            the final temporary column, bottom first
+     * @param target
+     *            the final target column, bottom first
+     * @return the result
+     */
+    public static ScenarioResult solved(long id, long operations, long elapsedNanos, int[] source, int[] temporary,
+	    int[] target) {
+	return new ScenarioResult(id, operations, elapsedNanos, source, temporary, target, null);
+    }
+
+    /**
+     * Create the result of a failed scenario.
+     *
+     * @param id
+     *            the scenario id
+     * @param operations
+     *            the number of robot operations before the error
+     * @param elapsedNanos
+     *            the time until the error
+     * @param error
+     *            the error message
+     * @return the result
+     */
+    public static ScenarioResult failed(long id, long operations, long elapsedNanos, String error) {
+	return new ScenarioResult(id, operations, elapsedNanos, null, null, null, error);
+    }
+
+    public long getId() {
+	return id;
+    }
+
+    public long getOperations() {
+	return operations;
+    }
+
+    public long getElapsedNanos() {
+	return elapsedNanos;
+    }
+
+    public int[] getSource() {
+	return source;
+    }
+
+    public int[] getTemporary() {
+	return temporary;
+    }
+
+    public int[] getTarget() {
+	return target;
+    }
+
+    /**
+     * Get the error that stopped the scenario.
+     *
+     * @return the error message, null if solved
+     */
+    public String getError() {
+	return error;
+    }
+
+    /**
+     * Format the result as a single line, as streamed by
+     * {@link ScenarioServer}.
+     */
+    @Override
+    public String toString() {
+	if (error != null)
+	    return id + " error ops=" + operations + " " + error;
+	return id + " ok ops=" + operations + " micros=" + elapsedNanos / 1000 + " source=" + Arrays.toString(source)
+		+ " temporary=" + Arrays.toString(temporary) + " target=" + Arrays.toString(target);
+    }
+}
@@ -0,0 +1,383 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>In-process job server solving many {@link Scenario}s at the same time
+ * on headless {@link SimulatedRobot}s.</p>
+ *
+ * <p>Every scenario runs <code>RobotControl.control</code> on its own
+ * virtual thread when the JVM provides them (looked up at run time), or on
+ * a pool of one platform thread per core otherwise. Admission control
+ * limits the number of scenarios queued or running: submitting blocks once
+ * the limit is reached, which slows down a client sending faster than the
+ * scenarios are solved.</p>
+ *
+ * <p>Scenarios are submitted with {@link #submit(Scenario, Listener)}, or
+ * over a loopback socket opened with {@link #listen(int)}: a client sends one
+ * scenario per line (<code>734561 321 ordered</code>) and receives one
+ * {@link ScenarioResult} line per scenario, prefixed with the scenario line
+ * number, as soon as it is solved.</p>
+ */
+public class ScenarioServer {
+
+    /** Default number of scenarios queued or running per core. */
+    private static final int DEFAULT_IN_FLIGHT_PER_CORE = 64;
+
+    /**
+     * Receiver of scenario results, called on the thread that solved the
+     * scenario.
+     */
+    public interface Listener {
+
+	/**
+	 * A scenario was solved or failed.
+	 *
+	 * @param result
+	 *            the result
+	 */
+	void onResult(ScenarioResult result);
+    }
+
+    /** Runs the scenarios. */
+    private final ExecutorService executor;
+
+    /** True if scenarios run on virtual threads. */
+    private final boolean virtualThreads;
+
+    /** Permits for the scenarios queued or running. */
+    private final Semaphore admission;
+
+    /** Number of solved or failed scenarios. */
+    private final AtomicLong completed = new AtomicLong();
+
+    /** Socket of {@link #listen(int)}, null if not listening. */
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * Instantiates a new scenario server with the default admission limit.
+     */
+    public ScenarioServer() {
+	this(DEFAULT_IN_FLIGHT_PER_CORE * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Instantiates a new scenario server.
+     *
+     * @param maxInFlight
+     *            the maximum number of scenarios queued or running
+     */
+    public ScenarioServer(int maxInFlight) {
+	this.admission = new Semaphore(maxInFlight);
+	ExecutorService virtual = newVirtualThreadExecutor();
+	this.virtualThreads = virtual != null;
+	this.executor = virtual != null ? virtual
+		: Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create an executor starting a virtual thread per task, if the JVM
+     * supports them.
+     *
+     * @return the executor, null if virtual threads are not available
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+	try {
+	    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+	} catch (ReflectiveOperationException | RuntimeException e) {
+	    return null;
+	}
+    }
+
+    /**
+     * Solve a scenario on the calling thread.
+     *
+     * @param scenario
+     *            the scenario
+     * @return the result
+     */
+    public static ScenarioResult solve(Scenario scenario) {
+	SimulatedRobot robot = null;
+	RobotControl control;
+	long start = System.nanoTime();
+	try {
+	    // the robot rejects scenarios that do not fit the track too
+	    robot = new SimulatedRobot(scenario.getBarHeights(), scenario.getBlockHeights(), scenario.getRequired(),
+		    scenario.isOrdered());
+	    control = new RobotControl(robot);
+	    control.control(scenario.getBarHeights(), scenario.getBlockHeights(), scenario.getRequired(),
+		    scenario.isOrdered());
+	} catch (RuntimeException e) {
+	    return ScenarioResult.failed(scenario.getId(), robot == null ? 0 : robot.getOperationCount(),
+		    System.nanoTime() - start, e.toString());
+	}
+	return ScenarioResult.solved(scenario.getId(), robot.getOperationCount(), System.nanoTime() - start,
+		blocksOf(control.getColumn(ColumnType.source)), blocksOf(control.getColumn(ColumnType.temporary)),
+		blocksOf(control.getColumn(ColumnType.target)));
+    }
+
+    private static int[] blocksOf(Column column) {
+	BlockView blocks = column.getBlocks();
+	int[] values = new int[blocks.size()];
+	for (int x = 0; x < values.length; x++) {
+	    values[x] = blocks.get(x);
+	}
+	return values;
+    }
+
+    /**
+     * Submit a scenario, waiting while the admission limit is reached.
+     *
+     * @param scenario
+     *            the scenario
+     * @param listener
+     *            notified with the result, or null
+     * @return the future result
+     * @throws InterruptedException
+     *             if interrupted while waiting for admission
+     */
+    public Future<ScenarioResult> submit(final Scenario scenario, final Listener listener)
+	    throws InterruptedException {
+	admission.acquire();
+	try {
+	    return executor.submit(new Callable<ScenarioResult>() {
+		@Override
+		public ScenarioResult call() {
+		    try {
+			ScenarioResult result;
+			try {
+			    result = solve(scenario);
+			} catch (Throwable e) {
+			    // errors too, or a client would wait for this result forever
+			    result = ScenarioResult.failed(scenario.getId(), 0, 0, e.toString());
+			}
+			completed.incrementAndGet();
+			if (listener != null)
+			    listener.onResult(result);
+			return result;
+		    } finally {
+			admission.release();
+		    }
+		}
+	    });
+	} catch (RuntimeException e) {
+	    admission.release();
+	    throw e;
+	}
+    }
+
+    /**
+     * Accept scenario connections on the loopback interface, on a
+     * background thread.
+     *
+     * @param port
+     *            the port, 0 for any free port
+     * @return the bound port
+     * @throws IOException
+     *             if the port cannot be bound
+     */
+    public int listen(int port) throws IOException {
+	final ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+	serverSocket = socket;
+	Thread acceptor = new Thread("scenario-acceptor") {
+	    @Override
+	    public void run() {
+		while (!socket.isClosed()) {
+		    try {
+			final Socket client = socket.accept();
+			Thread handler = new Thread("scenario-client-" + client.getPort()) {
+			    @Override
+			    public void run() {
+				serve(client);
+			    }
+			};
+			handler.setDaemon(true);
+			handler.start();
+		    } catch (IOException e) {
+			// socket closed
+		    }
+		}
+	    }
+	};
+	acceptor.setDaemon(true);
+	acceptor.start();
+	return socket.getLocalPort();
+    }
+
+    /**
+     * Read scenario lines from a client and stream back the results. The
+     * connection is closed once the client stopped sending and all its
+     * scenarios are done.
+     */
+    private void serve(Socket client) {
+	try (Socket socket = client;
+		BufferedReader reader = new BufferedReader(
+			new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+	    final PrintWriter writer = new PrintWriter(
+		    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), false);
+	    // scenarios of this client not answered yet, guarded by writer
+	    final long[] pending = { 0 };
+	    Listener listener = new Listener() {
+		@Override
+		public void onResult(ScenarioResult result) {
+		    synchronized (writer) {
+			writer.println(result);
+			writer.flush();
+			pending[0]--;
+			writer.notifyAll();
+		    }
+		}
+	    };
+	    long id = 0;
+	    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+		if (line.trim().isEmpty())
+		    continue;
+		id++;
+		synchronized (writer) {
+		    pending[0]++;
+		}
+		try {
+		    submit(Scenario.parse(id, line), listener);
+		} catch (IllegalArgumentException e) {
+		    listener.onResult(ScenarioResult.failed(id, 0, 0, e.getMessage()));
+		}
+	    }
+	    synchronized (writer) {
+		while (pending[0] > 0) {
+		    writer.wait();
+		}
+	    }
+	} catch (IOException | InterruptedException e) {
+	    // client gone, its remaining scenarios still run
+	}
+    }
+
+    /**
+     * Check if scenarios run on virtual threads.
+     *
+     * @return true, if virtual threads are used
+     */
+    public boolean isUsingVirtualThreads() {
+	return virtualThreads;
+    }
+
+    /**
+     * Get the number of solved or failed scenarios.
+     *
+     * @return the number of completed scenarios
+     */
+    public long getCompleted() {
+	return completed.get();
+    }
+
+    /**
+     * Stop accepting connections and wait for the submitted scenarios.
+     *
+     * @throws IOException
+     *             if the server socket cannot be closed
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public void shutdown() throws IOException, InterruptedException {
+	ServerSocket socket = serverSocket;
+	if (socket != null)
+	    socket.close();
+	executor.shutdown();
+	executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Random scenario in the limits of the Swing robot: six bars and blocks
+     * small enough to stay within 14 units.
+     */
+    private static Scenario randomScenario(long id, Random rand) {
+	int[] bars = new int[6];
+	for (int x = 0; x < bars.length; x++) {
+	    bars[x] = rand.nextInt(7) + 1;
+	}
+	int[] blocks = new int[rand.nextInt(4) + 1];
+	for (int x = 0; x < blocks.length; x++) {
+	    blocks[x] = rand.nextInt(3) + 1;
+	}
+	int mode = rand.nextInt(3);
+	int[] required = { 0 };
+	if (mode == 1) {
+	    required = blocks.clone();
+	    for (int x = required.length - 1; x > 0; x--) {
+		int y = rand.nextInt(x + 1);
+		int swap = required[x];
+		required[x] = required[y];
+		required[y] = swap;
+	    }
+	} else if (mode == 2) {
+	    // descending blocks for the ordered mode
+	    Arrays.sort(blocks);
+	    for (int x = 0; x < blocks.length / 2; x++) {
+		int swap = blocks[x];
+		blocks[x] = blocks[blocks.length - 1 - x];
+		blocks[blocks.length - 1 - x] = swap;
+	    }
+	}
+	return new Scenario(id, bars, blocks, required, mode == 2);
+    }
+
+    /**
+     * <p>Start the server.</p>
+     *
+     * <p>Arguments: <code>[port] [max in flight]</code> to listen on the
+     * loopback interface, or <code>bench [scenarios] [max in flight]</code>
+     * to solve random scenarios in process and report the throughput.</p>
+     *
+     * @param args
+     *            the program arguments
+     * @throws Exception
+     *             if the server cannot be started
+     */
+    public static void main(String[] args) throws Exception {
+	if (args.length > 0 && args[0].equals("bench")) {
+	    int scenarios = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+	    ScenarioServer server = args.length > 2 ? new ScenarioServer(Integer.parseInt(args[2]))
+		    : new ScenarioServer();
+	    final AtomicLong failed = new AtomicLong();
+	    Listener listener = new Listener() {
+		@Override
+		public void onResult(ScenarioResult result) {
+		    if (result.getError() != null)
+			failed.incrementAndGet();
+		}
+	    };
+	    Random rand = new Random(1);
+	    long start = System.nanoTime();
+	    for (int x = 0; x < scenarios; x++) {
+		server.submit(randomScenario(x + 1, rand), listener);
+	    }
+	    server.shutdown();
+	    double seconds = (System.nanoTime() - start) / 1e9;
+	    System.out.println("Virtual threads: " + server.isUsingVirtualThreads());
+	    System.out.printf("Scenarios: %d in %.2f s, %.0f scenarios/min, failed: %d%n", server.getCompleted(),
+		    seconds, server.getCompleted() / seconds * 60, failed.get());
+	    return;
+	}
+
+	int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+	ScenarioServer server = args.length > 1 ? new ScenarioServer(Integer.parseInt(args[1])) : new ScenarioServer();
+	System.out.println("Listening on 127.0.0.1:" + server.listen(port) + " (virtual threads: "
+		+ server.isUsingVirtualThreads() + ")");
+	Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * A {@link RobotDriver} able to execute several steps of the same primitive
+ * in a single call.
+ */
+public interface SegmentDriver extends RobotDriver {
+
+    /**
+     * Execute the given primitive the given number of times.
+     *
+     * @param primitive
+     *            the primitive
+     * @param steps
+     *            the number of steps, at least 1
+     */
+    void move(Primitive primitive, int steps);
+}
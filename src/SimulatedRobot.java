@@ -0,0 +1,427 @@
+/**
+ * <p>Headless, in-memory implementation of the robot.</p>
+ *
+ * <p>It follows the same kinematics and collision checks as the Swing
+ * {@link Robot} (obstacle checks on every move, top block picking, required
+ * and ordered dropping rules) but never renders nor sleeps, which allows
+ * scenarios to run on machines without a display at full speed.</p>
+ *
+ * <p>Segments of arm 1 and arm 3 movements are executed in constant time:
+ * the checks are monotonic along a vertical movement, so only the last step
+ * needs to be verified.</p>
+ *
+ * <p>Any violated precondition throws an {@link IllegalStateException}
+ * carrying the same message the Swing robot shows in its error dialog.</p>
+ */
+public class SimulatedRobot implements SegmentDriver {
+
+    /** Number of track positions (arm 2 can reach positions 1 to width). */
+    private final int trackWidth;
+
+    /** Obstacle height at each track position (index 0 is unused). */
+    private final int[] heights;
+
+    /** Block stacks of the positions holding a column, null otherwise. */
+    private final int[][] stacks;
+
+    /** Number of blocks in each stack. */
+    private final int[] stackSizes;
+
+    /** Required dropping order for the target column, null if not set. */
+    private final int[] required;
+
+    /** Larger blocks cannot be placed over smaller ones. */
+    private final boolean ordered;
+
+    /** Arm 1 height limit. */
+    private int maxHeight = Integer.MAX_VALUE;
+
+    /** Arm 1 height. */
+    private int rH = 2;
+
+    /** Arm 2 width. */
+    private int rW = 1;
+
+    /** Arm 3 depth. */
+    private int rD = 0;
+
+    /** Arm 3 is holding a block. */
+    private boolean picked;
+
+    /** Height of the held block. */
+    private int pickedHeight;
+
+    /** Number of executed operations. */
+    private long numOps;
+
+    /**
+     * Instantiates a new simulated robot using the same arguments as the
+     * Swing {@link Robot}.
+     *
+     * @param barHeights
+     *            the bar heights
+     * @param blockHeights
+     *            the block heights placed in the source column
+     * @param required
+     *            the required ordering of the target column
+     * @param ordered
+     *            the ordered argument
+     */
+    public SimulatedRobot(int[] barHeights, int[] blockHeights, int[] required, boolean ordered) {
+	this(Track.threeColumns(barHeights, blockHeights), required, ordered);
+    }
+
+    /**
+     * Instantiates a new simulated robot over a copy of the given track.
+     *
+     * @param track
+     *            the bars and columns
+     * @param required
+     *            the required ordering of the column at the target position
+     * @param ordered
+     *            the ordered argument
+     */
+    public SimulatedRobot(Track track, int[] required, boolean ordered) {
+	this.trackWidth = track.getWidth();
+	this.heights = new int[trackWidth + 1];
+	this.stacks = new int[trackWidth + 1][];
+	this.stackSizes = new int[trackWidth + 1];
+	this.required = required != null && required.length > 0 && required[0] != 0 ? required : null;
+	this.ordered = ordered;
+
+	int blockCount = 0;
+	for (Column column : track.getColumns()) {
+	    blockCount += column.getBlockCount();
+	}
+	for (int x = 1; x <= trackWidth; x++) {
+	    heights[x] = track.getBarHeight(x);
+	}
+	for (Column column : track.getColumns()) {
+	    int position = column.getPosition();
+	    stacks[position] = new int[blockCount];
+	    BlockView blocks = column.getBlocks();
+	    for (int x = 0; x < blocks.size(); x++) {
+		push(position, blocks.get(x));
+	    }
+	}
+    }
+
+    /**
+     * <p>Instantiates a new simulated robot working on the same columns as
+     * the given one, with arms of its own.</p>
+     *
+     * <p>The robots do not synchronize: each one must only touch the
+     * columns under its arm while holding their zone locks, as
+     * {@link RobotControl#moveBlock(int, int)} does on a shared track.</p>
+     *
+     * @param shared
+     *            the robot whose columns are shared
+     */
+    public SimulatedRobot(SimulatedRobot shared) {
+	this.trackWidth = shared.trackWidth;
+	this.heights = shared.heights;
+	this.stacks = shared.stacks;
+	this.stackSizes = shared.stackSizes;
+	this.required = shared.required;
+	this.ordered = shared.ordered;
+	this.maxHeight = shared.maxHeight;
+    }
+
+    /**
+     * Limit the height arm 1 can reach. The Swing robot is limited to 14
+     * units by its panel, the simulated robot is unlimited by default.
+     *
+     * @param maxHeight
+     *            the maximum arm 1 height
+     */
+    public void setMaxHeight(int maxHeight) {
+	this.maxHeight = maxHeight;
+    }
+
+    /**
+     * Place the arms without checking nor counting any operation, such as
+     * when resuming a run from a {@link Checkpoint}.
+     *
+     * @param armOneHeight
+     *            the arm 1 height
+     * @param armTwoWidth
+     *            the arm 2 width
+     * @param armThreeDepth
+     *            the arm 3 depth
+     */
+    public void setArms(int armOneHeight, int armTwoWidth, int armThreeDepth) {
+	this.rH = armOneHeight;
+	this.rW = armTwoWidth;
+	this.rD = armThreeDepth;
+    }
+
+    /**
+     * Clearance below arm 3 (or below the held block).
+     *
+     * @return the height of the lowest point of the arm
+     */
+    private int clearance() {
+	return picked ? rH - rD - pickedHeight : rH - rD;
+    }
+
+    /**
+     * Check the given track position is lower than the given height.
+     *
+     * @param position
+     *            the track position
+     * @param height
+     *            the height to check against
+     * @return true, if nothing is hit
+     */
+    private boolean checkValid(int position, int height) {
+	return heights[position] < height;
+    }
+
+    /**
+     * Report a violated precondition.
+     *
+     * @param message
+     *            the error message
+     * @param title
+     *            the failing operation
+     */
+    private void message(String message, String title) {
+	throw new IllegalStateException(title + ": " + message);
+    }
+
+    private void push(int position, int block) {
+	stacks[position][stackSizes[position]++] = block;
+	heights[position] += block;
+    }
+
+    private int pop(int position) {
+	int block = stacks[position][--stackSizes[position]];
+	heights[position] -= block;
+	return block;
+    }
+
+    @Override
+    public void up() {
+	numOps++;
+	if (rH >= maxHeight)
+	    message("Robot height cannot be greater than " + maxHeight, "up() precondition violated");
+	rH++;
+    }
+
+    @Override
+    public void down() {
+	numOps++;
+	if (rH <= 2)
+	    message("Beyond limit: h must be greater than 1", "Error in call to down()");
+	if (!checkValid(rW, clearance() - 1))
+	    message("Obstacle found", "Error in call to down()");
+	for (int x = 1; x < rW; x++) {
+	    if (!checkValid(x, rH - 1))
+		message("Obstacle found", "Error in call to down()");
+	}
+	rH--;
+    }
+
+    @Override
+    public void extend() {
+	numOps++;
+	if (rW >= trackWidth)
+	    message("Robot width cannot be greater than " + trackWidth, "Error in call to extend()");
+	if (!checkValid(rW + 1, clearance()))
+	    message("hit obstacle", "Error in call to extend()");
+	rW++;
+    }
+
+    @Override
+    public void contract() {
+	numOps++;
+	if (rW <= 1)
+	    message("Robot width cannot be less than 1", "Error in call to contract()");
+	if (!checkValid(rW - 1, clearance()))
+	    message("hit obstacle", "Error in call to contract()");
+	rW--;
+    }
+
+    @Override
+    public void lower() {
+	numOps++;
+	if (rD >= rH - 1)
+	    message("Beyond limit: d must be less than h", "Error in call to lower()");
+	if (!checkValid(rW, clearance() - 1))
+	    message("Obstacle found", "Error in call to lower()");
+	rD++;
+    }
+
+    @Override
+    public void raise() {
+	numOps++;
+	if (rD <= 0)
+	    message("Precondition (d>=1) violated", "Error in call to raise()");
+	rD--;
+    }
+
+    @Override
+    public void pick() {
+	numOps++;
+	if (picked)
+	    message("must drop before picking again", "Error in call to pick()");
+	if (stacks[rW] == null || stackSizes[rW] == 0 || rH - 1 - rD != heights[rW])
+	    message("Can pick only from the top blocks", "Error in call to pick()");
+	pickedHeight = pop(rW);
+	picked = true;
+    }
+
+    @Override
+    public void drop() {
+	numOps++;
+	if (!picked)
+	    message("must pick item before dropping", "Error in call to drop()");
+	if (stacks[rW] == null || rH - 1 - rD - pickedHeight != heights[rW])
+	    message("Can only drop on top of blocks in col 1, 9 and 10", "Error in call to drop()");
+
+	int size = stackSizes[rW];
+	if (required != null && rW == ColumnType.target.getValue()) {
+	    if (size >= required.length || pickedHeight != required[size])
+		message("Not the required height", "Error in call to drop()");
+	} else if (ordered && size != 0 && pickedHeight > stacks[rW][size - 1]) {
+	    message("Ordering Requested: Cannot place over a smaller block", "Error in call to drop()");
+	}
+	push(rW, pickedHeight);
+	picked = false;
+    }
+
+    @Override
+    public void move(Primitive primitive, int steps) {
+	switch (primitive) {
+	case UP:
+	    rH += steps - 1;
+	    numOps += steps - 1;
+	    up();
+	    break;
+	case DOWN:
+	    rH -= steps - 1;
+	    numOps += steps - 1;
+	    down();
+	    break;
+	case LOWER:
+	    rD += steps - 1;
+	    numOps += steps - 1;
+	    lower();
+	    break;
+	case RAISE:
+	    rD -= steps - 1;
+	    numOps += steps - 1;
+	    raise();
+	    break;
+	default:
+	    // horizontal moves, pick and drop are checked step by step
+	    for (int x = 0; x < steps; x++) {
+		primitive.execute(this);
+	    }
+	}
+    }
+
+    /**
+     * Get arm 1 height.
+     *
+     * @return the arm 1 height
+     */
+    public int getArmOneHeight() {
+	return rH;
+    }
+
+    /**
+     * Get arm 2 width.
+     *
+     * @return the arm 2 width
+     */
+    public int getArmTwoWidth() {
+	return rW;
+    }
+
+    /**
+     * Get arm 3 depth.
+     *
+     * @return the arm 3 depth
+     */
+    public int getArmThreeDepth() {
+	return rD;
+    }
+
+    /**
+     * Check if arm 3 is holding a block.
+     *
+     * @return true, if a block is held
+     */
+    public boolean isHolding() {
+	return picked;
+    }
+
+    /**
+     * Get the total height of the obstacle at the given track position.
+     *
+     * @param position
+     *            the track position
+     * @return the column or bar height
+     */
+    public int getHeight(int position) {
+	return heights[position];
+    }
+
+    /**
+     * Get the number of blocks in the column at the given track position.
+     *
+     * @param position
+     *            the track position
+     * @return the number of blocks
+     */
+    public int getBlockCount(int position) {
+	return stackSizes[position];
+    }
+
+    /**
+     * Get the number of executed operations.
+     *
+     * @return the number of operations
+     */
+    public long getOperationCount() {
+	return numOps;
+    }
+
+    /**
+     * Convert a digits argument (e.g. "3412") to an int array.
+     *
+     * @param digits
+     *            the argument
+     * @return the parsed values
+     */
+    private static int[] parseDigits(String digits) {
+	int[] values = new int[digits.length()];
+	for (int x = 0; x < values.length; x++) {
+	    values[x] = digits.charAt(x) - '0';
+	}
+	return values;
+    }
+
+    /**
+     * Run a scenario headless, using the same arguments as {@link Robot}:
+     * bar heights, block heights and either the required order or "ordered".
+     *
+     * @param args
+     *            the program arguments
+     */
+    public static void main(String[] args) {
+	int[] barHeights = parseDigits(args.length > 0 ? args[0] : "444444");
+	int[] blockHeights = parseDigits(args.length > 1 ? args[1] : "2222");
+	boolean ordered = args.length > 2 && args[2].equalsIgnoreCase("ordered");
+	int[] required = args.length > 2 && !ordered ? parseDigits(args[2]) : new int[] { 0 };
+
+	SimulatedRobot robot = new SimulatedRobot(barHeights, blockHeights, required, ordered);
+	long start = System.nanoTime();
+	new RobotControl(robot).control(barHeights, blockHeights, required, ordered);
+	long elapsed = System.nanoTime() - start;
+
+	System.out.println("Operations: " + robot.getOperationCount());
+	System.out.println("Time (ms): " + elapsed / 1000000.0);
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * <p>Driver decorator publishing a {@link RobotSnapshot} after every
+ * primitive call.</p>
+ *
+ * <p>The snapshot follows the calls actually sent to the robot, so it is
+ * always a state the robot went through. It is published through a single
+ * volatile reference: observers such as a renderer or a monitor read a
+ * consistent view with one volatile read, without locking and without
+ * slowing down the control thread.</p>
+ */
+public class SnapshotPublisher implements SegmentDriver {
+
+    /** The decorated driver. */
+    private final RobotDriver r;
+
+    /** The decorated driver, if it executes segments. */
+    private final SegmentDriver segmentDriver;
+
+    /** The latest snapshot. */
+    private volatile RobotSnapshot snapshot;
+
+    /**
+     * Instantiates a new snapshot publisher.
+     *
+     * @param r
+     *            the decorated driver
+     */
+    public SnapshotPublisher(RobotDriver r) {
+	this.r = r;
+	this.segmentDriver = r instanceof SegmentDriver ? (SegmentDriver) r : null;
+    }
+
+    /**
+     * Start publishing the snapshots of a new run.
+     *
+     * @param track
+     *            the bars and columns
+     * @param armOneHeight
+     *            the arm 1 height
+     * @param armTwoWidth
+     *            the arm 2 width
+     * @param armThreeDepth
+     *            the arm 3 depth
+     */
+    public void reset(Track track, int armOneHeight, int armTwoWidth, int armThreeDepth) {
+	snapshot = RobotSnapshot.of(track, armOneHeight, armTwoWidth, armThreeDepth);
+    }
+
+    /**
+     * Get the latest snapshot.
+     *
+     * @return the snapshot, null before the first run
+     */
+    public RobotSnapshot getSnapshot() {
+	return snapshot;
+    }
+
+    /**
+     * Get the decorated driver.
+     *
+     * @return the decorated driver
+     */
+    public RobotDriver getDriver() {
+	return r;
+    }
+
+    @Override
+    public void move(Primitive primitive, int steps) {
+	if (segmentDriver != null) {
+	    segmentDriver.move(primitive, steps);
+	} else {
+	    for (int x = 0; x < steps; x++) {
+		primitive.execute(r);
+	    }
+	}
+	publish(primitive, steps);
+    }
+
+    /**
+     * Derive and publish the snapshot following a primitive.
+     */
+    private void publish(Primitive primitive, int steps) {
+	RobotSnapshot current = snapshot;
+	if (current == null)
+	    return;
+	int armOne = current.getArmOneHeight();
+	int armTwo = current.getArmTwoWidth();
+	int armThree = current.getArmThreeDepth();
+	switch (primitive) {
+	case UP:
+	    snapshot = current.withArms(armOne + steps, armTwo, armThree);
+	    break;
+	case DOWN:
+	    snapshot = current.withArms(armOne - steps, armTwo, armThree);
+	    break;
+	case EXTEND:
+	    snapshot = current.withArms(armOne, armTwo + steps, armThree);
+	    break;
+	case CONTRACT:
+	    snapshot = current.withArms(armOne, armTwo - steps, armThree);
+	    break;
+	case LOWER:
+	    snapshot = current.withArms(armOne, armTwo, armThree + steps);
+	    break;
+	case RAISE:
+	    snapshot = current.withArms(armOne, armTwo, armThree - steps);
+	    break;
+	case PICK:
+	    snapshot = current.withPick();
+	    break;
+	case DROP:
+	    snapshot = current.withDrop();
+	    break;
+	}
+    }
+
+    @Override
+    public void up() {
+	r.up();
+	publish(Primitive.UP, 1);
+    }
+
+    @Override
+    public void down() {
+	r.down();
+	publish(Primitive.DOWN, 1);
+    }
+
+    @Override
+    public void extend() {
+	r.extend();
+	publish(Primitive.EXTEND, 1);
+    }
+
+    @Override
+    public void contract() {
+	r.contract();
+	publish(Primitive.CONTRACT, 1);
+    }
+
+    @Override
+    public void lower() {
+	r.lower();
+	publish(Primitive.LOWER, 1);
+    }
+
+    @Override
+    public void raise() {
+	r.raise();
+	publish(Primitive.RAISE, 1);
+    }
+
+    @Override
+    public void pick() {
+	r.pick();
+	publish(Primitive.PICK, 1);
+    }
+
+    @Override
+    public void drop() {
+	r.drop();
+	publish(Primitive.DROP, 1);
+    }
+}
@@ -0,0 +1,450 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Bounded, seeded and parallel randomized stress test.</p>
+ *
+ * <p>Every scenario is derived from its own seed: a random bar layout, a
+ * random set of blocks in the Source column and a random sequence of moves
+ * between the three columns. Scenarios run on a {@link SimulatedRobot} and
+ * are spread over all cores with a fork/join pool.</p>
+ *
+ * <p>After every move the following invariants are checked:<br>
+ * 1- The robot did not report any collision or invalid operation<br>
+ * 2- Conservation: no block was created or lost, and the controller columns
+ * match the simulated robot columns<br>
+ * 3- Collision: arm 2 is above every obstacle it spans and arm 3 is above
+ * the obstacle below it, and the controller agrees with the robot on the arm
+ * positions</p>
+ *
+ * <p>Failing scenarios are written to a file, one per line, as their seed,
+ * number of moves and maximum number of blocks, which all shape the
+ * scenario, followed by the failure. The first three fields are the
+ * arguments replaying the scenario deterministically: <code>StressHarness
+ * replay seed moves maxBlocks</code>.</p>
+ *
+ * <p><code>StressHarness concurrent</code> runs several robots on a shared
+ * {@link Track} instead, each on a {@link SimulatedRobot} sharing the same
+ * columns, and fails a scenario if a robot reports a collision or invalid
+ * operation, if the robots do not finish in time (reporting any deadlocked
+ * threads), if a block is created or lost, or if the obstacle index or the
+ * robots disagree with the columns.</p>
+ */
+public class StressHarness {
+
+    /** Number of bars on the track. */
+    private static final int BAR_COUNT = 6;
+
+    /** Scenarios run sequentially by a single fork/join task. */
+    private static final int SEQUENTIAL_THRESHOLD = 16;
+
+    /** Zone width of the shared tracks. */
+    private static final int SHARED_ZONE_WIDTH = 4;
+
+    /** Farthest distance between the columns of most shared track moves. */
+    private static final int SHARED_MOVE_RANGE = 8;
+
+    /** Time a shared track scenario may take before it is deemed stuck. */
+    private static final long SHARED_TIMEOUT_MILLIS = 30000;
+
+    /** Column types, indexed by random draws. */
+    private static final ColumnType[] TYPES = ColumnType.values();
+
+    /** Number of scenarios. */
+    private final int scenarios;
+
+    /** Number of moves per scenario. */
+    private final int moves;
+
+    /** Maximum number of blocks per scenario. */
+    private final int maxBlocks;
+
+    /** Seed of the first scenario. */
+    private final long baseSeed;
+
+    /** Total number of executed moves. */
+    private final AtomicLong totalMoves = new AtomicLong();
+
+    /** Failing seeds with the arguments replaying them and their failure message. */
+    private final ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Instantiates a new stress harness.
+     *
+     * @param scenarios
+     *            the number of scenarios
+     * @param moves
+     *            the number of moves per scenario
+     * @param maxBlocks
+     *            the maximum number of blocks per scenario
+     * @param baseSeed
+     *            the seed of the first scenario
+     */
+    public StressHarness(int scenarios, int moves, int maxBlocks, long baseSeed) {
+	this.scenarios = scenarios;
+	this.moves = moves;
+	this.maxBlocks = maxBlocks;
+	this.baseSeed = baseSeed;
+    }
+
+    /**
+     * Run one scenario.
+     *
+     * @param seed
+     *            the scenario seed
+     * @param verbose
+     *            print every move and the controller state
+     * @return the failure message, null if all invariants held
+     */
+    public String runScenario(long seed, boolean verbose) {
+	Random rand = new Random(seed);
+	int[] barHeights = new int[BAR_COUNT];
+	for (int x = 0; x < barHeights.length; x++) {
+	    barHeights[x] = rand.nextInt(8) + 1;
+	}
+	int[] blockHeights = new int[rand.nextInt(maxBlocks) + 1];
+	int totalHeight = 0;
+	for (int x = 0; x < blockHeights.length; x++) {
+	    blockHeights[x] = rand.nextInt(4) + 1;
+	    totalHeight += blockHeights[x];
+	}
+	int[] required = { 0 };
+
+	SimulatedRobot robot = new SimulatedRobot(barHeights, blockHeights, required, false);
+	RobotControl control = new RobotControl(robot);
+	control.init(barHeights, blockHeights, required, false);
+
+	int executed = 0;
+	try {
+	    while (executed < moves) {
+		ColumnType from = TYPES[rand.nextInt(TYPES.length)];
+		if (control.getColumn(from).getBlockCount() == 0)
+		    continue;
+		ColumnType to = TYPES[rand.nextInt(TYPES.length)];
+		while (to == from) {
+		    to = TYPES[rand.nextInt(TYPES.length)];
+		}
+		if (verbose)
+		    System.out.println("Moving From " + from + " To " + to);
+
+		control.moveBlock(from, to);
+		executed++;
+
+		String violation = checkInvariants(control, robot, blockHeights.length, totalHeight);
+		if (violation != null)
+		    return "move " + executed + ": " + violation;
+		if (verbose)
+		    control.printDebugVariables();
+	    }
+	} catch (RuntimeException e) {
+	    return "move " + (executed + 1) + ": " + e;
+	} finally {
+	    totalMoves.addAndGet(executed);
+	}
+	return null;
+    }
+
+    /**
+     * Check the conservation and collision invariants.
+     *
+     * @return the violated invariant, null if all hold
+     */
+    private static String checkInvariants(RobotControl control, SimulatedRobot robot, int blockCount,
+	    int totalHeight) {
+	int count = 0;
+	int height = 0;
+	for (ColumnType type : TYPES) {
+	    Column column = control.getColumn(type);
+	    count += column.getBlockCount();
+	    height += column.getHeight();
+	    if (column.getHeight() != robot.getHeight(type.getValue())
+		    || column.getBlockCount() != robot.getBlockCount(type.getValue()))
+		return "column " + type + " differs from the robot";
+	}
+	if (count != blockCount || height != totalHeight)
+	    return "blocks not conserved: " + count + " blocks of total height " + height;
+
+	if (robot.isHolding())
+	    return "robot still holds a block";
+	if (control.getArmOneHeight() != robot.getArmOneHeight() || control.getArmTwoWidth() != robot.getArmTwoWidth()
+		|| control.getArmThreeDepth() != robot.getArmThreeDepth())
+	    return "controller and robot arm positions differ";
+
+	int armOne = robot.getArmOneHeight();
+	int armTwo = robot.getArmTwoWidth();
+	for (int x = 1; x < armTwo; x++) {
+	    if (robot.getHeight(x) >= armOne)
+		return "arm 2 collides at position " + x;
+	}
+	if (robot.getHeight(armTwo) > armOne - robot.getArmThreeDepth() - 1)
+	    return "arm 3 collides at position " + armTwo;
+	return null;
+    }
+
+    /**
+     * Run one scenario with several robots moving random blocks on a shared
+     * track at the same time.
+     *
+     * @param seed
+     *            the scenario seed
+     * @param robots
+     *            the number of robots
+     * @return the failure message, null if all invariants held
+     * @throws InterruptedException
+     *             if interrupted while waiting for the robots
+     */
+    public String runSharedScenario(long seed, int robots) throws InterruptedException {
+	Random rand = new Random(seed);
+	int width = 16 + rand.nextInt(33);
+	final Track track = new Track(width, SHARED_ZONE_WIDTH);
+	final List<Integer> positions = new ArrayList<>();
+	int blockCount = 0;
+	int totalHeight = 0;
+	for (int position = 1; position <= width; position++) {
+	    if (rand.nextBoolean()) {
+		int[] blocks = new int[rand.nextInt(maxBlocks) + 1];
+		for (int x = 0; x < blocks.length; x++) {
+		    blocks[x] = rand.nextInt(4) + 1;
+		    totalHeight += blocks[x];
+		}
+		blockCount += blocks.length;
+		track.addColumn(position, blocks);
+		positions.add(position);
+	    } else {
+		track.setBar(position, rand.nextInt(8));
+	    }
+	}
+	if (positions.size() < 2)
+	    return null;
+
+	// the robots check their moves against the same columns
+	final SimulatedRobot shared = new SimulatedRobot(track, null, false);
+	final CountDownLatch start = new CountDownLatch(1);
+	final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+	Thread[] threads = new Thread[robots];
+	for (int x = 0; x < robots; x++) {
+	    final long robotSeed = rand.nextLong();
+	    threads[x] = new Thread("robot-" + x) {
+		@Override
+		public void run() {
+		    Random robotRand = new Random(robotSeed);
+		    RobotControl control = new RobotControl(new SimulatedRobot(shared));
+		    control.init(track);
+		    int executed = 0;
+		    try {
+			start.await();
+			while (executed < moves) {
+			    int from = robotRand.nextInt(positions.size());
+			    int to = from + robotRand.nextInt(SHARED_MOVE_RANGE * 2 + 1) - SHARED_MOVE_RANGE;
+			    // a few moves cross the whole track
+			    if (robotRand.nextInt(10) == 0)
+				to = robotRand.nextInt(positions.size());
+			    if (to < 0 || to >= positions.size() || to == from)
+				continue;
+			    control.moveBlock(positions.get(from), positions.get(to));
+			    executed++;
+			}
+		    } catch (InterruptedException | RuntimeException e) {
+			errors.add(getName() + " move " + (executed + 1) + ": " + e);
+		    } finally {
+			totalMoves.addAndGet(executed);
+		    }
+		}
+	    };
+	    // robots stuck in a deadlock must not keep the JVM alive
+	    threads[x].setDaemon(true);
+	    threads[x].start();
+	}
+	start.countDown();
+
+	long deadline = System.currentTimeMillis() + SHARED_TIMEOUT_MILLIS;
+	for (Thread thread : threads) {
+	    thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+	    if (thread.isAlive()) {
+		long[] deadlocked = ManagementFactory.getThreadMXBean().findDeadlockedThreads();
+		return deadlocked != null ? deadlocked.length + " robots deadlocked"
+			: thread.getName() + " did not finish in " + SHARED_TIMEOUT_MILLIS + " ms";
+	    }
+	}
+	if (!errors.isEmpty())
+	    return errors.peek();
+
+	int count = 0;
+	int height = 0;
+	int highest = 0;
+	for (int position = 1; position <= width; position++) {
+	    Column column = track.getColumn(position);
+	    int expected = column == null ? track.getBarHeight(position) : column.getHeight();
+	    if (track.getHeight(position) != expected)
+		return "obstacle index differs at position " + position;
+	    if (shared.getHeight(position) != expected)
+		return "column " + position + " differs from the robots";
+	    highest = Math.max(highest, expected);
+	    if (column != null) {
+		count += column.getBlockCount();
+		height += column.getHeight();
+	    }
+	}
+	if (count != blockCount || height != totalHeight)
+	    return "blocks not conserved: " + count + " blocks of total height " + height;
+	if (track.maxObstacle(1, width) != highest)
+	    return "obstacle index maximum differs";
+	return null;
+    }
+
+    /**
+     * Run shared track scenarios one after the other and report the
+     * throughput.
+     *
+     * @param robots
+     *            the number of robots per scenario
+     * @return the number of failing scenarios
+     * @throws InterruptedException
+     *             if interrupted while waiting for the robots
+     */
+    public int runShared(int robots) throws InterruptedException {
+	long start = System.nanoTime();
+	int failed = 0;
+	for (int x = 0; x < scenarios; x++) {
+	    long seed = baseSeed + x;
+	    String failure = runSharedScenario(seed, robots);
+	    if (failure != null) {
+		failed++;
+		System.out.println("Seed " + seed + " failed: " + failure);
+	    }
+	}
+	double seconds = (System.nanoTime() - start) / 1e9;
+	long moveCount = totalMoves.get();
+	System.out.println("Shared track scenarios: " + scenarios + ", moves: " + moveCount + ", robots: " + robots);
+	System.out.printf("Throughput: %.0f moves/sec%n", moveCount / seconds);
+	System.out.println("Failures: " + failed);
+	return failed;
+    }
+
+    /**
+     * Fork/join task running a range of scenarios.
+     */
+    private class ScenarioTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int from;
+	private final int to;
+
+	ScenarioTask(int from, int to) {
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override
+	protected void compute() {
+	    if (to - from <= SEQUENTIAL_THRESHOLD) {
+		for (int x = from; x < to; x++) {
+		    long seed = baseSeed + x;
+		    String failure = runScenario(seed, false);
+		    if (failure != null)
+			failures.add(seed + " " + moves + " " + maxBlocks + " " + failure);
+		}
+	    } else {
+		int middle = (from + to) >>> 1;
+		invokeAll(new ScenarioTask(from, middle), new ScenarioTask(middle, to));
+	    }
+	}
+    }
+
+    /**
+     * Run all scenarios in parallel and report the throughput.
+     *
+     * @param parallelism
+     *            the number of threads
+     * @param failureFile
+     *            the file failing seeds are written to, emptied first so
+     *            it only ever lists the failures of this run
+     * @return the number of failing scenarios
+     * @throws IOException
+     *             if the failure file cannot be written
+     */
+    public int run(int parallelism, String failureFile) throws IOException {
+	// seeds left by an earlier run would look like failures of this one
+	new FileWriter(failureFile).close();
+	ForkJoinPool pool = new ForkJoinPool(parallelism);
+	long start = System.nanoTime();
+	pool.invoke(new ScenarioTask(0, scenarios));
+	double seconds = (System.nanoTime() - start) / 1e9;
+	pool.shutdown();
+
+	List<String> failed = new ArrayList<>(failures);
+	Collections.sort(failed);
+	if (!failed.isEmpty()) {
+	    try (PrintWriter writer = new PrintWriter(new FileWriter(failureFile))) {
+		for (String failure : failed) {
+		    writer.println(failure);
+		}
+	    }
+	}
+
+	long moveCount = totalMoves.get();
+	System.out.println("Scenarios: " + scenarios + ", moves: " + moveCount + ", threads: " + parallelism);
+	System.out.printf("Throughput: %.0f moves/sec, %.0f moves/sec per core%n", moveCount / seconds,
+		moveCount / seconds / parallelism);
+	System.out.println("Failures: " + failed.size() + (failed.isEmpty() ? "" : " (written to " + failureFile + ")"));
+	return failed.size();
+    }
+
+    /**
+     * Run the stress test.
+     *
+     * <p>Arguments: [scenarios] [moves per scenario] [max blocks] [seed]
+     * [threads] [failure file], or <code>replay seed [moves] [max
+     * blocks]</code> to replay a single scenario verbosely, or
+     * <code>concurrent [scenarios] [robots] [moves per robot] [seed]</code>
+     * to run several robots on shared tracks.</p>
+     *
+     * @param args
+     *            the program arguments
+     * @throws IOException
+     *             if the failure file cannot be written
+     * @throws InterruptedException
+     *             if interrupted while waiting for the robots
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+	if (args.length > 0 && args[0].equals("concurrent")) {
+	    int scenarios = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+	    int robots = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+	    int moves = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+	    long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+	    int failed = new StressHarness(scenarios, moves, 12, seed).runShared(robots);
+	    System.exit(failed == 0 ? 0 : 1);
+	}
+
+	if (args.length > 1 && args[0].equals("replay")) {
+	    long seed = Long.parseLong(args[1]);
+	    int moves = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+	    int maxBlocks = args.length > 3 ? Integer.parseInt(args[3]) : 12;
+	    String failure = new StressHarness(1, moves, maxBlocks, seed).runScenario(seed, true);
+	    System.out.println(failure == null ? "Seed " + seed + " passed" : "Seed " + seed + " failed at " + failure);
+	    System.exit(failure == null ? 0 : 1);
+	}
+
+	int scenarios = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+	int moves = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+	int maxBlocks = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+	long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+	int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+	String failureFile = args.length > 5 ? args[5] : "stress-failures.txt";
+
+	int failed = new StressHarness(scenarios, moves, maxBlocks, seed).run(threads, failureFile);
+	System.exit(failed == 0 ? 0 : 1);
+    }
+}
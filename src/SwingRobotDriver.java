@@ -0,0 +1,58 @@
+/**
+ * Adapter exposing the Swing based {@link Robot} as a {@link RobotDriver}.
+ */
+public class SwingRobotDriver implements RobotDriver {
+
+    /** The Robot object. */
+    private final Robot r;
+
+    /**
+     * Instantiates a new Swing robot driver.
+     *
+     * @param r
+     *            Robot object
+     */
+    public SwingRobotDriver(Robot r) {
+	this.r = r;
+    }
+
+    @Override
+    public void up() {
+	r.up();
+    }
+
+    @Override
+    public void down() {
+	r.down();
+    }
+
+    @Override
+    public void extend() {
+	r.extend();
+    }
+
+    @Override
+    public void contract() {
+	r.contract();
+    }
+
+    @Override
+    public void lower() {
+	r.lower();
+    }
+
+    @Override
+    public void raise() {
+	r.raise();
+    }
+
+    @Override
+    public void pick() {
+	r.pick();
+    }
+
+    @Override
+    public void drop() {
+	r.drop();
+    }
+}
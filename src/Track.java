@@ -0,0 +1,288 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Layout of the track: bars and columns at arbitrary positions between
+ * 1 and the track width.</p>
+ *
+ * <p>Columns are held in a position indexed array, so finding the column at
+ * a position is O(1), and every bar and column height is mirrored in an
+ * {@link ObstacleHeights} for the clearance queries of {@link RobotControl}:
+ * an {@link ObstacleIndex}, or a {@link ZonedObstacleIndex} on a shared track.
+ * The assignment layout (target at 1, bars from 3, temporary at 9 and source
+ * at 10) is available as {@link #threeColumns(int[], int[])}.</p>
+ *
+ * <p>A track created with a zone width is shared: several controllers can
+ * move blocks on it at the same time, each move locking the {@link ZoneLocks}
+ * zones it travels through.</p>
+ */
+public class Track {
+
+    /** Track position of the first bar in the three column layout. */
+    public static final int FIRST_BAR_POSITION = 3;
+
+    /** Farthest track position. */
+    private final int width;
+
+    /** Bar height at each position, 0 if there is no bar. */
+    private final int[] barHeights;
+
+    /** Column at each position, null if there is no column. */
+    private final Column[] columns;
+
+    /** Columns in track order. */
+    private final List<Column> columnList = new ArrayList<>();
+
+    /** Obstacle heights along the track. */
+    private final ObstacleHeights obstacles;
+
+    /** Zone locks of a shared track, null if the track is not shared. */
+    private final ZoneLocks zoneLocks;
+
+    /** Highest bar. */
+    private int highestBar;
+
+    /**
+     * Instantiates a new empty track.
+     *
+     * @param width
+     *            the farthest position arm 2 can reach
+     */
+    public Track(int width) {
+	this(width, null);
+    }
+
+    /**
+     * Instantiates a new empty track shared by several robots.
+     *
+     * @param width
+     *            the farthest position arm 2 can reach
+     * @param zoneWidth
+     *            the number of positions locked together
+     */
+    public Track(int width, int zoneWidth) {
+	this(width, new ZoneLocks(width, zoneWidth));
+    }
+
+    private Track(int width, ZoneLocks zoneLocks) {
+	if (width < 1)
+	    throw new IllegalArgumentException("Track width must be at least 1: " + width);
+	this.width = width;
+	this.barHeights = new int[width + 1];
+	this.columns = new Column[width + 1];
+	this.zoneLocks = zoneLocks;
+	this.obstacles = zoneLocks == null ? new ObstacleIndex(width) : new ZonedObstacleIndex(width, zoneLocks);
+    }
+
+    /**
+     * Create the three column layout: target at 1, bars from 3, temporary at
+     * 9 and source at 10 holding the given blocks.
+     *
+     * @param barHeights
+     *            the bar heights
+     * @param blockHeights
+     *            the block heights placed in the source column
+     * @return the track
+     */
+    public static Track threeColumns(int[] barHeights, int[] blockHeights) {
+	Track track = threeColumns(barHeights);
+	track.addColumn(ColumnType.source, blockHeights);
+	return track;
+    }
+
+    /**
+     * Build the three column track of the program arguments, the source
+     * column reading the given blocks in place.
+     *
+     * @param barHeights
+     *            the bar heights
+     * @param blockHeights
+     *            the block heights placed in the source column, read in
+     *            place by the column
+     * @return the track
+     */
+    public static Track threeColumns(int[] barHeights, BlockView blockHeights) {
+	Track track = threeColumns(barHeights);
+	track.addColumn(Column.of(ColumnType.source, blockHeights));
+	return track;
+    }
+
+    private static Track threeColumns(int[] barHeights) {
+	Track track = new Track(ColumnType.source.getValue());
+	for (int x = 0; x < barHeights.length; x++) {
+	    track.setBar(FIRST_BAR_POSITION + x, barHeights[x]);
+	}
+	track.addColumn(ColumnType.target, null);
+	track.addColumn(ColumnType.temporary, null);
+	return track;
+    }
+
+    /**
+     * Place a bar.
+     *
+     * @param position
+     *            the track position
+     * @param height
+     *            the bar height
+     */
+    public void setBar(int position, int height) {
+	checkPosition(position);
+	if (columns[position] != null)
+	    throw new IllegalArgumentException("Position " + position + " holds a column");
+	barHeights[position] = height;
+	obstacles.set(position, height);
+	if (height > highestBar)
+	    highestBar = height;
+    }
+
+    /**
+     * Place a new column.
+     *
+     * @param position
+     *            the track position
+     * @param blocks
+     *            the initial blocks, bottom first, or null
+     * @return the column
+     */
+    public Column addColumn(int position, int[] blocks) {
+	return addColumn(new Column(position, blocks));
+    }
+
+    /**
+     * Place a new column at the position of the given type.
+     *
+     * @param type
+     *            the column type
+     * @param blocks
+     *            the initial blocks, bottom first, or null
+     * @return the column
+     */
+    public Column addColumn(ColumnType type, int[] blocks) {
+	return addColumn(new Column(type, blocks));
+    }
+
+    private Column addColumn(Column column) {
+	int position = column.getPosition();
+	checkPosition(position);
+	if (columns[position] != null || barHeights[position] != 0)
+	    throw new IllegalArgumentException("Position " + position + " is not free");
+	columns[position] = column;
+	int index = 0;
+	while (index < columnList.size() && columnList.get(index).getPosition() < position) {
+	    index++;
+	}
+	columnList.add(index, column);
+	column.setObstacleIndex(obstacles);
+	return column;
+    }
+
+    private void checkPosition(int position) {
+	if (position < 1 || position > width)
+	    throw new IllegalArgumentException("Position " + position + " outside the track 1-" + width);
+    }
+
+    /**
+     * Get the column at the given position.
+     *
+     * @param position
+     *            the track position
+     * @return the column, null if there is none
+     */
+    public Column getColumn(int position) {
+	return position < 1 || position > width ? null : columns[position];
+    }
+
+    /**
+     * Get the column at the position of the given type.
+     *
+     * @param type
+     *            the column type
+     * @return the column, null if there is none
+     */
+    public Column getColumn(ColumnType type) {
+	return getColumn(type.getValue());
+    }
+
+    /**
+     * Check if a column is placed at the given position.
+     *
+     * @param position
+     *            the track position
+     * @return true, if a column exists
+     */
+    public boolean hasColumn(int position) {
+	return getColumn(position) != null;
+    }
+
+    /**
+     * Get all columns in track order.
+     *
+     * @return the columns
+     */
+    public List<Column> getColumns() {
+	return Collections.unmodifiableList(columnList);
+    }
+
+    /**
+     * Get the zone locks of a shared track.
+     *
+     * @return the zone locks, null if the track is not shared
+     */
+    public ZoneLocks getZoneLocks() {
+	return zoneLocks;
+    }
+
+    /**
+     * Get the farthest track position.
+     *
+     * @return the track width
+     */
+    public int getWidth() {
+	return width;
+    }
+
+    /**
+     * Get the bar height at the given position.
+     *
+     * @param position
+     *            the track position
+     * @return the bar height, 0 if there is no bar
+     */
+    public int getBarHeight(int position) {
+	return barHeights[position];
+    }
+
+    /**
+     * Get the highest bar.
+     *
+     * @return the highest bar height
+     */
+    public int getHighestBar() {
+	return highestBar;
+    }
+
+    /**
+     * Get the obstacle (bar or column) height at the given position.
+     *
+     * @param position
+     *            the track position
+     * @return the obstacle height
+     */
+    public int getHeight(int position) {
+	return obstacles.get(position);
+    }
+
+    /**
+     * Get the highest obstacle between two positions, both included.
+     *
+     * @param from
+     *            the first position
+     * @param to
+     *            the last position
+     * @return the highest obstacle, 0 if the range is empty
+     */
+    public int maxObstacle(int from, int to) {
+	return obstacles.max(from, to);
+    }
+}
@@ -0,0 +1,229 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Bounded LRU cache of compiled block moves.</p>
+ *
+ * <p>A move only depends on the arm positions, the starting and ending
+ * columns, the column heights and the moved block (bars never change during
+ * a run), so the optimized {@link MotionProgram} of a move can be replayed
+ * whenever the same situation comes back. As the key holds the column
+ * heights, this hardly happens within a run: the cache pays off when the
+ * same scenario is run again.</p>
+ *
+ * <p>The cache must be cleared whenever the bars change.</p>
+ */
+public class TrajectoryCache {
+
+    /** Number of arm values at the start of the key and in a trajectory. */
+    private static final int ARM_VALUES = 3;
+
+    /** Maximum number of cached trajectories. */
+    private final int maxEntries;
+
+    /** Cached trajectories in access order. */
+    private final LinkedHashMap<Key, Trajectory> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Instantiates a new trajectory cache.
+     *
+     * @param maxEntries
+     *            the maximum number of cached trajectories
+     */
+    public TrajectoryCache(final int maxEntries) {
+	if (maxEntries <= 0)
+	    throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+	this.maxEntries = maxEntries;
+	this.entries = new LinkedHashMap<Key, Trajectory>(16, 0.75f, true) {
+	    private static final long serialVersionUID = 1L;
+
+	    @Override
+	    protected boolean removeEldestEntry(Map.Entry<Key, Trajectory> eldest) {
+		if (size() > TrajectoryCache.this.maxEntries) {
+		    evictions++;
+		    return true;
+		}
+		return false;
+	    }
+	};
+    }
+
+    /**
+     * Build the key of a move.
+     *
+     * @param armOne
+     *            arm 1 height before the move
+     * @param armTwo
+     *            arm 2 width before the move
+     * @param armThree
+     *            arm 3 depth before the move
+     * @param from
+     *            position of the starting column
+     * @param to
+     *            position of the ending column
+     * @param block
+     *            height of the moved block
+     * @param columnHeights
+     *            heights of all columns, in a fixed order
+     * @return the key
+     */
+    public static Key key(int armOne, int armTwo, int armThree, int from, int to, int block, int[] columnHeights) {
+	int[] values = new int[ARM_VALUES + 3 + columnHeights.length];
+	values[0] = armOne;
+	values[1] = armTwo;
+	values[2] = armThree;
+	values[3] = from;
+	values[4] = to;
+	values[5] = block;
+	System.arraycopy(columnHeights, 0, values, ARM_VALUES + 3, columnHeights.length);
+	return new Key(values);
+    }
+
+    /**
+     * Look up a move, counting a hit or a miss.
+     *
+     * @param key
+     *            the move key
+     * @return the cached trajectory, null if missing
+     */
+    public Trajectory get(Key key) {
+	Trajectory trajectory = entries.get(key);
+	if (trajectory == null)
+	    misses++;
+	else
+	    hits++;
+	return trajectory;
+    }
+
+    /**
+     * Cache the compiled move, evicting the least recently used one if the
+     * cache is full.
+     *
+     * @param key
+     *            the move key
+     * @param program
+     *            the optimized program, copied
+     * @param armOne
+     *            arm 1 height after the move
+     * @param armTwo
+     *            arm 2 width after the move
+     * @param armThree
+     *            arm 3 depth after the move
+     */
+    public void put(Key key, MotionProgram program, int armOne, int armTwo, int armThree) {
+	MotionProgram copy = new MotionProgram();
+	copy.addAll(program);
+	entries.put(key, new Trajectory(copy, armOne, armTwo, armThree));
+    }
+
+    /**
+     * Remove all cached trajectories, keeping the statistics.
+     */
+    public void clear() {
+	entries.clear();
+    }
+
+    /**
+     * Get the number of cached trajectories.
+     *
+     * @return the number of cached trajectories
+     */
+    public int size() {
+	return entries.size();
+    }
+
+    public int getMaxEntries() {
+	return maxEntries;
+    }
+
+    public long getHits() {
+	return hits;
+    }
+
+    public long getMisses() {
+	return misses;
+    }
+
+    public long getEvictions() {
+	return evictions;
+    }
+
+    /**
+     * Get the ratio of lookups found in the cache.
+     *
+     * @return the hit rate, 0 if nothing was looked up
+     */
+    public double getHitRate() {
+	long lookups = hits + misses;
+	return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+	return String.format("size=%d/%d hits=%d misses=%d evictions=%d hitRate=%.1f%%", size(), maxEntries, hits,
+		misses, evictions, getHitRate() * 100);
+    }
+
+    /**
+     * Key of a move: arm positions, columns, block and column heights.
+     */
+    public static final class Key {
+
+	private final int[] values;
+	private final int hash;
+
+	private Key(int[] values) {
+	    this.values = values;
+	    this.hash = Arrays.hashCode(values);
+	}
+
+	@Override
+	public int hashCode() {
+	    return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+	    return obj instanceof Key && hash == ((Key) obj).hash && Arrays.equals(values, ((Key) obj).values);
+	}
+    }
+
+    /**
+     * Compiled move and the arm positions it ends at.
+     */
+    public static final class Trajectory {
+
+	private final MotionProgram program;
+	private final int armOne;
+	private final int armTwo;
+	private final int armThree;
+
+	private Trajectory(MotionProgram program, int armOne, int armTwo, int armThree) {
+	    this.program = program;
+	    this.armOne = armOne;
+	    this.armTwo = armTwo;
+	    this.armThree = armThree;
+	}
+
+	public MotionProgram getProgram() {
+	    return program;
+	}
+
+	public int getArmOneHeight() {
+	    return armOne;
+	}
+
+	public int getArmTwoWidth() {
+	    return armTwo;
+	}
+
+	public int getArmThreeDepth() {
+	    return armThree;
+	}
+    }
+}
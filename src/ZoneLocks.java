@@ -0,0 +1,126 @@
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>Striped locks over the zones of a shared {@link Track}.</p>
+ *
+ * <p>The track is split into zones of a fixed number of positions, each
+ * with its own read-write lock. A move holds every zone its arm passes over,
+ * from the start of the track to the farthest column it reaches: the zones of
+ * the two columns it changes exclusively, the others shared, so moves that
+ * only pass over the same zones run together. Zones are always locked in
+ * ascending order and unlocked in descending order, so no set of moves can
+ * deadlock.</p>
+ */
+public class ZoneLocks {
+
+    /** Number of track positions in a zone. */
+    private final int zoneWidth;
+
+    /** Lock of each zone, zone 0 starting at position 0. */
+    private final ReentrantReadWriteLock[] locks;
+
+    /**
+     * Instantiates new zone locks.
+     *
+     * @param trackWidth
+     *            the farthest track position
+     * @param zoneWidth
+     *            the number of track positions in a zone
+     */
+    public ZoneLocks(int trackWidth, int zoneWidth) {
+	if (zoneWidth < 1)
+	    throw new IllegalArgumentException("Zone width must be at least 1: " + zoneWidth);
+	this.zoneWidth = zoneWidth;
+	this.locks = new ReentrantReadWriteLock[trackWidth / zoneWidth + 1];
+	for (int x = 0; x < locks.length; x++) {
+	    locks[x] = new ReentrantReadWriteLock();
+	}
+    }
+
+    /**
+     * Get the zone of a track position.
+     *
+     * @param position
+     *            the track position
+     * @return the zone index
+     */
+    public int zoneOf(int position) {
+	return position / zoneWidth;
+    }
+
+    public int getZoneWidth() {
+	return zoneWidth;
+    }
+
+    public int getZoneCount() {
+	return locks.length;
+    }
+
+    /**
+     * Lock all zones between two positions, in ascending order: the zones of
+     * the source and target positions exclusively, the others shared.
+     *
+     * @param from
+     *            the first position
+     * @param to
+     *            the last position, before or after the first one
+     * @param source
+     *            the position of the column a block is picked from
+     * @param target
+     *            the position of the column a block is dropped in
+     */
+    public void lock(int from, int to, int source, int target) {
+	int last = zoneOf(Math.max(from, to));
+	for (int zone = zoneOf(Math.min(from, to)); zone <= last; zone++) {
+	    if (isExclusive(zone, source, target))
+		locks[zone].writeLock().lock();
+	    else
+		locks[zone].readLock().lock();
+	}
+    }
+
+    /**
+     * Unlock all zones locked by {@link #lock(int, int, int, int)} with the
+     * same positions, in descending order.
+     *
+     * @param from
+     *            the first position
+     * @param to
+     *            the last position, before or after the first one
+     * @param source
+     *            the position of the column a block is picked from
+     * @param target
+     *            the position of the column a block is dropped in
+     */
+    public void unlock(int from, int to, int source, int target) {
+	int first = zoneOf(Math.min(from, to));
+	for (int zone = zoneOf(Math.max(from, to)); zone >= first; zone--) {
+	    if (isExclusive(zone, source, target))
+		locks[zone].writeLock().unlock();
+	    else
+		locks[zone].readLock().unlock();
+	}
+    }
+
+    /**
+     * Check if a zone holds the source or target position of a move.
+     * <br>
+     * A read lock cannot be upgraded, so the mode of each zone is settled
+     * before it is locked.
+     */
+    private boolean isExclusive(int zone, int source, int target) {
+	return zone == zoneOf(source) || zone == zoneOf(target);
+    }
+
+    /**
+     * Check if the current thread holds the exclusive lock of the zone of a
+     * position, as it must to change that position.
+     *
+     * @param position
+     *            the track position
+     * @return true, if the zone is locked exclusively by the current thread
+     */
+    public boolean isHeldByCurrentThread(int position) {
+	return locks[zoneOf(position)].isWriteLockedByCurrentThread();
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <p>Obstacle index of a track shared by several robots.</p>
+ *
+ * <p>Heights are kept per position together with the highest obstacle of
+ * each zone of {@link ZoneLocks}. A position is only updated by the robot
+ * holding the exclusive lock of its zone, so the zone maximum has a single writer and
+ * can be recomputed without contention, while range queries read positions
+ * and zone maxima without any lock. A query costs O(zone width + zones)
+ * instead of O(log N), which stays small for the tracks of a cell.</p>
+ */
+public class ZonedObstacleIndex implements ObstacleHeights {
+
+    /** Zones the heights are grouped by. */
+    private final ZoneLocks zones;
+
+    /** Obstacle height at each position. */
+    private final AtomicIntegerArray heights;
+
+    /** Highest obstacle of each zone. */
+    private final AtomicIntegerArray zoneMax;
+
+    /**
+     * Instantiates a new zoned obstacle index.
+     *
+     * @param trackWidth
+     *            the farthest track position
+     * @param zones
+     *            the zones of the track
+     */
+    public ZonedObstacleIndex(int trackWidth, ZoneLocks zones) {
+	this.zones = zones;
+	this.heights = new AtomicIntegerArray(trackWidth + 1);
+	this.zoneMax = new AtomicIntegerArray(zones.getZoneCount());
+    }
+
+    @Override
+    public void set(int position, int height) {
+	heights.set(position, height);
+	int zone = zones.zoneOf(position);
+	int first = zone * zones.getZoneWidth();
+	int last = Math.min(first + zones.getZoneWidth(), heights.length()) - 1;
+	int maxHeight = 0;
+	for (int x = first; x <= last; x++) {
+	    maxHeight = Math.max(maxHeight, heights.get(x));
+	}
+	zoneMax.set(zone, maxHeight);
+    }
+
+    @Override
+    public int get(int position) {
+	return heights.get(position);
+    }
+
+    @Override
+    public int max(int from, int to) {
+	from = Math.max(from, 0);
+	to = Math.min(to, heights.length() - 1);
+	int maxHeight = 0;
+	int position = from;
+	while (position <= to) {
+	    int zone = zones.zoneOf(position);
+	    int zoneEnd = (zone + 1) * zones.getZoneWidth() - 1;
+	    if (position == zone * zones.getZoneWidth() && zoneEnd <= to) {
+		// whole zone
+		maxHeight = Math.max(maxHeight, zoneMax.get(zone));
+		position = zoneEnd + 1;
+	    } else {
+		maxHeight = Math.max(maxHeight, heights.get(position));
+		position++;
+	    }
+	}
+	return maxHeight;
+    }
+}
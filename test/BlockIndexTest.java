@@ -0,0 +1,73 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks {@link BlockIndex} against a scan of the same blocks, for small
+ * and very large block heights.</p>
+ */
+public class BlockIndexTest {
+
+    /**
+     * Depth of the highest block of a height, found by scanning.
+     */
+    private static int scanDepth(BlockStack blocks, int blockHeight) {
+	for (int x = blocks.size() - 1; x >= 0; x--) {
+	    if (blocks.get(x) == blockHeight)
+		return blocks.size() - 1 - x;
+	}
+	return -1;
+    }
+
+    /**
+     * Push and pop random blocks of the given heights, checking every query
+     * after each change.
+     */
+    private static void check(int[] heights, long seed) {
+	Random rand = new Random(seed);
+	BlockStack blocks = new BlockStack();
+	BlockIndex index = new BlockIndex(blocks);
+	for (int x = 0; x < 5000; x++) {
+	    if (blocks.size() > 0 && rand.nextInt(3) == 0) {
+		index.remove(blocks.pop());
+	    } else {
+		int blockHeight = heights[rand.nextInt(heights.length)];
+		blocks.push(blockHeight);
+		index.add(blockHeight);
+	    }
+	    assertEquals(blocks.size(), index.size());
+	    for (int blockHeight : heights) {
+		assertEquals(scanDepth(blocks, blockHeight), index.depthOf(blockHeight));
+	    }
+	}
+    }
+
+    @Test
+    public void smallHeights() {
+	check(new int[] { 1, 2, 3, 4 }, 1);
+    }
+
+    @Test
+    public void largeHeights() {
+	check(new int[] { 1, 1000000000, Integer.MAX_VALUE, 65536, 131072, 1 << 30 }, 2);
+    }
+
+    @Test
+    public void manyHeights() {
+	int[] heights = new int[200];
+	for (int x = 0; x < heights.length; x++) {
+	    heights[x] = x * 65536 + 1;
+	}
+	check(heights, 3);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void removeOtherThanTop() {
+	BlockIndex index = new BlockIndex(new BlockStack());
+	index.add(1000000000);
+	index.add(2);
+	index.remove(1000000000);
+    }
+}
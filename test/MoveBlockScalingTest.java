@@ -0,0 +1,165 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks that {@link RobotControl} moves keep the column bookkeeping
+ * right, and that the work of a move does not grow with the number of
+ * blocks in the columns.</p>
+ *
+ * <p>The source blocks are read in place through a view counting its
+ * reads, so a move that scans a column, such as summing its heights or
+ * looking for its highest block, shows up as reads growing with the block
+ * count. The time per move is measured by <code>ColumnScaling</code>.</p>
+ */
+public class MoveBlockScalingTest {
+
+    /** Block counts of the source column. */
+    private static final int[] BLOCK_COUNTS = { 10, 100, 1000, 10000, 100000 };
+
+    /** Number of moves of each batch. */
+    private static final int MOVES = 997;
+
+    /** Number of batches, the columns are checked after each one. */
+    private static final int BATCHES = 10;
+
+    /** Most source block reads a single move may need. */
+    private static final int MAX_READS_PER_MOVE = 4;
+
+    /** Bar heights of every scenario. */
+    private static final int[] BARS = { 3, 5, 2, 6, 4, 1 };
+
+    /**
+     * Blocks counting the reads of their heights.
+     */
+    private static class CountingBlocks implements BlockView {
+
+	private final int[] blocks;
+	long reads;
+
+	CountingBlocks(int blockCount) {
+	    blocks = new int[blockCount];
+	    for (int x = 0; x < blockCount; x++) {
+		blocks[x] = x % 4 + 1;
+	    }
+	}
+
+	@Override
+	public int size() {
+	    return blocks.length;
+	}
+
+	@Override
+	public int get(int index) {
+	    reads++;
+	    return blocks[index];
+	}
+
+	@Override
+	public int peek() {
+	    reads++;
+	    return blocks.length == 0 ? 0 : blocks[blocks.length - 1];
+	}
+
+	@Override
+	public boolean contains(int blockHeight) {
+	    for (int x = 0; x < blocks.length; x++) {
+		if (get(x) == blockHeight)
+		    return true;
+	    }
+	    return false;
+	}
+    }
+
+    /**
+     * Get a control whose source column reads the given blocks in place.
+     */
+    private static RobotControl control(CountingBlocks blocks) {
+	RobotControl control = new RobotControl(new CountingRobot());
+	control.init(Track.threeColumns(BARS, blocks));
+	return control;
+    }
+
+    /**
+     * Get the columns of the control, source first.
+     */
+    private static Column[] columns(RobotControl control) {
+	Track track = control.getTrack();
+	return new Column[] { track.getColumn(ColumnType.source), track.getColumn(ColumnType.temporary),
+		track.getColumn(ColumnType.target) };
+    }
+
+    /**
+     * Move the top block of each column to the next one, the given number of
+     * times.
+     *
+     * @return the most source block reads of a single move
+     */
+    private static long run(RobotControl control, Column[] columns, CountingBlocks blocks, int moves) {
+	long mostReads = 0;
+	int from = 0;
+	for (int x = 0; x < moves; x++) {
+	    while (columns[from].getBlockCount() == 0) {
+		from = (from + 1) % 3;
+	    }
+	    int to = (from + 1) % 3;
+	    long reads = blocks.reads;
+	    control.moveBlock(columns[from].getType(), columns[to].getType());
+	    mostReads = Math.max(mostReads, blocks.reads - reads);
+	    from = to;
+	}
+	return mostReads;
+    }
+
+    /**
+     * Check the incremental height, block count and highest block of a column
+     * against its blocks.
+     */
+    private static void assertBookkeeping(Column column) {
+	BlockView blocks = column.getBlocks();
+	int height = 0;
+	int max = 0;
+	for (int x = 0; x < blocks.size(); x++) {
+	    height += blocks.get(x);
+	    max = Math.max(max, blocks.get(x));
+	}
+	assertEquals(blocks.size(), column.getBlockCount());
+	assertEquals(height, column.getHeight());
+	assertEquals(max, column.getMaxBlockHeight());
+	if (blocks.size() > 0)
+	    assertEquals(blocks.get(blocks.size() - 1), column.getTopBlockHeight());
+    }
+
+    @Test
+    public void movesKeepColumnBookkeeping() {
+	for (int blockCount : BLOCK_COUNTS) {
+	    CountingBlocks blocks = new CountingBlocks(blockCount);
+	    RobotControl control = control(blocks);
+	    Column[] columns = columns(control);
+	    for (int x = 0; x < BATCHES; x++) {
+		run(control, columns, blocks, MOVES);
+		for (Column column : columns) {
+		    assertBookkeeping(column);
+		}
+	    }
+	    assertEquals(blockCount,
+		    columns[0].getBlockCount() + columns[1].getBlockCount() + columns[2].getBlockCount());
+	}
+    }
+
+    @Test
+    public void moveWorkDoesNotGrowWithBlocks() {
+	for (int blockCount : BLOCK_COUNTS) {
+	    CountingBlocks blocks = new CountingBlocks(blockCount);
+	    RobotControl control = control(blocks);
+	    Column[] columns = columns(control);
+	    long mostReads = 0;
+	    for (int x = 0; x < BATCHES; x++) {
+		mostReads = Math.max(mostReads, run(control, columns, blocks, MOVES));
+	    }
+	    assertTrue("A move reads " + mostReads + " source blocks out of " + blockCount,
+		    mostReads <= MAX_READS_PER_MOVE);
+	}
+    }
+}
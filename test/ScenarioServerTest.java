@@ -0,0 +1,79 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks the socket protocol of {@link ScenarioServer}: every scenario
+ * line gets a result line, even when the scenario cannot be solved, and the
+ * connection is closed once all of them are answered.</p>
+ */
+public class ScenarioServerTest {
+
+    /** Time the client waits for a result line before failing. */
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Send the given lines and read the result lines until the server
+     * closes the connection.
+     */
+    private static List<String> exchange(ScenarioServer server, String... lines) throws Exception {
+	int port = server.listen(0);
+	try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+	    socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+	    Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+	    for (String line : lines) {
+		writer.write(line + "\n");
+	    }
+	    writer.flush();
+	    socket.shutdownOutput();
+	    BufferedReader reader = new BufferedReader(
+		    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+	    List<String> results = new ArrayList<>();
+	    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+		results.add(line);
+	    }
+	    // results come back in completion order
+	    Collections.sort(results);
+	    return results;
+	} finally {
+	    server.shutdown();
+	}
+    }
+
+    @Test
+    public void answersEveryScenario() throws Exception {
+	List<String> results = exchange(new ScenarioServer(4), "734561 321", "734561 3131 1133");
+	assertEquals(2, results.size());
+	assertTrue(results.get(0), results.get(0).startsWith("1 ok "));
+	assertTrue(results.get(1), results.get(1).startsWith("2 ok "));
+    }
+
+    @Test
+    public void answersScenariosTheTrackRejects() throws Exception {
+	// the seventh bar lands on the temporary column
+	List<String> results = exchange(new ScenarioServer(4), "1234567 12", "734561 321");
+	assertEquals(2, results.size());
+	assertTrue(results.get(0), results.get(0).startsWith("1 error "));
+	assertTrue(results.get(1), results.get(1).startsWith("2 ok "));
+    }
+
+    @Test
+    public void answersUnparsableLines() throws Exception {
+	List<String> results = exchange(new ScenarioServer(4), "not a scenario", "734561 321");
+	assertEquals(2, results.size());
+	assertTrue(results.get(0), results.get(0).startsWith("1 error "));
+	assertTrue(results.get(1), results.get(1).startsWith("2 ok "));
+    }
+}